@@ -1,5 +1,6 @@
 package common;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import com.google.protobuf.AbstractMessage;
@@ -17,6 +18,7 @@ public interface IProto<T, P extends AbstractMessage> {
 
 	public abstract P toProto();
 
+	// fromProto may reject a malformed proto with an IllegalArgumentException
 	public abstract void fromProto(P proto);
 
 	public abstract Parser<P> parser();
@@ -30,7 +32,17 @@ public interface IProto<T, P extends AbstractMessage> {
 			P pBlock = parser().parseFrom(data);
 			fromProto(pBlock);
 			return null;
-		} catch (InvalidProtocolBufferException e) {
+		} catch (InvalidProtocolBufferException | IllegalArgumentException e) {
+			return error.Errorf(e.getMessage());
+		}
+	}
+
+	default public error protoUnmarshal(ByteBuffer data) {
+		try {
+			P pBlock = parser().parseFrom(data);
+			fromProto(pBlock);
+			return null;
+		} catch (InvalidProtocolBufferException | IllegalArgumentException e) {
 			return error.Errorf(e.getMessage());
 		}
 	}
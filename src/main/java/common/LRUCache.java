@@ -1,31 +1,255 @@
 package common;
 
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * A simple LRU cache implementation.
- * TODO consider to use other LRU cache impl
+ * A concurrent LRU cache.
+ *
+ * Keys are spread over segments, each an access-ordered LinkedHashMap under its
+ * own lock, so that readers of different keys don't contend. Every segment
+ * evicts its least recently used entries when it holds more than its share of
+ * the entries.
+ *
+ * A cache with a Weigher also evicts when it weighs more than its maximum
+ * weight. It has a single segment, as a share of the weight could be less than
+ * a single heavy value.
  *
  * @param <K>
  * @param <V>
  */
-public class LRUCache<K,V> extends LinkedHashMap<K, V> {
-	public static <K,V> RResult<LRUCache<K,V>> New(int i) {
-		// TBD implement it
-		LRUCache<K,V> lruCache = new LRUCache<K,V>(i);
+public class LRUCache<K,V> {
+	// Weigher gives the weight of a value, usually an estimate of its size in bytes
+	public interface Weigher<V> {
+		long weigh(V value);
+	}
+
+	static final int MIN_SEGMENT_SIZE = 64; //smaller caches have a single segment, an exact LRU
+	static final int MAX_SEGMENTS = 16;
 
-		return new RResult<LRUCache<K,V>>(lruCache, null);
+	public static <K,V> RResult<LRUCache<K,V>> New(int size) {
+		return New(size, 0, null);
 	}
 
-	private int cacheSize;
+	/**
+	 * Creates a cache of size entries, and maxWeight total weight if weigher is
+	 * not null
+	 */
+	public static <K,V> RResult<LRUCache<K,V>> New(int size, long maxWeight, Weigher<? super V> weigher) {
+		if (size <= 0) {
+			return new RResult<LRUCache<K,V>>(null, error.Errorf("must provide a positive size"));
+		}
+		if (weigher != null && maxWeight <= 0) {
+			return new RResult<LRUCache<K,V>>(null, error.Errorf("must provide a positive weight"));
+		}
+		return new RResult<LRUCache<K,V>>(new LRUCache<K,V>(size, maxWeight, weigher), null);
+	}
+
+	private final int cacheSize;
+	private final long maxWeight;
+	private final Segment<V>[] segments;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
 
 	public LRUCache(int cacheSize) {
-	    super(cacheSize);
-	    this.cacheSize = cacheSize;
+		this(cacheSize, 0, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	public LRUCache(int cacheSize, long maxWeight, Weigher<? super V> weigher) {
+		this.cacheSize = cacheSize;
+		this.maxWeight = maxWeight;
+
+		int n = weigher != null ? 1 : Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, cacheSize / MIN_SEGMENT_SIZE)));
+		this.segments = new Segment[n];
+		for (int i = 0; i < n; i++) {
+			//shares add up to the total
+			int size = cacheSize / n + (i < cacheSize % n ? 1 : 0);
+			segments[i] = new Segment<V>(size, maxWeight, weigher, evictions);
+		}
+	}
+
+	private Segment<V> segment(Object key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return segments[h & (segments.length - 1)];
+	}
+
+	public V get(Object key) {
+		V v = segment(key).get(key);
+		if (v == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+		return v;
+	}
+
+	// put returns the previous value of key, null if there was none
+	public V put(K key, V value) {
+		return segment(key).put(key, value);
+	}
+
+	public V remove(Object key) {
+		return segment(key).remove(key);
+	}
+
+	// containsKey doesn't count as an access
+	public boolean containsKey(Object key) {
+		return segment(key).containsKey(key);
+	}
+
+	public int size() {
+		int size = 0;
+		for (Segment<V> s : segments) {
+			size += s.size();
+		}
+		return size;
+	}
+
+	public long weight() {
+		long weight = 0;
+		for (Segment<V> s : segments) {
+			weight += s.weight();
+		}
+		return weight;
+	}
+
+	public void clear() {
+		for (Segment<V> s : segments) {
+			s.clear();
+		}
+	}
+
+	/**
+	 * trim evicts the least recently used entries until the cache weighs at
+	 * most weight, keeping the most recently used one. It doesn't change the
+	 * maximum weight of the cache. Caches without a Weigher weigh nothing.
+	 */
+	public void trim(long weight) {
+		if (segments.length == 1) {
+			segments[0].trim(weight);
+		}
 	}
 
-	protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-	    return size() >= cacheSize;
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	public long hits() {
+		return hits.sum();
+	}
+
+	public long misses() {
+		return misses.sum();
+	}
+
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	public double hitRate() {
+		long h = hits.sum();
+		long total = h + misses.sum();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	@Override
+	public String toString() {
+		return "LRUCache [size=" + size() + "/" + cacheSize + ", weight=" + weight() + "/" + maxWeight
+				+ ", hits=" + hits() + ", misses=" + misses() + ", evictions=" + evictions() + "]";
+	}
+
+	// Segment holds the values with their weights, computed once when put
+	static class Segment<V> {
+		final int size;
+		final long maxWeight;
+		final Weigher<? super V> weigher;
+		final LongAdder evictions;
+		final LinkedHashMap<Object,Weighted<V>> map = new LinkedHashMap<Object,Weighted<V>>(16, 0.75f, true);
+		long weight;
+
+		Segment(int size, long maxWeight, Weigher<? super V> weigher, LongAdder evictions) {
+			this.size = size;
+			this.maxWeight = maxWeight;
+			this.weigher = weigher;
+			this.evictions = evictions;
+		}
+
+		synchronized V get(Object key) {
+			Weighted<V> w = map.get(key);
+			return w == null ? null : w.value;
+		}
+
+		synchronized boolean containsKey(Object key) {
+			return map.containsKey(key);
+		}
+
+		synchronized V put(Object key, V value) {
+			Weighted<V> w = new Weighted<V>(value, weigher == null ? 0 : weigher.weigh(value));
+			Weighted<V> old = map.put(key, w);
+			weight += w.weight;
+			if (old != null) {
+				weight -= old.weight;
+			}
+			evict(weigher == null ? Long.MAX_VALUE : maxWeight);
+			return old == null ? null : old.value;
+		}
+
+		synchronized V remove(Object key) {
+			Weighted<V> old = map.remove(key);
+			if (old == null) {
+				return null;
+			}
+			weight -= old.weight;
+			return old.value;
+		}
+
+		synchronized int size() {
+			return map.size();
+		}
+
+		synchronized long weight() {
+			return weight;
+		}
+
+		synchronized void clear() {
+			map.clear();
+			weight = 0;
+		}
+
+		synchronized void trim(long maxWeight) {
+			evict(maxWeight);
+		}
+
+		// evict removes the least recently used entries over the bounds, but
+		// never the most recently used one, which a put has just added
+		private void evict(long maxWeight) {
+			Iterator<Map.Entry<Object,Weighted<V>>> it = map.entrySet().iterator();
+			while (map.size() > 1 && (map.size() > size || weight > maxWeight)) {
+				Map.Entry<Object,Weighted<V>> eldest = it.next();
+				weight -= eldest.getValue().weight;
+				it.remove();
+				evictions.increment();
+			}
+		}
+	}
+
+	static class Weighted<V> {
+		final V value;
+		final long weight;
+
+		Weighted(V value, long weight) {
+			this.value = value;
+			this.weight = weight;
+		}
 	}
 }
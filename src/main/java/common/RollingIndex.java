@@ -1,87 +1,146 @@
 package common;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import autils.Logger;
-
-public class RollingIndex {
-	private static Logger logger = Logger.getLogger(RollingIndex.class);
-
+/**
+ * RollingIndex caches the items of the last indexes, which have no gaps.
+ *
+ * Items are stored in a ring of 2*size slots, the slot of an index being the
+ * index modulo 2*size. When the ring is full, it rolls: the oldest size items
+ * are dropped, by moving the start of the cached items, without copying.
+ *
+ * @param <T> type of the items
+ */
+public class RollingIndex<T> {
 	String name;
 	int size;
 	long lastIndex;
-	List<Object> items; // []interface{}
+	Object[] items; // ring of 2*size slots
+	int count;      // number of cached items, which end at lastIndex
 
 	public RollingIndex(String name, int size) {
 		this.name = name;
 		this.size = size;
-		this.items = new ArrayList(2 * size); // TBD: items: make([]interface{}, 0, 2*size),
-		lastIndex = -1;
-	}
-
-	public RResult2<Object[], Long> getLastWindow() {
-		return new RResult2<Object[], Long>(items.toArray(), lastIndex);
+		this.items = new Object[2 * size];
+		this.count = 0;
+		this.lastIndex = -1;
 	}
 
-	public RResult<Object[]> get(long skipIndex) {
-//		logger.field("skipIndex", skipIndex).field("items", items).debug("Get()");
-		Object[] res = new Object[] {};
+	/**
+	 * Window is a view of consecutive cached items, read from the ring without
+	 * copying them. It is read before items are set over the ones it holds,
+	 * that is before 2*size more indexes are added.
+	 */
+	public static class Window<T> {
+		final Object[] ring;
+		final int start;  //slot of the first item
+		final int length;
+
+		Window(Object[] ring, int start, int length) {
+			this.ring = ring;
+			this.start = start;
+			this.length = length;
+		}
 
-		if (skipIndex > lastIndex) {
-			return new RResult<Object[]>(res, null);
+		public int size() {
+			return length;
 		}
 
-		long cachedItems = items.size();
-		// assume there are no gaps between indexes
-		long oldestCachedIndex = lastIndex - cachedItems + 1;
+		@SuppressWarnings("unchecked")
+		public T get(int i) {
+			int slot = start + i;
+			if (slot >= ring.length) {
+				slot -= ring.length;
+			}
+			return (T) ring[slot];
+		}
 
-//		logger.field("cachedItems", cachedItems)
-//			.field("oldestCachedIndex", oldestCachedIndex).debug("RollingIndex.Get()");
+		// toArray copies the items in a, if it is large enough, or in a new
+		// array of its type
+		@SuppressWarnings("unchecked")
+		public <U> U[] toArray(U[] a) {
+			if (a.length < length) {
+				a = (U[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), length);
+			}
+			int first = Math.min(length, ring.length - start);
+			System.arraycopy(ring, start, a, 0, first);
+			System.arraycopy(ring, 0, a, first, length - first);
+			return a;
+		}
 
-		if (skipIndex + 1 < oldestCachedIndex) {
-			return new RResult<Object[]>(res,
-					StoreErr.newStoreErr(name, StoreErrType.TooLate, Long.toString(skipIndex, 10)));
+		public Object[] toArray() {
+			return toArray(new Object[length]);
 		}
+	}
 
-		// index of 'skipped' in RollingIndex
-		long start = skipIndex - oldestCachedIndex + 1;
+	private static final Window<?> EMPTY = new Window<Object>(new Object[0], 0, 0);
 
-		// TBD : equivalent with items[start:]?
-		res = items.subList((int) start, items.size()).toArray();
+	@SuppressWarnings("unchecked")
+	private static <T> Window<T> empty() {
+		return (Window<T>) EMPTY;
+	}
 
-//		logger.field("start", start).field("res",  res).debug("RollingIndex.Get()");
+	private int slot(long index) {
+		return (int) Math.floorMod(index, (long) items.length);
+	}
 
-		return new RResult<Object[]>(res, null);
+	private long oldestCachedIndex() {
+		// assume there are no gaps between indexes
+		return lastIndex - count + 1;
 	}
 
-	public RResult<Object> getItem(long index) {
-		long numitems = items.size();
-		long oldestCached = lastIndex - numitems + 1;
+	public long getLastIndex() {
+		return lastIndex;
+	}
 
-//		logger.field("index", index)
-//			.field("items", items)
-//			.field("numitems", numitems)
-//			.field("oldestCached", oldestCached).debug("GetItem()");
+	public RResult2<Object[], Long> getLastWindow() {
+		return new RResult2<Object[], Long>(lastWindow().toArray(), lastIndex);
+	}
 
-		if (index < oldestCached) {
-			return new RResult<Object>(null,
-					StoreErr.newStoreErr(name, StoreErrType.TooLate, Long.toString(index, 10)));
+	// lastWindow is a view of all the cached items
+	public Window<T> lastWindow() {
+		if (count == 0) {
+			return empty();
 		}
-		int findex = (int) (index - oldestCached);
+		return new Window<T>(items, slot(oldestCachedIndex()), count);
+	}
+
+	public RResult<Object[]> get(long skipIndex) {
+		RResult<Window<T>> window = window(skipIndex);
+		return new RResult<Object[]>(window.result.toArray(), window.err);
+	}
 
-//		logger.field("findex", findex).debug("GetItem()");
+	/**
+	 * window returns a view of the items with an index greater than skipIndex
+	 */
+	public RResult<Window<T>> window(long skipIndex) {
+		if (skipIndex >= lastIndex) {
+			return new RResult<Window<T>>(empty(), null);
+		}
 
-		if (findex >= numitems) {
-			return new RResult<Object>(null,
+		long oldestCachedIndex = oldestCachedIndex();
+		if (skipIndex + 1 < oldestCachedIndex) {
+			return new RResult<Window<T>>(empty(),
+					StoreErr.newStoreErr(name, StoreErrType.TooLate, Long.toString(skipIndex, 10)));
+		}
+
+		return new RResult<Window<T>>(new Window<T>(items, slot(skipIndex + 1), (int) (lastIndex - skipIndex)), null);
+	}
+
+	@SuppressWarnings("unchecked")
+	public RResult<T> getItem(long index) {
+		if (index < oldestCachedIndex()) {
+			return new RResult<T>(null,
+					StoreErr.newStoreErr(name, StoreErrType.TooLate, Long.toString(index, 10)));
+		}
+
+		if (index > lastIndex) {
+			return new RResult<T>(null,
 					StoreErr.newStoreErr(name, StoreErrType.KeyNotFound, Long.toString(index, 10)));
 		}
 
-//		logger.field("found item", items.get(findex)).debug("GetItem()");
-		return new RResult<Object>(items.get(findex), null);
+		return new RResult<T>((T) items[slot(index)], null);
 	}
 
-	public error set(Object item, long index) {
+	public error set(T item, long index) {
 		// only allow to set items with index <= lastIndex + 1
 		// so that we may assume there are no gaps between items
 		if (0 <= lastIndex && index > lastIndex + 1) {
@@ -90,35 +149,39 @@ public class RollingIndex {
 
 		// adding a new item
 		if (lastIndex < 0 || index == lastIndex + 1) {
-			if (items.size() >= 2 * size) {
+			if (count >= 2 * size) {
 				roll();
 			}
 
-			items.add(item);
+			items[slot(index)] = item;
+			count++;
 			lastIndex = index;
 			return null;
 		}
 
 		// replace and existing item
 		// make sure index is also greater or equal than the oldest cached item's index
-		long cachedItems = items.size();
-		long oldestCachedIndex = lastIndex - cachedItems + 1;
-
-		if (index < oldestCachedIndex) {
+		if (index < oldestCachedIndex()) {
 			return StoreErr.newStoreErr(name, StoreErrType.TooLate, Long.toString(index, 10));
 		}
 
 		// replacing existing item
-		int position = (int) (index - oldestCachedIndex); // position of 'index' in RollingIndex
-		items.set(position, item);
+		items[slot(index)] = item;
 
 		return null;
 	}
 
+	// roll drops the oldest size items. Their slots are overwritten by the
+	// next items.
 	public void roll() {
-		List<Object> newList = new ArrayList(2 * size);
-		newList.addAll(items.subList(size, items.size()));
+		count = Math.max(0, count - size);
+	}
 
-		items = newList;
+	// copy makes this index a copy of other
+	void copy(RollingIndex<T> other) {
+		this.size = other.size;
+		this.items = other.items.clone();
+		this.count = other.count;
+		this.lastIndex = other.lastIndex;
 	}
-}
\ No newline at end of file
+}
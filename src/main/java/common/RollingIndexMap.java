@@ -1,65 +1,96 @@
 package common;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
-public class RollingIndexMap {
+/**
+ * RollingIndexMap is a RollingIndex per key. The keys, participant IDs, are
+ * few: they are kept sorted in a long[] and found by binary search, without
+ * boxing them.
+ *
+ * @param <T> type of the items
+ */
+public class RollingIndexMap<T> {
 	String name;
 	int size;
-	long[] keys;
-	Map<Long, RollingIndex> mapping;
+	long[] keys;                 // keys the map is created and reset with
+	long[] ids;                  // sorted keys of indexes
+	RollingIndex<T>[] indexes;
 
 	public RollingIndexMap(String name, int size, long[] keys) {
 		this.name = name;
 		this.size = size;
 		this.keys = keys;
-		this.mapping = new HashMap<Long, RollingIndex>();
+		reset();
+	}
+
+	private RollingIndex<T> index(long key) {
+		int i = Arrays.binarySearch(ids, key);
+		return i < 0 ? null : indexes[i];
+	}
 
-		for (long key : keys) {
-			mapping.put(key, new RollingIndex(String.format("%s[%d]", name, key), size));
+	@SuppressWarnings("unchecked")
+	private RollingIndex<T> addIndex(long key) {
+		int i = Arrays.binarySearch(ids, key);
+		if (i >= 0) {
+			return indexes[i];
 		}
+		i = -i - 1;
+		long[] newIds = new long[ids.length + 1];
+		RollingIndex<T>[] newIndexes = new RollingIndex[indexes.length + 1];
+		System.arraycopy(ids, 0, newIds, 0, i);
+		System.arraycopy(indexes, 0, newIndexes, 0, i);
+		System.arraycopy(ids, i, newIds, i + 1, ids.length - i);
+		System.arraycopy(indexes, i, newIndexes, i + 1, indexes.length - i);
+		newIds[i] = key;
+		newIndexes[i] = new RollingIndex<T>(String.format("%s[%d]", name, key), size);
+		ids = newIds;
+		indexes = newIndexes;
+		return newIndexes[i];
 	}
 
 	// return key items with index > skip
-	public RResult<Object[]> get(long key, long skipIndex) {
-		RollingIndex items = mapping.get(key);
+	public RResult<RollingIndex.Window<T>> get(long key, long skipIndex) {
+		RollingIndex<T> items = index(key);
 		if (items == null) {
-			return new RResult<Object[]>(null,
+			return new RResult<RollingIndex.Window<T>>(null,
 					StoreErr.newStoreErr(name, StoreErrType.KeyNotFound, Long.toString(key, 10)));
 		}
 
-		RResult<Object[]> skipItems = items.get(skipIndex);
-		Object[] cached = skipItems.result;
-		error err = skipItems.err;
-		if (err != null) {
-			return new RResult<Object[]>(null, err);
+		RResult<RollingIndex.Window<T>> window = items.window(skipIndex);
+		if (window.err != null) {
+			return new RResult<RollingIndex.Window<T>>(null, window.err);
 		}
 
-		return new RResult<Object[]>(cached, null);
+		return window;
 	}
 
-	public RResult<Object> getItem(long key, long index) {
-		return mapping.get(key).getItem(index);
+	public RResult<T> getItem(long key, long index) {
+		RollingIndex<T> items = index(key);
+		if (items == null) {
+			return new RResult<T>(null,
+					StoreErr.newStoreErr(name, StoreErrType.KeyNotFound, Long.toString(key, 10)));
+		}
+		return items.getItem(index);
 	}
 
-	public RResult<Object> getLast(long key) {
-		RollingIndex pe = mapping.get(key);
+	public RResult<T> getLast(long key) {
+		RollingIndex<T> pe = index(key);
 		if (pe == null) {
-			return new RResult<Object>(null,
+			return new RResult<T>(null,
 					StoreErr.newStoreErr(name, StoreErrType.KeyNotFound, Long.toString(key, 10)));
 		}
-		Object[] cached = pe.getLastWindow().result1;
-		if (cached.length == 0) {
-			return new RResult<Object>("", StoreErr.newStoreErr(name, StoreErrType.Empty, ""));
+		if (pe.count == 0) {
+			return new RResult<T>(null, StoreErr.newStoreErr(name, StoreErrType.Empty, ""));
 		}
-		return new RResult<Object>(cached[cached.length - 1], null);
+		return pe.getItem(pe.lastIndex);
 	}
 
-	public error set(long key, Object item, long index) {
-		RollingIndex items = mapping.get(key);
+	public error set(long key, T item, long index) {
+		RollingIndex<T> items = index(key);
 		if (items == null) {
-			items = new RollingIndex(String.format("%s[%d]", name, key), size);
-			mapping.put(key, items);
+			items = addIndex(key);
 		}
 		return items.set(item, index);
 	}
@@ -67,29 +98,28 @@ public class RollingIndexMap {
 	// returns [key] => lastKnownIndex
 	public Map<Long, Long> known() {
 		Map<Long, Long> known = new HashMap<Long, Long>();
-		for (long key : mapping.keySet()) {
-			RollingIndex items = mapping.get(key);
-			Long lastIndex = items.getLastWindow().result2;
-			known.put(key, lastIndex);
+		for (int i = 0; i < ids.length; i++) {
+			known.put(ids[i], indexes[i].lastIndex);
 		}
 		return known;
 	}
 
+	@SuppressWarnings("unchecked")
 	public error reset() {
-		Map<Long, RollingIndex> items = new HashMap<Long, RollingIndex>();
-		for (long key : keys) {
-			items.put(key, new RollingIndex(String.format("%s[%d]", name, key), size));
+		long[] ids = keys.clone();
+		Arrays.sort(ids);
+		RollingIndex<T>[] indexes = new RollingIndex[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			indexes[i] = new RollingIndex<T>(String.format("%s[%d]", name, ids[i]), size);
 		}
-		mapping = items;
+		this.ids = ids;
+		this.indexes = indexes;
 		return null;
 	}
 
-	public void copy(RollingIndexMap other) {
-		for (long key : other.keys) {
-			RollingIndex rollingIndex = new RollingIndex(String.format("%s[%d]", name, key), size);
-			mapping.put(key, rollingIndex);
-			rollingIndex.lastIndex = other.mapping.get(key).lastIndex;
-			rollingIndex.items = other.mapping.get(key).items;
+	public void copy(RollingIndexMap<T> other) {
+		for (int i = 0; i < other.ids.length; i++) {
+			addIndex(other.ids[i]).copy(other.indexes[i]);
 		}
 	}
-}
\ No newline at end of file
+}
@@ -19,12 +19,13 @@ import java.security.SignatureException;
 import java.security.interfaces.ECPublicKey;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
-import org.bouncycastle.asn1.ASN1EncodableVector;
-import org.bouncycastle.asn1.ASN1Integer;
-import org.bouncycastle.asn1.DEROutputStream;
-import org.bouncycastle.asn1.DERSequence;
 import org.bouncycastle.util.io.pem.PemObject;
 import org.bouncycastle.util.io.pem.PemObjectGenerator;
 import org.bouncycastle.util.io.pem.PemWriter;
@@ -34,6 +35,38 @@ import common.RResult3;
 import common.error;
 
 public class Utils {
+	static final int PUB_KEY_CACHE_SIZE = 1024;
+	static final int SIGNATURE_VALUE_SIZE = 32; //bytes of r and s in the compact signature format
+
+	//[public key bytes] => parsed public key
+	private static final Map<ByteBuffer,PublicKey> pubKeys = Collections.synchronizedMap(
+		new LinkedHashMap<ByteBuffer,PublicKey>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ByteBuffer,PublicKey> eldest) {
+				return size() > PUB_KEY_CACHE_SIZE;
+			}
+		});
+
+	private static final ThreadLocal<KeyFactory> keyFactory = ThreadLocal.withInitial(() -> {
+		try {
+			return KeyFactory.getInstance("ECDSA", "BC");
+		} catch (NoSuchAlgorithmException | NoSuchProviderException e) {
+			throw new IllegalStateException(e);
+		}
+	});
+
+	private static final SecureRandom random = new SecureRandom();
+
+	private static final ThreadLocal<Signature> signature = ThreadLocal.withInitial(() -> {
+		try {
+			return Signature.getInstance("ECDSA", "BC");
+		} catch (NoSuchAlgorithmException | NoSuchProviderException e) {
+			throw new IllegalStateException(e);
+		}
+	});
+
 	public static RResult<PrivateKey> GenerateECDSAKey() {
 		PrivateKey privKey;
 		try {
@@ -63,11 +96,16 @@ public class Utils {
 		}
 //		x, y := elliptic.Unmarshal(elliptic.P256(), pub);
 //		return new PublicKey{Curve: elliptic.P256(), X: x, Y: y};
+		ByteBuffer key = ByteBuffer.wrap(pubBytes.clone());
+		PublicKey cached = pubKeys.get(key);
+		if (cached != null) {
+			return cached;
+		}
 		try {
-		    KeyFactory factory = KeyFactory.getInstance("ECDSA", "BC");
-		    ECPublicKey pubKey = (ECPublicKey) factory.generatePublic(new X509EncodedKeySpec(pubBytes));
+		    ECPublicKey pubKey = (ECPublicKey) keyFactory.get().generatePublic(new X509EncodedKeySpec(pubBytes));
+		    pubKeys.put(key, pubKey);
 		    return pubKey;
-		} catch (InvalidKeySpecException | NoSuchAlgorithmException | NoSuchProviderException e1) {
+		} catch (InvalidKeySpecException | IllegalStateException e1) {
 			e1.printStackTrace();
 			return null;
 		}
@@ -82,58 +120,104 @@ public class Utils {
 	}
 
 	public static RResult3<BigInteger, BigInteger> Sign(PrivateKey priv, byte[] hash) {
-		Signature ver;
 		try {
-			//ver = Signature.getInstance("SHA256withECDSA");
-			ver = Signature.getInstance("ECDSA", "BC");
-			ver.initSign(priv, new SecureRandom());
+			Signature ver = signature.get();
+			ver.initSign(priv, random);
 			ver.update(hash);
 			byte[] signature = ver.sign();
 
 			BigInteger R = ECDHPub.extractR(signature);
 			BigInteger S = ECDHPub.extractS(signature);
 			return new RResult3<BigInteger, BigInteger>(R, S, null);
-		} catch (NoSuchAlgorithmException | InvalidKeyException | SignatureException | NoSuchProviderException e) {
+		} catch (InvalidKeyException | SignatureException | IllegalStateException e) {
 			return new RResult3<BigInteger, BigInteger>(null, null,
 					error.Errorf("Signature Verification failed" + e.getMessage()));
 		}
 	}
 
 	public static boolean Verify(PublicKey pub, byte[] hash, BigInteger r, BigInteger s) {
-		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-		DEROutputStream derOutputStream = new DEROutputStream(byteArrayOutputStream);
-		ASN1EncodableVector v = new ASN1EncodableVector();
-		v.add(new ASN1Integer(r));
-		v.add(new ASN1Integer(s));
-		try {
-			derOutputStream.writeObject(new DERSequence(v));
-		} catch (IOException e) {
-			e.printStackTrace();
+		if (pub == null) {
+			return false;
 		}
-		byte[] derSignature = byteArrayOutputStream.toByteArray();
-
-		Signature ver;
 		try {
-			//ver = Signature.getInstance("SHA256withECDSA");
-			ver = Signature.getInstance("ECDSA", "BC");
+			Signature ver = signature.get();
 			ver.initVerify(pub);
 			ver.update(hash);
-			boolean verify = ver.verify(derSignature);
-			return verify;
-		} catch (NoSuchAlgorithmException | InvalidKeyException | SignatureException | NoSuchProviderException e) {
+			return ver.verify(derSignature(r, s));
+		} catch (InvalidKeyException | SignatureException | IllegalStateException e) {
 			e.printStackTrace();
 		}
 		return false;
 	}
 
+	// DER encoding of the ECDSA signature (r, s): SEQUENCE { INTEGER r, INTEGER s }
+	static byte[] derSignature(BigInteger r, BigInteger s) {
+		byte[] rb = r.toByteArray();
+		byte[] sb = s.toByteArray();
+		int len = 2 + rb.length + 2 + sb.length;
+		ByteArrayOutputStream out = new ByteArrayOutputStream(len + 3);
+		out.write(0x30);
+		writeDERLength(out, len);
+		out.write(0x02);
+		writeDERLength(out, rb.length);
+		out.write(rb, 0, rb.length);
+		out.write(0x02);
+		writeDERLength(out, sb.length);
+		out.write(sb, 0, sb.length);
+		return out.toByteArray();
+	}
+
+	private static void writeDERLength(ByteArrayOutputStream out, int len) {
+		if (len >= 0x80) {
+			out.write(0x81);
+		}
+		out.write(len);
+	}
+
+	/**
+	 * Encodes (r, s) in the compact format: the base64 encoding of r and s as
+	 * 32 bytes unsigned big-endian values. Values which do not fit fall back
+	 * to the legacy "r|s" base 36 format.
+	 */
 	public static String encodeSignature(BigInteger r, BigInteger s) {
-		return String.format("%s|%s", r.toString(36), s.toString(36));
+		byte[] compact = new byte[2 * SIGNATURE_VALUE_SIZE];
+		if (!putUnsigned(r, compact, 0) || !putUnsigned(s, compact, SIGNATURE_VALUE_SIZE)) {
+			return String.format("%s|%s", r.toString(36), s.toString(36));
+		}
+		return Base64.getEncoder().withoutPadding().encodeToString(compact);
 	}
 
+	private static boolean putUnsigned(BigInteger v, byte[] dst, int offset) {
+		if (v.signum() < 0 || v.bitLength() > 8 * SIGNATURE_VALUE_SIZE) {
+			return false;
+		}
+		byte[] b = v.toByteArray();
+		int len = Math.min(b.length, SIGNATURE_VALUE_SIZE);
+		System.arraycopy(b, b.length - len, dst, offset + SIGNATURE_VALUE_SIZE - len, len);
+		return true;
+	}
+
+	// DecodeSignature decodes both the compact and the legacy "r|s" formats
 	public static RResult3<BigInteger, BigInteger> DecodeSignature(String sig) {
 		BigInteger r = null;
 		BigInteger s = null;
 
+		if (sig.indexOf('|') < 0) {
+			byte[] compact;
+			try {
+				compact = Base64.getDecoder().decode(sig);
+			} catch (IllegalArgumentException e) {
+				return new RResult3<BigInteger, BigInteger>(r, s, error.Errorf(e.getMessage()));
+			}
+			if (compact.length != 2 * SIGNATURE_VALUE_SIZE) {
+				return new RResult3<BigInteger, BigInteger>(r, s,
+						error.Errorf(String.format("wrong signature length: got %d, want %d", compact.length, 2 * SIGNATURE_VALUE_SIZE)));
+			}
+			r = new BigInteger(1, Arrays.copyOfRange(compact, 0, SIGNATURE_VALUE_SIZE));
+			s = new BigInteger(1, Arrays.copyOfRange(compact, SIGNATURE_VALUE_SIZE, compact.length));
+			return new RResult3<BigInteger, BigInteger>(r, s, null);
+		}
+
 		String[] values = sig.split("\\|");
 		if (values.length != 2) {
 			return new RResult3<BigInteger, BigInteger>(r, s,
@@ -205,6 +289,27 @@ public class Utils {
 		return new RResult<byte[]>(bigInteger.toByteArray(), null);
 	}
 
+	/**
+	 * Decodes hex digits into a byte array of the given length, right-aligned.
+	 * @param digits
+	 * @param length
+	 * @return null if the digits are not hex or do not fit
+	 */
+	public static byte[] decodeHex(String digits, int length) {
+		if (digits.isEmpty() || digits.length() > length * 2) {
+			return null;
+		}
+		byte[] b = new byte[length];
+		for (int i = 0; i < digits.length(); i++) {
+			int d = Character.digit(digits.charAt(digits.length() - 1 - i), 16);
+			if (d < 0) {
+				return null;
+			}
+			b[length - 1 - i / 2] |= (byte) (i % 2 == 0 ? d : d << 4);
+		}
+		return b;
+	}
+
 	public static String keyToString(Key key) {
 		String encodedKey = Base64.getEncoder().encodeToString(key.getEncoded());
 		return encodedKey;
@@ -8,12 +8,14 @@ import common.RResult;
 import common.error;
 import crypto.PemDump;
 import crypto.PemKey;
+import net.NettyTransport;
 import net.NetworkTransport;
 import net.TCPTransport;
 import peers.JSONPeers;
 import peers.Peer;
 import poset.BadgerStore;
 import poset.InmemStore;
+import poset.MmapStore;
 
 public class Lachesis {
 	LachesisConfig Config;
@@ -28,6 +30,23 @@ public class Lachesis {
 	}
 
 	public error initTransport() {
+		if ("netty".equals(Config.TransportType)) {
+			RResult<NettyTransport> newNettyTransport = NettyTransport.NewNettyTransport(
+					Config.BindAddr,
+					null,
+					Config.NodeConfig.getTCPTimeout(),
+					Config.logger
+				);
+			if (newNettyTransport.err != null) {
+				return newNettyTransport.err;
+			}
+			if (Config.MaxInFlight > 0) {
+				newNettyTransport.result.setMaxInFlight(Config.MaxInFlight);
+			}
+			this.Transport = newNettyTransport.result;
+			return null;
+		}
+
 		RResult<NetworkTransport> newTCPTransport = TCPTransport.NewTCPTransport(
 				Config.BindAddr,
 				null,
@@ -42,6 +61,9 @@ public class Lachesis {
 			return err;
 		}
 
+		if (Config.MaxInFlight > 0) {
+			transport.setMaxInFlight(Config.MaxInFlight);
+		}
 		this.Transport = transport;
 
 		return null;
@@ -80,6 +102,15 @@ public  error initStore() {
 		setStore(new InmemStore(Peers, Config.NodeConfig.getCacheSize()));
 
 		Config.logger.debug("created new in-mem store");
+	} else if ("mmap".equals(Config.StoreBackend)) {
+		String mmapDir = String.format("%s/mmap", Config.DataDir);
+		RResult<MmapStore> loadOrCreateMmapStore = MmapStore.LoadOrCreateMmapStore(Peers, Config.NodeConfig.getCacheSize(), mmapDir);
+		if (loadOrCreateMmapStore.err != null) {
+			return loadOrCreateMmapStore.err;
+		}
+		setStore(loadOrCreateMmapStore.result);
+
+		Config.logger.field("path", mmapDir).field("loaded", getStore().needBoostrap()).debug("mmap store");
 	} else {
 		error err;
 
@@ -97,6 +128,18 @@ public  error initStore() {
 		} else {
 			Config.logger.debug("created new badger store from fresh database");
 		}
+
+		node.Config nodeConfig = Config.NodeConfig;
+		loadOrCreateBadgerStore.result.setDurability(nodeConfig.getDurability(),
+			nodeConfig.getBatchWrites(), nodeConfig.getBatchInterval());
+		Config.logger.field("durability", nodeConfig.getDurability()).debug("badger store");
+	}
+
+	if (Config.NodeConfig.getMemoryBudget() > 0) {
+		error err = getStore().setMemoryBudget(Config.NodeConfig.getMemoryBudget());
+		if (err != null) {
+			return err;
+		}
 	}
 
 	return null;
@@ -14,7 +14,10 @@ public class LachesisConfig {
 	public String ServiceAddr;
 	public boolean ServiceOnly;
 	public int MaxPool;
+	public int MaxInFlight; //max RPCs in flight per peer
+	public String TransportType; //"tcp" or "netty"
 	public boolean Store;
+	public String StoreBackend;  //"badger" or "mmap", when Store is set
 	public String LogLevel;
 
 	public node.Config NodeConfig;
@@ -40,8 +43,11 @@ public class LachesisConfig {
 		config.ServiceAddr= ":8000";
 		config.ServiceOnly= false;
 		config.MaxPool=     2;
+		config.MaxInFlight= net.NetworkTransport.DEFAULT_MAX_IN_FLIGHT;
+		config.TransportType="tcp";
 		config.NodeConfig=  Config.DefaultConfig();
 		config.Store=       false;
+		config.StoreBackend="badger";
 		config.LogLevel=    "info";
 		config.setProxy(null);
 		config.logger=      Logger.getLogger(LachesisConfig.class);
@@ -146,6 +152,14 @@ public class LachesisConfig {
 		return MaxPool;
 	}
 
+	public int getMaxInFlight() {
+		return MaxInFlight;
+	}
+
+	public String getTransportType() {
+		return TransportType;
+	}
+
 	public boolean isStore() {
 		return Store;
 	}
@@ -194,6 +208,14 @@ public class LachesisConfig {
 		MaxPool = maxPool;
 	}
 
+	public void setMaxInFlight(int maxInFlight) {
+		MaxInFlight = maxInFlight;
+	}
+
+	public void setTransportType(String transportType) {
+		TransportType = transportType;
+	}
+
 	public void setStore(boolean store) {
 		Store = store;
 	}
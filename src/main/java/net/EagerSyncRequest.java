@@ -2,7 +2,11 @@ package net;
 
 import java.util.Arrays;
 
+import com.google.protobuf.Parser;
+
 import autils.JsonUtils;
+import common.IProto;
+import common.RResult;
 import common.error;
 import poset.WireEvent;
 
@@ -50,6 +54,36 @@ public class EagerSyncRequest implements ParsableMessage {
 		return err;
 	}
 
+	@Override
+	public IProto<EagerSyncRequest, net.proto.EagerSyncRequest> marshaller() {
+		return new IProto<EagerSyncRequest, net.proto.EagerSyncRequest>() {
+			@Override
+			public net.proto.EagerSyncRequest toProto() {
+				net.proto.EagerSyncRequest.Builder builder = net.proto.EagerSyncRequest.newBuilder();
+				builder.setFromID(FromID);
+				if (Events != null) {
+					builder.setEvents(EventBatch.encode(Events));
+				}
+				return builder.build();
+			}
+
+			@Override
+			public void fromProto(net.proto.EagerSyncRequest proto) {
+				FromID = proto.getFromID();
+				RResult<WireEvent[]> decode = EventBatch.decode(proto.getEvents());
+				if (decode.err != null) {
+					throw new IllegalArgumentException(decode.err.Error());
+				}
+				Events = decode.result;
+			}
+
+			@Override
+			public Parser<net.proto.EagerSyncRequest> parser() {
+				return net.proto.EagerSyncRequest.parser();
+			}
+		};
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
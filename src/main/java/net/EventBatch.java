@@ -0,0 +1,315 @@
+package net;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import common.RResult;
+import common.error;
+import poset.FlagTableWrapper;
+import poset.InternalTransaction;
+import poset.WireBlockSignature;
+import poset.WireBody;
+import poset.WireEvent;
+
+/**
+ * EventBatch encodes the WireEvents of a sync as a net.proto.EventBatch.
+ *
+ * Events are grouped by creator, with their indexes as deltas from the
+ * previous event of the creator, their flag tables as changes to the table
+ * of their self-parent when it precedes them in the batch, and their witness
+ * proofs as indexes into the distinct proofs of the batch. A batch larger
+ * than DEFLATE_THRESHOLD is deflated.
+ */
+public class EventBatch {
+	static final int DEFLATE_THRESHOLD = 16 * 1024;
+
+	private EventBatch() {
+	}
+
+	// CreatorState is the state of the events of a creator, while encoding or decoding
+	private static class CreatorState {
+		final long id;
+		final net.proto.CreatorEvents.Builder builder;
+		long index = -1;
+		byte[] flagTableBytes;
+		Map<String,Long> flagTable;
+
+		CreatorState(long id) {
+			this.id = id;
+			this.builder = net.proto.CreatorEvents.newBuilder().setCreatorID(id);
+		}
+
+		// flagTable returns the flag table of the previous event, null if it has none
+		Map<String,Long> flagTable() {
+			if (flagTable == null) {
+				flagTable = decodeFlagTable(flagTableBytes);
+			}
+			return flagTable;
+		}
+
+		void add(WireEvent event, Map<String,Integer> proofs, net.proto.EventBatch.Builder batch) {
+			WireBody body = event.getBody();
+			net.proto.BatchEvent.Builder b = net.proto.BatchEvent.newBuilder()
+				.setIndexDelta(body.getIndex() - index)
+				.setSelfParentDelta(body.getIndex() - body.getSelfParentIndex())
+				.setOtherParentCreatorID(body.getOtherParentCreatorID())
+				.setOtherParentIndex(body.getOtherParentIndex());
+
+			if (body.getTransactions() != null) {
+				for (byte[] transaction : body.getTransactions()) {
+					b.addTransactions(ByteString.copyFrom(transaction));
+				}
+			}
+			if (body.getInternalTransactions() != null) {
+				for (InternalTransaction internalTransaction : body.getInternalTransactions()) {
+					b.addInternalTransactions(internalTransaction.marshaller().toProto());
+				}
+			}
+			if (body.getBlockSignatures() != null) {
+				for (WireBlockSignature blockSignature : body.getBlockSignatures()) {
+					b.addBlockSignatures(blockSignature.marshaller().toProto());
+				}
+			}
+			if (event.getSignature() != null) {
+				b.setSignature(event.getSignature());
+			}
+
+			Map<String,Long> table = decodeFlagTable(event.getFlagTable());
+			Map<String,Long> parentTable = index == body.getSelfParentIndex() ? flagTable() : null;
+			if (table != null && parentTable != null) {
+				b.setFlagTableDiff(true);
+				for (Map.Entry<String,Long> e : table.entrySet()) {
+					if (!e.getValue().equals(parentTable.get(e.getKey()))) {
+						b.putFlagTableChanges(e.getKey(), e.getValue());
+					}
+				}
+				for (String key : parentTable.keySet()) {
+					if (!table.containsKey(key)) {
+						b.addFlagTableRemoved(key);
+					}
+				}
+			} else if (event.getFlagTable() != null) {
+				b.setFlagTable(ByteString.copyFrom(event.getFlagTable()));
+			}
+			index = body.getIndex();
+			flagTable = table;
+
+			if (event.getWitnessProof() != null) {
+				for (String proof : event.getWitnessProof()) {
+					Integer i = proofs.get(proof);
+					if (i == null) {
+						i = proofs.size();
+						proofs.put(proof, i);
+						batch.addProofs(proof);
+					}
+					b.addWitnessProof(i);
+				}
+			}
+			builder.addEvents(b);
+		}
+
+		RResult<WireEvent[]> decode(net.proto.CreatorEvents proto, List<String> proofs) {
+			WireEvent[] events = new WireEvent[proto.getEventsCount()];
+			for (int i = 0; i < events.length; ++i) {
+				net.proto.BatchEvent e = proto.getEvents(i);
+				index += e.getIndexDelta();
+
+				byte[][] transactions = new byte[e.getTransactionsCount()][];
+				for (int k = 0; k < transactions.length; ++k) {
+					transactions[k] = e.getTransactions(k).toByteArray();
+				}
+				InternalTransaction[] internalTransactions = new InternalTransaction[e.getInternalTransactionsCount()];
+				for (int k = 0; k < internalTransactions.length; ++k) {
+					internalTransactions[k] = new InternalTransaction();
+					internalTransactions[k].marshaller().fromProto(e.getInternalTransactions(k));
+				}
+				WireBlockSignature[] blockSignatures = new WireBlockSignature[e.getBlockSignaturesCount()];
+				for (int k = 0; k < blockSignatures.length; ++k) {
+					blockSignatures[k] = new WireBlockSignature(0, "");
+					blockSignatures[k].marshaller().fromProto(e.getBlockSignatures(k));
+				}
+				WireBody body = new WireBody(transactions, internalTransactions, blockSignatures,
+					index - e.getSelfParentDelta(), e.getOtherParentCreatorID(), e.getOtherParentIndex(), id, index);
+
+				if (e.getFlagTableDiff()) {
+					Map<String,Long> parentTable = flagTable();
+					if (parentTable == null) {
+						return new RResult<>(null, error.Errorf(
+							String.format("flag table diff of event %d:%d without self-parent", id, index)));
+					}
+					Map<String,Long> table = new HashMap<String,Long>(parentTable);
+					table.keySet().removeAll(e.getFlagTableRemovedList());
+					table.putAll(e.getFlagTableChangesMap());
+					RResult<byte[]> protoMarshal = new FlagTableWrapper(table).marshaller().protoMarshal();
+					if (protoMarshal.err != null) {
+						return new RResult<>(null, protoMarshal.err);
+					}
+					flagTableBytes = protoMarshal.result;
+					flagTable = table;
+				} else {
+					flagTableBytes = e.getFlagTable().toByteArray();
+					flagTable = null;
+				}
+
+				String[] witnessProof = new String[e.getWitnessProofCount()];
+				for (int k = 0; k < witnessProof.length; ++k) {
+					int p = e.getWitnessProof(k);
+					if (p < 0 || p >= proofs.size()) {
+						return new RResult<>(null, error.Errorf(String.format("invalid witness proof %d", p)));
+					}
+					witnessProof[k] = proofs.get(p);
+				}
+				events[i] = new WireEvent(body, e.getSignature(), flagTableBytes, witnessProof);
+			}
+			return new RResult<>(events, null);
+		}
+	}
+
+	/**
+	 * Encodes the events, in their order.
+	 * @param events
+	 * @return
+	 */
+	public static net.proto.EventBatch encode(WireEvent[] events) {
+		net.proto.EventBatch.Builder builder = net.proto.EventBatch.newBuilder();
+		Map<Long,Integer> groups = new HashMap<Long,Integer>();
+		List<CreatorState> creators = new ArrayList<CreatorState>();
+		Map<String,Integer> proofs = new HashMap<String,Integer>();
+		for (WireEvent event : events) {
+			long creatorID = event.getBody().getCreatorID();
+			Integer g = groups.get(creatorID);
+			if (g == null) {
+				g = creators.size();
+				groups.put(creatorID, g);
+				creators.add(new CreatorState(creatorID));
+			}
+			builder.addOrder(g);
+			creators.get(g).add(event, proofs, builder);
+		}
+		for (CreatorState c : creators) {
+			builder.addCreators(c.builder);
+		}
+
+		net.proto.EventBatch batch = builder.build();
+		int size = batch.getSerializedSize();
+		if (size > DEFLATE_THRESHOLD) {
+			byte[] deflated = deflate(batch.toByteArray());
+			if (deflated.length < size) {
+				batch = net.proto.EventBatch.newBuilder()
+					.setDeflated(ByteString.copyFrom(deflated))
+					.setSize(size)
+					.build();
+			}
+		}
+
+		return batch;
+	}
+
+	/**
+	 * Decodes the events of a batch, in their order.
+	 * @param batch
+	 * @return
+	 */
+	public static RResult<WireEvent[]> decode(net.proto.EventBatch batch) {
+		if (!batch.getDeflated().isEmpty()) {
+			RResult<net.proto.EventBatch> inflate = inflate(batch);
+			if (inflate.err != null) {
+				return new RResult<>(null, inflate.err);
+			}
+			batch = inflate.result;
+		}
+
+		WireEvent[][] groups = new WireEvent[batch.getCreatorsCount()][];
+		for (int g = 0; g < groups.length; ++g) {
+			net.proto.CreatorEvents proto = batch.getCreators(g);
+			RResult<WireEvent[]> decode = new CreatorState(proto.getCreatorID()).decode(proto, batch.getProofsList());
+			if (decode.err != null) {
+				return decode;
+			}
+			groups[g] = decode.result;
+		}
+
+		WireEvent[] events = new WireEvent[batch.getOrderCount()];
+		int[] next = new int[groups.length];
+		for (int i = 0; i < events.length; ++i) {
+			int g = batch.getOrder(i);
+			if (g < 0 || g >= groups.length || next[g] >= groups[g].length) {
+				return new RResult<>(null, error.Errorf(String.format("invalid event batch order %d", g)));
+			}
+			events[i] = groups[g][next[g]++];
+		}
+		for (int g = 0; g < groups.length; ++g) {
+			if (next[g] != groups[g].length) {
+				return new RResult<>(null, error.Errorf("event batch order does not cover its events"));
+			}
+		}
+		return new RResult<>(events, null);
+	}
+
+	// decodeFlagTable returns the decoded flag table, null if empty or invalid
+	private static Map<String,Long> decodeFlagTable(byte[] ft) {
+		if (ft == null || ft.length == 0) {
+			return null;
+		}
+		FlagTableWrapper wrapper = new FlagTableWrapper();
+		if (wrapper.marshaller().protoUnmarshal(ft) != null) {
+			return null;
+		}
+		return wrapper.GetBody();
+	}
+
+	private static byte[] deflate(byte[] data) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+			byte[] buf = new byte[8 * 1024];
+			while (!deflater.finished()) {
+				int n = deflater.deflate(buf);
+				out.write(buf, 0, n);
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static RResult<net.proto.EventBatch> inflate(net.proto.EventBatch batch) {
+		int size = batch.getSize();
+		if (size <= 0 || size > MessageDecoder.MAX_FRAME_SIZE) {
+			return new RResult<>(null, error.Errorf(String.format("invalid event batch size %d", size)));
+		}
+
+		byte[] data = new byte[size];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(batch.getDeflated().toByteArray());
+			int n = 0;
+			while (n < size) {
+				int read = inflater.inflate(data, n, size - n);
+				if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				n += read;
+			}
+			if (n != size) {
+				return new RResult<>(null, error.Errorf("truncated event batch"));
+			}
+			return new RResult<>(net.proto.EventBatch.parseFrom(data), null);
+		} catch (DataFormatException | InvalidProtocolBufferException e) {
+			return new RResult<>(null, error.Errorf(e.getMessage()));
+		} finally {
+			inflater.end();
+		}
+	}
+}
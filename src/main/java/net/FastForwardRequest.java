@@ -1,6 +1,9 @@
 package net;
 
+import com.google.protobuf.Parser;
+
 import autils.JsonUtils;
+import common.IProto;
 import common.error;
 
 public class FastForwardRequest implements ParsableMessage {
@@ -36,6 +39,26 @@ public class FastForwardRequest implements ParsableMessage {
 		return err;
 	}
 
+	@Override
+	public IProto<FastForwardRequest, net.proto.FastForwardRequest> marshaller() {
+		return new IProto<FastForwardRequest, net.proto.FastForwardRequest>() {
+			@Override
+			public net.proto.FastForwardRequest toProto() {
+				return net.proto.FastForwardRequest.newBuilder().setFromID(FromID).build();
+			}
+
+			@Override
+			public void fromProto(net.proto.FastForwardRequest proto) {
+				FromID = proto.getFromID();
+			}
+
+			@Override
+			public Parser<net.proto.FastForwardRequest> parser() {
+				return net.proto.FastForwardRequest.parser();
+			}
+		};
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -2,7 +2,11 @@ package net;
 
 import java.util.Arrays;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Parser;
+
 import autils.JsonUtils;
+import common.IProto;
 import common.error;
 
 public class FastForwardResponse implements ParsableMessage {
@@ -84,6 +88,48 @@ public class FastForwardResponse implements ParsableMessage {
 		return err;
 	}
 
+	@Override
+	public IProto<FastForwardResponse, net.proto.FastForwardResponse> marshaller() {
+		return new IProto<FastForwardResponse, net.proto.FastForwardResponse>() {
+			@Override
+			public net.proto.FastForwardResponse toProto() {
+				net.proto.FastForwardResponse.Builder builder = net.proto.FastForwardResponse.newBuilder();
+				builder.setFromID(FromID);
+				if (Block != null) {
+					builder.setBlock(Block.marshaller().toProto());
+				}
+				if (Frame != null) {
+					builder.setFrame(Frame.marshaller().toProto());
+				}
+				if (Snapshot != null) {
+					builder.setSnapshot(ByteString.copyFrom(Snapshot));
+				}
+				return builder.build();
+			}
+
+			@Override
+			public void fromProto(net.proto.FastForwardResponse proto) {
+				FromID = proto.getFromID();
+				Block = null;
+				if (proto.hasBlock()) {
+					Block = new poset.Block();
+					Block.marshaller().fromProto(proto.getBlock());
+				}
+				Frame = null;
+				if (proto.hasFrame()) {
+					Frame = new poset.Frame();
+					Frame.marshaller().fromProto(proto.getFrame());
+				}
+				Snapshot = proto.getSnapshot().toByteArray();
+			}
+
+			@Override
+			public Parser<net.proto.FastForwardResponse> parser() {
+				return net.proto.FastForwardResponse.parser();
+			}
+		};
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
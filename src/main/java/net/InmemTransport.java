@@ -27,6 +27,7 @@ public class InmemTransport implements Transport {
 	One2OneChannel<RPC> consumerCh;
 	String localAddr;
 	Duration timeout;
+	WireStats wireStats = new WireStats(); //stays empty, no frame is written
 
 	static Map<String, InmemTransport> inmemMedium = new HashMap<String,InmemTransport>();
 
@@ -77,6 +78,11 @@ public class InmemTransport implements Transport {
 		return consumerCh;
 	}
 
+	// WireStats implements the Transport interface.
+	public WireStats getWireStats() {
+		return wireStats;
+	}
+
 	// LocalAddr implements the Transport interface.
 	public String localAddr() {
 		return localAddr;
@@ -0,0 +1,167 @@
+package net;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import autils.Logger;
+import common.RResult;
+import common.error;
+
+/**
+ * MessageDecoder reads the frames written by a MessageEncoder: a 4 bytes
+ * length, then as many bytes of payload. Messages are protobuf encoded,
+ * errors are their UTF-8 string, an empty frame being no error. A response
+ * starts with the ID of its request, read by readID.
+ *
+ * A frame is read fully into a direct buffer of the decoder, frames larger than
+ * the buffer into a buffer of their own, which is dropped once decoded.
+ *
+ * On a non blocking channel, the decoder waits for the frame for up to its
+ * timeout.
+ */
+public class MessageDecoder {
+	private static Logger logger = Logger.getLogger(MessageDecoder.class);
+
+	static final int BUFFER_SIZE = 16 * 1024;
+	public static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+	SocketChannel r;
+	Duration timeout;
+	Selector selector;
+
+	private final ByteBuffer header = ByteBuffer.allocate(4);
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	public MessageDecoder(SocketChannel r, Duration timeout) {
+		this.r = r;
+		this.timeout = timeout;
+	}
+
+	// readRpc waits for the next rpc type, without timeout
+	public RResult<Integer> readRpc() {
+		try {
+			int rpcType = readInt(false);
+			logger.field("rpcType", rpcType).debug("readRpc()");
+			return new RResult<>(rpcType, null);
+		} catch (IOException e) {
+			return new RResult<>(0, error.Errorf(e.getMessage()));
+		}
+	}
+
+	// readID waits for the request ID of the next response, without timeout
+	public RResult<Integer> readID() {
+		try {
+			return new RResult<>(readInt(false), null);
+		} catch (IOException e) {
+			return new RResult<>(0, error.Errorf(e.getMessage()));
+		}
+	}
+
+	// skip reads a frame without decoding it
+	public error skip() {
+		try {
+			readFrame();
+			return null;
+		} catch (IOException e) {
+			return error.Errorf(e.getMessage());
+		}
+	}
+
+	/**
+	 * decode reads an error frame and sets its message in rpcError, if any
+	 */
+	public error decode(error rpcError) {
+		try {
+			ByteBuffer frame = readFrame();
+			if (!frame.hasRemaining()) {
+				return null;
+			}
+			byte[] bytes = new byte[frame.remaining()];
+			frame.get(bytes);
+			rpcError.setErrMessage(new String(bytes, StandardCharsets.UTF_8));
+			logger.field("rpcError", rpcError).debug("decode(err)");
+			return null;
+		} catch (IOException e) {
+			return error.Errorf(e.getMessage());
+		}
+	}
+
+	public <T extends ParsableMessage> error decode(T resp) {
+		try {
+			ByteBuffer frame = readFrame();
+			error err = resp.marshaller().protoUnmarshal(frame);
+			logger.field("resp", resp).debug("decode(T) parsed resp");
+			return err;
+		} catch (IOException e) {
+			return error.Errorf(e.getMessage());
+		}
+	}
+
+	private int readInt(boolean timed) throws IOException {
+		header.clear();
+		readFully(header, timed);
+		header.flip();
+		return header.getInt();
+	}
+
+	// readFrame returns the payload of the next frame, valid until the next read
+	private ByteBuffer readFrame() throws IOException {
+		int length = readInt(true);
+		if (length < 0 || length > MAX_FRAME_SIZE) {
+			throw new IOException(String.format("invalid frame length %d", length));
+		}
+
+		ByteBuffer frame = buffer;
+		if (length > buffer.capacity()) {
+			frame = ByteBuffer.allocate(length);
+		}
+		frame.clear();
+		frame.limit(length);
+		readFully(frame, true);
+		frame.flip();
+		return frame;
+	}
+
+	private void readFully(ByteBuffer b, boolean timed) throws IOException {
+		while (b.hasRemaining()) {
+			int n = r.read(b);
+			if (n < 0) {
+				throw new EOFException("connection closed");
+			}
+			if (n == 0) {
+				await(timed);
+			}
+		}
+	}
+
+	// await waits for the non blocking channel to be readable
+	private void await(boolean timed) throws IOException {
+		if (selector == null) {
+			selector = Selector.open();
+			r.register(selector, SelectionKey.OP_READ);
+		}
+		long millis = timed && timeout != null ? timeout.toMillis() : 0;
+		if (selector.select(millis) == 0 && millis > 0) {
+			throw new SocketTimeoutException(String.format("read timed out after %d ms", millis));
+		}
+		selector.selectedKeys().clear();
+	}
+
+	public void close() {
+		if (selector != null) {
+			try {
+				selector.close();
+			} catch (IOException e) {
+				logger.field("error", e).debug("close()");
+			}
+			selector = null;
+		}
+	}
+}
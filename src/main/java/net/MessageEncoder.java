@@ -0,0 +1,127 @@
+package net;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import autils.Logger;
+import common.RResult;
+import common.error;
+
+/**
+ * MessageEncoder writes the frames read by a MessageDecoder. A request is its
+ * rpc type and its ID followed by the request frame, a response is the ID of
+ * its request, the error frame and the response frame. Each is sent with a
+ * single gathering write.
+ */
+public class MessageEncoder {
+	private static Logger logger = Logger.getLogger(MessageEncoder.class);
+
+	static final byte[] EMPTY = new byte[0];
+
+	SocketChannel w;
+	Duration timeout;
+	Selector selector;
+	WireStats stats; //counts the requests written, if set
+
+	public MessageEncoder(SocketChannel w, Duration timeout) {
+		this.w = w;
+		this.timeout = timeout;
+	}
+
+	public error encode(int rpcType, int id, ParsableMessage args) {
+		logger.field("rpcType", rpcType).field("id", id).field("args", args).debug("encode(rpc) starts");
+		RResult<byte[]> payload = marshal(args);
+		if (payload.err != null) {
+			return payload.err;
+		}
+		ByteBuffer header = ByteBuffer.allocate(12).putInt(rpcType).putInt(id).putInt(payload.result.length);
+		header.flip();
+		error err = write(header, ByteBuffer.wrap(payload.result));
+		if (err == null && stats != null) {
+			stats.written(args, header.capacity() + payload.result.length);
+		}
+		return err;
+	}
+
+	public error encode(int id, error respErr, ParsableMessage resp) {
+		logger.field("id", id).field("respErr", respErr).field("resp", resp).debug("encode(resp) starts");
+		return write(responseFrames(id, respErr, resp));
+	}
+
+	// responseFrames returns the request ID, the error frame and the response
+	// frame. A response which does not marshal is sent as its error.
+	static ByteBuffer[] responseFrames(int id, error respErr, ParsableMessage resp) {
+		RResult<byte[]> marshal = marshal(resp);
+		byte[] payload = marshal.result;
+		if (marshal.err != null) {
+			respErr = marshal.err;
+			payload = EMPTY;
+		}
+		byte[] errBytes = EMPTY;
+		if (respErr != null && respErr.Error() != null) {
+			errBytes = respErr.Error().getBytes(StandardCharsets.UTF_8);
+		}
+
+		ByteBuffer errHeader = ByteBuffer.allocate(8).putInt(id).putInt(errBytes.length);
+		errHeader.flip();
+		ByteBuffer header = ByteBuffer.allocate(4).putInt(payload.length);
+		header.flip();
+		return new ByteBuffer[] { errHeader, ByteBuffer.wrap(errBytes), header, ByteBuffer.wrap(payload) };
+	}
+
+	private static RResult<byte[]> marshal(ParsableMessage o) {
+		if (o == null) {
+			return new RResult<byte[]>(EMPTY, null);
+		}
+		return o.marshaller().protoMarshal();
+	}
+
+	private error write(ByteBuffer... buffers) {
+		long remaining = 0;
+		for (ByteBuffer b : buffers) {
+			remaining += b.remaining();
+		}
+		try {
+			while (remaining > 0) {
+				long n = w.write(buffers);
+				if (n == 0) {
+					await();
+				}
+				remaining -= n;
+			}
+		} catch (IOException e) {
+			return error.Errorf("encode error=" + e.getMessage());
+		}
+		return null;
+	}
+
+	// await waits for the non blocking channel to be writable
+	private void await() throws IOException {
+		if (selector == null) {
+			selector = Selector.open();
+			w.register(selector, SelectionKey.OP_WRITE);
+		}
+		long millis = timeout != null ? timeout.toMillis() : 0;
+		if (selector.select(millis) == 0 && millis > 0) {
+			throw new SocketTimeoutException(String.format("write timed out after %d ms", millis));
+		}
+		selector.selectedKeys().clear();
+	}
+
+	public void close() {
+		if (selector != null) {
+			try {
+				selector.close();
+			} catch (IOException e) {
+				logger.field("error", e).debug("close()");
+			}
+			selector = null;
+		}
+	}
+}
@@ -2,36 +2,243 @@ package net;
 
 import java.io.IOException;
 import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import autils.Logger;
+import channel.ExecService;
+import common.RResult;
 import common.error;
 
+/**
+ * NetConn is the connection to a target, shared by the RPCs to it.
+ *
+ * Requests are written as they are made, with an ID, and a reader thread
+ * matches the responses to the pending calls by their ID. At most maxInFlight
+ * calls are pending at once, a call waits up to the timeout for its turn.
+ *
+ * A call without response after the timeout, or cancelled, gives its turn
+ * back and closes the connection, as the target is not answering.
+ */
 public class NetConn {
+	public static final error ErrConnClosed = error.Errorf("connection closed");
+
 	String target;
 	SocketChannel conn;
-	JsonDecoder dec;
-	JsonEncoder enc;
+	MessageDecoder dec;
+	MessageEncoder enc;
+	Duration timeout;
+
+	ConcurrentMap<Integer, Call<?>> calls;
+	AtomicInteger nextID;
+	Semaphore inFlight;
+	Lock writeLock;
+	volatile boolean closed;
 
 	private static Logger logger = Logger.getLogger(NetConn.class);
 
-	public NetConn(String target, SocketChannel conn) {
+	// expires the calls past their timeout
+	private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "NetConn-timer");
+		t.setDaemon(true);
+		return t;
+	});
+
+	public NetConn(String target, SocketChannel conn, Duration timeout, int maxInFlight) {
+		this(target, conn, timeout, maxInFlight, null);
+	}
+
+	/**
+	 * Creates a connection counting the requests it writes in stats.
+	 * @param target
+	 * @param conn
+	 * @param timeout
+	 * @param maxInFlight
+	 * @param stats
+	 */
+	public NetConn(String target, SocketChannel conn, Duration timeout, int maxInFlight, WireStats stats) {
 		super();
 		this.target = target;
 		this.conn = conn;
+		this.timeout = timeout;
 
 		// Setup encoder/decoders
-		dec = new JsonDecoder(conn);
-		enc = new JsonEncoder(conn);
+		dec = new MessageDecoder(conn, timeout);
+		enc = new MessageEncoder(conn, timeout);
+		enc.stats = stats;
+
+		calls = new ConcurrentHashMap<Integer, Call<?>>();
+		nextID = new AtomicInteger();
+		inFlight = new Semaphore(Math.max(1, maxInFlight));
+		writeLock = new ReentrantLock();
+
+		ExecService.go(() -> readResponses());
 	}
 
-	public error release() {
+	// Call is an RPC waiting for its response
+	static class Call<R extends ParsableMessage> {
+		final R resp;
+		final CompletableFuture<R> future;
+
+		Call(R resp) {
+			this.resp = resp;
+			this.future = new CompletableFuture<R>();
+		}
+
+		void complete(error rpcError) {
+			if (rpcError != null) {
+				future.completeExceptionally(new TransportException(rpcError));
+			} else {
+				future.complete(resp);
+			}
+		}
+	}
+
+	/**
+	 * Sends an RPC, whose future completes with resp once decoded.
+	 * @param rpcType
+	 * @param args
+	 * @param resp
+	 * @return
+	 */
+	public <R extends ParsableMessage> CompletableFuture<R> call(int rpcType, ParsableMessage args, R resp) {
+		Call<R> call = new Call<R>(resp);
+
+		error err = acquire();
+		if (err != null) {
+			call.complete(err);
+			return call.future;
+		}
+
+		int id = nextID.getAndIncrement();
+		calls.put(id, call);
+		abandonOnCompletion(id, call);
+
+		writeLock.lock();
 		try {
-			logger.field("conn", this).debug("release() close connection !!!");
+			err = closed ? ErrConnClosed : enc.encode(rpcType, id, args);
+		} finally {
+			writeLock.unlock();
+		}
+		if (err != null) {
+			if (calls.remove(id) != null) {
+				inFlight.release();
+				call.complete(err);
+			}
+			close(err);
+		}
+		return call.future;
+	}
 
+	// abandonOnCompletion makes a call completed while still pending, by its
+	// timeout or a cancel, leave the calls and close the connection
+	private void abandonOnCompletion(int id, Call<?> call) {
+		ScheduledFuture<?> expiry = null;
+		if (!timeout.isZero()) {
+			expiry = timer.schedule(() -> call.complete(error.Errorf(String.format(
+				"rpc to %s timed out after %d ms", target, timeout.toMillis()))),
+				timeout.toMillis(), TimeUnit.MILLISECONDS);
+		}
+		ScheduledFuture<?> pending = expiry;
+		call.future.whenComplete((r, e) -> {
+			if (pending != null) {
+				pending.cancel(false);
+			}
+			if (calls.remove(id, call)) {
+				inFlight.release();
+				close(e instanceof TransportException ? ((TransportException) e).err : ErrConnClosed);
+			}
+		});
+	}
+
+	private error acquire() {
+		try {
+			if (timeout.isZero()) {
+				inFlight.acquire();
+			} else if (!inFlight.tryAcquire(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+				return error.Errorf(String.format("too many rpcs in flight to %s", target));
+			}
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return error.Errorf(e.getMessage());
+		}
+	}
+
+	// readResponses decodes the responses into their calls, until the connection fails
+	private void readResponses() {
+		while (!closed) {
+			RResult<Integer> readID = dec.readID();
+			error err = readID.err;
+			if (err != null) {
+				close(err);
+				return;
+			}
+
+			Call<?> call = calls.remove(readID.result);
+			error rpcError = new error(null);
+			err = dec.decode(rpcError);
+			if (err == null) {
+				err = call != null ? dec.decode(call.resp) : dec.skip();
+			}
+			if (err != null) {
+				if (call != null) {
+					call.complete(err);
+				}
+				close(err);
+				return;
+			}
+			if (call == null) {
+				logger.field("id", readID.result).field("target", target).warn("response to an unknown request");
+				continue;
+			}
+
+			inFlight.release();
+			call.complete(rpcError.Error() != null ? rpcError : null);
+		}
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	// close closes the connection and fails the pending calls with err
+	private synchronized void close(error err) {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		logger.field("conn", this).field("err", err).debug("close()");
+
+		dec.close();
+		enc.close();
+		try {
 			conn.close();
 		} catch (IOException e) {
-			return error.Errorf(e.getMessage());
+			logger.field("error", e).debug("close()");
 		}
+
+		for (Integer id : calls.keySet()) {
+			Call<?> call = calls.remove(id);
+			if (call != null) {
+				call.complete(err);
+			}
+		}
+	}
+
+	public error release() {
+		logger.field("conn", this).debug("release() close connection !!!");
+		close(ErrConnClosed);
 		return null;
 	}
 
@@ -39,7 +246,7 @@ public class NetConn {
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
 		builder.append("netConn [target=").append(target).append(", conn=").append(conn).
-				append(", dec=").append(dec).append(", enc=").append(enc).append("]");
+				append(", pending=").append(calls.size()).append("]");
 		return builder.toString();
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,77 @@
+package net;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.google.protobuf.AbstractMessage;
+
+import common.RResult;
+import common.error;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+
+/**
+ * NettyCodec encodes the frames of the NettyTransport in pooled ByteBufs, and
+ * decodes them. The frames are length prefixed by the pipeline:
+ *
+ * a request is its rpc type, its ID and the protobuf encoded request;
+ * a response is the ID of its request, the length prefixed error string and
+ * the protobuf encoded response.
+ */
+class NettyCodec {
+	private NettyCodec() {
+	}
+
+	static RResult<ByteBuf> encodeRequest(ByteBufAllocator alloc, int rpcType, int id, ParsableMessage args) {
+		AbstractMessage proto = args.marshaller().toProto();
+		ByteBuf buf = alloc.buffer(8 + proto.getSerializedSize());
+		buf.writeInt(rpcType).writeInt(id);
+		return writeProto(buf, proto);
+	}
+
+	static RResult<ByteBuf> encodeResponse(ByteBufAllocator alloc, int id, error respErr, ParsableMessage resp) {
+		byte[] errBytes = MessageEncoder.EMPTY;
+		if (respErr != null && respErr.Error() != null) {
+			errBytes = respErr.Error().getBytes(StandardCharsets.UTF_8);
+		}
+		AbstractMessage proto = resp == null ? null : resp.marshaller().toProto();
+		int size = proto == null ? 0 : proto.getSerializedSize();
+
+		ByteBuf buf = alloc.buffer(8 + errBytes.length + size);
+		buf.writeInt(id).writeInt(errBytes.length).writeBytes(errBytes);
+		if (proto == null) {
+			return new RResult<>(buf, null);
+		}
+		return writeProto(buf, proto);
+	}
+
+	private static RResult<ByteBuf> writeProto(ByteBuf buf, AbstractMessage proto) {
+		try {
+			proto.writeTo(new ByteBufOutputStream(buf));
+			return new RResult<>(buf, null);
+		} catch (IOException e) {
+			buf.release();
+			return new RResult<>(null, error.Errorf(e.getMessage()));
+		}
+	}
+
+	// decodeRequest decodes the request following the rpc type and ID read from frame
+	static RResult<ParsableMessage> decodeRequest(int rpcType, ByteBuf frame) {
+		RResult<ParsableMessage> newCommand = NetworkTransport.newCommand(rpcType);
+		if (newCommand.err != null) {
+			return newCommand;
+		}
+		error err = newCommand.result.marshaller().protoUnmarshal(frame.nioBuffer());
+		return new RResult<>(newCommand.result, err);
+	}
+
+	// decodeError reads the error string following the ID read from frame, null if none
+	static error decodeError(ByteBuf frame) {
+		int length = frame.readInt();
+		if (length == 0) {
+			return null;
+		}
+		return error.Errorf(frame.readCharSequence(length, StandardCharsets.UTF_8).toString());
+	}
+}
@@ -0,0 +1,502 @@
+package net;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jcsp.lang.Alternative;
+import org.jcsp.lang.Guard;
+import org.jcsp.lang.One2OneChannel;
+import org.jcsp.lang.One2OneChannelInt;
+
+import autils.Logger;
+import channel.ChannelUtils;
+import channel.ExecService;
+import common.NetUtils;
+import common.RResult;
+import common.error;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+
+/**
+ * NettyTransport implements the Transport interface on Netty, with epoll event
+ * loops where available, NIO ones otherwise.
+ *
+ * Frames are length prefixed and encoded in pooled ByteBufs by NettyCodec.
+ * As with the NetworkTransport, the RPCs to a target share a single connection
+ * and are matched to their responses by ID, and an inbound connection stops
+ * being read while it has the maximum of requests in flight.
+ *
+ * Targets are "host:port" addresses, a host alone meaning the port of this
+ * transport.
+ */
+public class NettyTransport implements Transport {
+	private static final Logger logger = Logger.getLogger(NettyTransport.class);
+
+	static final boolean epoll = Epoll.isAvailable();
+
+	One2OneChannel<RPC> consumeCh;
+	Lock consumeLock; // consumeCh takes a single writer at a time
+	One2OneChannelInt shutdownCh;
+	volatile boolean shutdown;
+
+	InetAddress advertise;
+	InetSocketAddress bindAddr;
+	Duration timeout;
+	volatile int maxInFlight;
+
+	EventLoopGroup bossGroup;
+	EventLoopGroup workerGroup;
+	Channel serverChannel;
+	Bootstrap bootstrap;
+	ConcurrentMap<String, Channel> conns;
+	WireStats wireStats;
+
+	/**
+	 * Creates a new NettyTransport listening on bindAddr
+	 * @param bindAddr a bind address in the form of ":9000"
+	 * @param advertise the address to advertise, if not null
+	 * @param timeout
+	 * @param logger
+	 * @return
+	 */
+	public static RResult<NettyTransport> NewNettyTransport(String bindAddr, InetAddress advertise, Duration timeout,
+			Logger logger) {
+		NettyTransport trans;
+		try {
+			InetSocketAddress addr = new InetSocketAddress(NetUtils.parseAddress(bindAddr), NetUtils.parsePort(bindAddr));
+			trans = new NettyTransport(addr, advertise, timeout);
+		} catch (Exception e) {
+			return new RResult<NettyTransport>(null, error.Errorf(e.getMessage()));
+		}
+
+		error err = trans.bind();
+		if (err != null) {
+			trans.close();
+			return new RResult<NettyTransport>(null, err);
+		}
+		return new RResult<NettyTransport>(trans, null);
+	}
+
+	NettyTransport(InetSocketAddress bindAddr, InetAddress advertise, Duration timeout) {
+		this.consumeCh = org.jcsp.lang.Channel.one2one();
+		this.consumeLock = new ReentrantLock();
+		this.shutdownCh = org.jcsp.lang.Channel.one2oneInt();
+		this.bindAddr = bindAddr;
+		this.advertise = advertise;
+		this.timeout = timeout;
+		this.maxInFlight = NetworkTransport.DEFAULT_MAX_IN_FLIGHT;
+		this.conns = new ConcurrentHashMap<String, Channel>();
+		this.wireStats = new WireStats();
+
+		this.bossGroup = epoll ? new EpollEventLoopGroup(1) : new NioEventLoopGroup(1);
+		this.workerGroup = epoll ? new EpollEventLoopGroup() : new NioEventLoopGroup();
+		Class<? extends Channel> channelClass = epoll ? EpollSocketChannel.class : NioSocketChannel.class;
+
+		this.bootstrap = new Bootstrap()
+			.group(workerGroup)
+			.channel(channelClass)
+			.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+			.option(ChannelOption.TCP_NODELAY, true)
+			.option(ChannelOption.SO_KEEPALIVE, true)
+			.handler(new ChannelInitializer<SocketChannel>() {
+				@Override
+				protected void initChannel(SocketChannel ch) {
+					addFraming(ch);
+					ch.pipeline().addLast(new ClientHandler(maxInFlight, wireStats));
+				}
+			});
+	}
+
+	private error bind() {
+		Class<? extends ServerChannel> serverChannelClass = epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+		ServerBootstrap serverBootstrap = new ServerBootstrap()
+			.group(bossGroup, workerGroup)
+			.channel(serverChannelClass)
+			.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+			.childOption(ChannelOption.TCP_NODELAY, true)
+			.childOption(ChannelOption.SO_KEEPALIVE, true)
+			.childHandler(new ChannelInitializer<SocketChannel>() {
+				@Override
+				protected void initChannel(SocketChannel ch) {
+					addFraming(ch);
+					ch.pipeline().addLast(new ServerHandler());
+				}
+			});
+
+		ChannelFuture bind = serverBootstrap.bind(bindAddr).awaitUninterruptibly();
+		if (!bind.isSuccess()) {
+			return error.Errorf(bind.cause().getMessage());
+		}
+		serverChannel = bind.channel();
+		logger.field("addr", localAddr()).field("epoll", epoll).info("Listening");
+		return null;
+	}
+
+	static void addFraming(SocketChannel ch) {
+		ch.pipeline()
+			.addLast(new LengthFieldBasedFrameDecoder(MessageDecoder.MAX_FRAME_SIZE, 0, 4, 0, 4))
+			.addLast(new LengthFieldPrepender(4));
+	}
+
+	// Consumer implements the Transport interface.
+	public One2OneChannel<RPC> getConsumer() {
+		return consumeCh;
+	}
+
+	// WireStats implements the Transport interface.
+	public WireStats getWireStats() {
+		return wireStats;
+	}
+
+	// LocalAddr implements the Transport interface.
+	public String localAddr() {
+		InetSocketAddress addr = (InetSocketAddress) serverChannel.localAddress();
+		String host = advertise != null ? advertise.getHostAddress() : addr.getAddress().getHostAddress();
+		return host + ":" + addr.getPort();
+	}
+
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	// setMaxInFlight sets the maximum RPCs in flight per target, for the connections made next
+	public void setMaxInFlight(int maxInFlight) {
+		this.maxInFlight = maxInFlight;
+	}
+
+	// Sync implements the Transport interface.
+	public error sync(String target, SyncRequest args, SyncResponse resp) {
+		RResult<SyncResponse> r = NetworkTransport.await(syncAsync(target, args), timeout);
+		if (r.result != null) {
+			resp.copy(r.result);
+		}
+		return r.err;
+	}
+
+	// EagerSync implements the Transport interface.
+	public error eagerSync(String target, EagerSyncRequest args, EagerSyncResponse resp) {
+		RResult<EagerSyncResponse> r = NetworkTransport.await(eagerSyncAsync(target, args), timeout);
+		if (r.result != null) {
+			resp.copy(r.result);
+		}
+		return r.err;
+	}
+
+	// FastForward implements the Transport interface.
+	public error fastForward(String target, FastForwardRequest args, FastForwardResponse resp) {
+		RResult<FastForwardResponse> r = NetworkTransport.await(fastForwardAsync(target, args), timeout);
+		if (r.result != null) {
+			resp.copy(r.result);
+		}
+		return r.err;
+	}
+
+	public CompletableFuture<SyncResponse> syncAsync(String target, SyncRequest args) {
+		return genericRPC(target, NetworkTransportType.rpcSync.ordinal(), args, new SyncResponse());
+	}
+
+	public CompletableFuture<EagerSyncResponse> eagerSyncAsync(String target, EagerSyncRequest args) {
+		return genericRPC(target, NetworkTransportType.rpcEagerSync.ordinal(), args, new EagerSyncResponse());
+	}
+
+	public CompletableFuture<FastForwardResponse> fastForwardAsync(String target, FastForwardRequest args) {
+		return genericRPC(target, NetworkTransportType.rpcFastForward.ordinal(), args, new FastForwardResponse());
+	}
+
+	public <R extends ParsableMessage> CompletableFuture<R> genericRPC(String target, int rpcType, ParsableMessage args, R resp) {
+		RResult<Channel> getConn = getConn(target);
+		if (getConn.err != null) {
+			NetConn.Call<R> call = new NetConn.Call<R>(resp);
+			call.complete(getConn.err);
+			return call.future;
+		}
+
+		Channel ch = getConn.result;
+		return ch.pipeline().get(ClientHandler.class).call(ch, rpcType, args, resp, timeout);
+	}
+
+	/**
+	 * getConn returns the connection to a target, shared by all the RPCs to it,
+	 * connecting to it if there is none.
+	 * @param target
+	 * @return
+	 */
+	RResult<Channel> getConn(String target) {
+		Channel ch = conns.get(target);
+		if (ch != null && ch.isActive()) {
+			return new RResult<Channel>(ch, null);
+		}
+
+		InetSocketAddress addr;
+		try {
+			int port = NetUtils.parsePort(target);
+			addr = new InetSocketAddress(NetUtils.parseAddress(target),
+				port != 0 ? port : ((InetSocketAddress) serverChannel.localAddress()).getPort());
+		} catch (Exception e) {
+			return new RResult<Channel>(null, error.Errorf(e.getMessage()));
+		}
+
+		logger.field("target", target).field("timeout", timeout.toMillis()).debug("Dialing");
+		ChannelFuture connect = bootstrap.connect(addr);
+		if (!timeout.isZero() && !connect.awaitUninterruptibly(timeout.toMillis())) {
+			connect.cancel(true);
+			return new RResult<Channel>(null, error.Errorf(String.format("connect to %s timed out", target)));
+		}
+		connect.awaitUninterruptibly();
+		if (!connect.isSuccess()) {
+			return new RResult<Channel>(null, error.Errorf(connect.cause().getMessage()));
+		}
+
+		// Keep the first connection, if another RPC connected meanwhile
+		Channel newCh = connect.channel();
+		synchronized (conns) {
+			ch = conns.get(target);
+			if (ch == null || !ch.isActive()) {
+				conns.put(target, newCh);
+				return new RResult<Channel>(newCh, null);
+			}
+		}
+		newCh.close();
+		return new RResult<Channel>(ch, null);
+	}
+
+	/**
+	 * Handles a decoded command by dispatching it to the consumer and waiting
+	 * for its response.
+	 * @param command
+	 * @return
+	 */
+	RResult<RPCResponse> handleCommand(ParsableMessage command) {
+		One2OneChannel<RPCResponse> respCh = org.jcsp.lang.Channel.one2one();
+		consumeLock.lock();
+		try {
+			consumeCh.out().write(new RPC(command, respCh));
+		} finally {
+			consumeLock.unlock();
+		}
+
+		final Alternative alt = new Alternative(new Guard[] { respCh.in(), shutdownCh.in() });
+		final int RESPONSE = 0, SHUTDOWN = 1;
+
+		switch (alt.priSelect()) {
+		case RESPONSE:
+			return new RResult<>(respCh.in().read(), null);
+		case SHUTDOWN:
+			shutdownCh.in().read();
+			return new RResult<>(null, NetworkTransport.ErrTransportShutdown);
+		}
+		return new RResult<>(null, NetworkTransport.ErrTransportShutdown);
+	}
+
+	// Close is used to stop the transport.
+	public synchronized error close() {
+		if (shutdown) {
+			return null;
+		}
+		shutdown = true;
+		ChannelUtils.close(shutdownCh);
+
+		for (Channel ch : conns.values()) {
+			ch.close();
+		}
+		if (serverChannel != null) {
+			serverChannel.close().awaitUninterruptibly();
+		}
+		bossGroup.shutdownGracefully(0, timeout.toMillis(), TimeUnit.MILLISECONDS);
+		workerGroup.shutdownGracefully(0, timeout.toMillis(), TimeUnit.MILLISECONDS);
+		return null;
+	}
+
+	/**
+	 * ServerHandler decodes the requests of an inbound connection and writes
+	 * their responses.
+	 */
+	class ServerHandler extends SimpleChannelInboundHandler<ByteBuf> {
+		int inFlight; // accessed from the event loop of the connection only
+
+		@Override
+		protected void channelRead0(ChannelHandlerContext ctx, ByteBuf frame) {
+			int rpcType = frame.readInt();
+			int id = frame.readInt();
+			RResult<ParsableMessage> decodeRequest = NettyCodec.decodeRequest(rpcType, frame);
+			if (decodeRequest.err != null) {
+				logger.field("error", decodeRequest.err).error("Failed to decode incoming command");
+				ctx.close();
+				return;
+			}
+
+			// Stop reading the connection while it has too many requests in flight
+			if (++inFlight >= maxInFlight) {
+				ctx.channel().config().setAutoRead(false);
+			}
+
+			ParsableMessage command = decodeRequest.result;
+			ExecService.go(() -> {
+				RResult<RPCResponse> handleCommand = handleCommand(command);
+				RResult<ByteBuf> encodeResponse = handleCommand.err != null ? null
+					: NettyCodec.encodeResponse(ctx.alloc(), id, handleCommand.result.error, handleCommand.result.response);
+
+				ctx.executor().execute(() -> {
+					if (handleCommand.err != null || encodeResponse.err != null) {
+						ctx.close();
+						return;
+					}
+					// the frame is written with its 4 bytes length prefix
+					ParsableMessage response = handleCommand.result.response;
+					int frameBytes = 4 + encodeResponse.result.readableBytes();
+					ctx.writeAndFlush(encodeResponse.result).addListener(f -> {
+						if (f.isSuccess()) {
+							wireStats.written(response, frameBytes);
+						}
+					});
+					if (--inFlight < maxInFlight) {
+						ctx.channel().config().setAutoRead(true);
+					}
+				});
+			});
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+			logger.field("error", cause).error("Inbound connection failed");
+			ctx.close();
+		}
+	}
+
+	/**
+	 * ClientHandler matches the responses of a connection to the pending calls
+	 * by ID.
+	 */
+	static class ClientHandler extends SimpleChannelInboundHandler<ByteBuf> {
+		final ConcurrentMap<Integer, NetConn.Call<?>> calls = new ConcurrentHashMap<Integer, NetConn.Call<?>>();
+		final AtomicInteger nextID = new AtomicInteger();
+		final Semaphore inFlight;
+		final WireStats stats;
+
+		ClientHandler(int maxInFlight, WireStats stats) {
+			this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+			this.stats = stats;
+		}
+
+		<R extends ParsableMessage> CompletableFuture<R> call(Channel ch, int rpcType, ParsableMessage args, R resp,
+				Duration timeout) {
+			NetConn.Call<R> call = new NetConn.Call<R>(resp);
+			try {
+				if (timeout.isZero()) {
+					inFlight.acquire();
+				} else if (!inFlight.tryAcquire(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+					call.complete(error.Errorf(String.format("too many rpcs in flight to %s", ch.remoteAddress())));
+					return call.future;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				call.complete(error.Errorf(e.getMessage()));
+				return call.future;
+			}
+
+			int id = nextID.getAndIncrement();
+			RResult<ByteBuf> encodeRequest = NettyCodec.encodeRequest(ch.alloc(), rpcType, id, args);
+			if (encodeRequest.err != null) {
+				inFlight.release();
+				call.complete(encodeRequest.err);
+				return call.future;
+			}
+
+			calls.put(id, call);
+			abandonOnCompletion(ch, id, call, timeout);
+			int frameBytes = 4 + encodeRequest.result.readableBytes();
+			ch.writeAndFlush(encodeRequest.result).addListener(f -> {
+				if (f.isSuccess()) {
+					stats.written(args, frameBytes);
+				} else if (calls.remove(id) != null) {
+					inFlight.release();
+					call.complete(error.Errorf(f.cause().getMessage()));
+				}
+			});
+			return call.future;
+		}
+
+		// abandonOnCompletion makes a call completed while still pending, by its
+		// timeout or a cancel, leave the calls and close the channel
+		private void abandonOnCompletion(Channel ch, int id, NetConn.Call<?> call, Duration timeout) {
+			ScheduledFuture<?> expiry = null;
+			if (!timeout.isZero()) {
+				expiry = ch.eventLoop().schedule(() -> call.complete(error.Errorf(String.format(
+					"rpc to %s timed out after %d ms", ch.remoteAddress(), timeout.toMillis()))),
+					timeout.toMillis(), TimeUnit.MILLISECONDS);
+			}
+			ScheduledFuture<?> pending = expiry;
+			call.future.whenComplete((r, e) -> {
+				if (pending != null) {
+					pending.cancel(false);
+				}
+				if (calls.remove(id, call)) {
+					inFlight.release();
+					ch.close();
+				}
+			});
+		}
+
+		@Override
+		protected void channelRead0(ChannelHandlerContext ctx, ByteBuf frame) {
+			int id = frame.readInt();
+			error rpcError = NettyCodec.decodeError(frame);
+			NetConn.Call<?> call = calls.remove(id);
+			if (call == null) {
+				logger.field("id", id).warn("response to an unknown request");
+				return;
+			}
+			inFlight.release();
+
+			error err = call.resp.marshaller().protoUnmarshal(frame.nioBuffer());
+			call.complete(err != null ? err : rpcError);
+		}
+
+		@Override
+		public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+			for (Integer id : calls.keySet()) {
+				NetConn.Call<?> call = calls.remove(id);
+				if (call != null) {
+					call.complete(NetConn.ErrConnClosed);
+				}
+			}
+			super.channelInactive(ctx);
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+			logger.field("error", cause).error("Outbound connection failed");
+			ctx.close();
+		}
+	}
+}
@@ -1,17 +1,19 @@
 package net;
 
 import java.io.IOException;
-import java.net.SocketException;
-import java.nio.ByteBuffer;
+import java.io.UncheckedIOException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.time.Duration;
 import java.util.Iterator;
 import java.util.Set;
-import java.util.Stack;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -35,52 +37,107 @@ import common.error;
  * etc.
  *
  * This transport is very simple and lightweight. Each RPC request is framed by
- * sending a byte that indicates the message type, followed by the json encoded
- * request. The response is an error string followed by the response object,
- * both are encoded using msgpack
+ * sending an int that indicates the message type and the request ID, followed
+ * by the length prefixed, protobuf encoded request. The response is the request
+ * ID, a length prefixed error string and the length prefixed response, see
+ * MessageEncoder.
+ *
+ * The RPCs to a target are multiplexed over a single connection: they are
+ * sent without waiting for the previous responses, which are matched to their
+ * requests by ID, in any order.
+ *
+ * Inbound connections are served by a few reactors, each a selector thread
+ * reading the requests of its connections without blocking. A decoded request
+ * is handed to the consumer from another thread. A connection is not read
+ * while it has the maximum of requests in flight, so that a slow node pushes
+ * back on its peers through TCP.
  */
 public class NetworkTransport implements Transport {
 
 	public static final error ErrTransportShutdown = error.Errorf("transport shutdown");
 
+	// DEFAULT_MAX_IN_FLIGHT is the default maximum of RPCs in flight per target
+	public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+
+	// DEFAULT_REACTORS is the default number of selector threads for inbound connections
+	public static final int DEFAULT_REACTORS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
 	Logger logger;
 
-	ConcurrentMap<String, Stack<NetConn>> connPool;
+	ConcurrentMap<String, NetConn> conns;
 	int maxPool;
+	volatile int maxInFlight;
 
 	One2OneChannel<RPC> consumeCh;
+	Lock consumeLock; // consumeCh takes a single writer at a time
 
-	boolean shutdown;
+	volatile boolean shutdown;
 	One2OneChannelInt shutdownCh; // chan struct{}
 	Lock shutdownLock;
 
 	StreamLayer stream;
+	Reactor[] reactors;
+	int nextReactor;
 
 	Duration timeout;
+	WireStats wireStats;
 
 	/**
 	 *  Creates a new network transport with the given dialer
-	 *  and listener. The maxPool controls how many connections we will pool (per
-	 *  target). The is used to apply I/O deadlines.
+	 *  and listener. All the RPCs to a target share a single connection, the
+	 *  maxPool is kept for compatibility. The timeout is used to apply I/O
+	 *  deadlines.
 	 * @param stream
 	 * @param maxPool
 	 * @param timeout
 	 * @param logger
 	 */
 	public NetworkTransport(StreamLayer stream, int maxPool, Duration timeout, Logger logger) {
+		this(stream, maxPool, timeout, logger, DEFAULT_REACTORS);
+	}
+
+	/**
+	 *  Creates a new network transport serving inbound connections with the
+	 *  given number of reactor threads.
+	 * @param stream
+	 * @param maxPool
+	 * @param timeout
+	 * @param logger
+	 * @param reactors
+	 */
+	public NetworkTransport(StreamLayer stream, int maxPool, Duration timeout, Logger logger, int reactors) {
 		//if (logger == null) {
 			logger = Logger.getLogger(this.getClass());
 		//}
-		this.connPool = new ConcurrentHashMap<String, Stack<NetConn>>();
+		this.conns = new ConcurrentHashMap<String, NetConn>();
 		this.consumeCh = Channel.one2one(); // make(chan RPC),
+		this.consumeLock = new ReentrantLock();
 		this.logger = logger;
 		this.maxPool = maxPool;
+		this.maxInFlight = DEFAULT_MAX_IN_FLIGHT;
 		this.shutdownCh = Channel.one2oneInt();
 		this.shutdownLock = new ReentrantLock();
 		this.stream = stream;
 		this.timeout = timeout;
+		this.wireStats = new WireStats();
 		this.logger = logger;
 
+		this.reactors = new Reactor[Math.max(1, reactors)];
+		for (int i = 0; i < this.reactors.length; i++) {
+			try {
+				this.reactors[i] = new Reactor(this);
+			} catch (IOException e) {
+				for (int k = 0; k < i; k++) {
+					this.reactors[k].closeSelector();
+				}
+				stream.close();
+				throw new UncheckedIOException("cannot open the reactor selector", e);
+			}
+		}
+		for (Reactor reactor : this.reactors) {
+			ExecService.go(reactor);
+		}
+
 		logger.debug("NetworkTransport()");
 		ExecService.go(() -> listen());
 	}
@@ -90,9 +147,15 @@ public class NetworkTransport implements Transport {
 		shutdownLock.lock();
 		try {
 			if (!shutdown) {
+				shutdown = true;
 				ChannelUtils.close(shutdownCh);
 				stream.close();
-				shutdown = true;
+				for (Reactor reactor : reactors) {
+					reactor.close();
+				}
+				for (NetConn conn : conns.values()) {
+					conn.release();
+				}
 			}
 			return null;
 		} finally {
@@ -105,6 +168,11 @@ public class NetworkTransport implements Transport {
 		return consumeCh;
 	}
 
+	// WireStats implements the Transport interface.
+	public WireStats getWireStats() {
+		return wireStats;
+	}
+
 	// LocalAddr implements the Transport interface.
 	public String localAddr() {
 		return stream.addr().getHostAddress();
@@ -142,35 +210,17 @@ public class NetworkTransport implements Transport {
 
 
 	/**
-	 * Grabs a pooled connection.
-	 * @param target
-	 * @return
-	 */
-	public NetConn getPooledConn(String target) {
-		Stack<NetConn> conns = connPool.get(target);
-		if (conns == null || conns.size() == 0) {
-			connPool.put(target, new Stack<>());
-			return null;
-		}
-
-		NetConn conn = conns.pop();
-		connPool.put(target, conns);
-		return conn;
-	}
-
-	/**
-	 * getConn is used to get a connection from the pool.
+	 * getConn is used to get the connection to a target, shared by all the
+	 * RPCs to it, dialing it if there is none.
 	 * @param target
 	 * @param timeout
 	 * @return
 	 */
 	public RResult<NetConn> getConn(String target, Duration timeout) {
-		// Check for a pooled conn
-		NetConn conn = getPooledConn(target);
-		if (conn != null) {
+		NetConn conn = conns.get(target);
+		if (conn != null && !conn.isClosed()) {
 			return new RResult<NetConn>(conn, null);
 		}
-		logger.field("conn", conn).debug("after pooled connection");
 
 		// Dial a new connection
 		logger.field("target", target)
@@ -183,314 +233,206 @@ public class NetworkTransport implements Transport {
 			return new RResult<NetConn>(null, err);
 		}
 
-		// Wrap the conn
-		conn = new NetConn(target, conn2);
-
-		// Done
-		return new RResult<NetConn>(conn, null);
-	}
-
-	/**
-	 * Returns a connection back to the pool.
-	 * @param conn
-	 */
-	public void returnConn(NetConn conn) {
-		String key = conn.target;
-		Stack<NetConn> conns = connPool.get(key);
-
-		if (!IsShutdown() && conns != null && conns.size() < maxPool) {
-			conns.add(conn);
-		} else {
-			conn.release();
+		// Wrap the conn, unless another RPC has dialed the target meanwhile
+		NetConn newConn = new NetConn(target, conn2, timeout, maxInFlight, wireStats);
+		synchronized (conns) {
+			conn = conns.get(target);
+			if (conn == null || conn.isClosed()) {
+				conns.put(target, newConn);
+				return new RResult<NetConn>(newConn, null);
+			}
 		}
+		newConn.release();
+		return new RResult<NetConn>(conn, null);
 	}
 
 	// Sync implements the Transport interface.
 	public error sync(String target, SyncRequest args, SyncResponse resp) {
-		return genericRPC(target, NetworkTransportType.rpcSync.ordinal(), args, resp);
+		RResult<SyncResponse> r = await(syncAsync(target, args));
+		if (r.result != null) {
+			resp.copy(r.result);
+		}
+		return r.err;
 	}
 
 	// EagerSync implements the Transport interface.
 	public error eagerSync(String target, EagerSyncRequest args, EagerSyncResponse resp) {
-		return genericRPC(target, NetworkTransportType.rpcEagerSync.ordinal(), args, resp);
+		RResult<EagerSyncResponse> r = await(eagerSyncAsync(target, args));
+		if (r.result != null) {
+			resp.copy(r.result);
+		}
+		return r.err;
 	}
 
 	// FastForward implements the Transport interface.
 	public error fastForward(String target, FastForwardRequest args, FastForwardResponse resp) {
-		return genericRPC(target, NetworkTransportType.rpcFastForward.ordinal(), args, resp);
+		RResult<FastForwardResponse> r = await(fastForwardAsync(target, args));
+		if (r.result != null) {
+			resp.copy(r.result);
+		}
+		return r.err;
+	}
+
+	public CompletableFuture<SyncResponse> syncAsync(String target, SyncRequest args) {
+		return genericRPC(target, NetworkTransportType.rpcSync.ordinal(), args, new SyncResponse());
+	}
+
+	public CompletableFuture<EagerSyncResponse> eagerSyncAsync(String target, EagerSyncRequest args) {
+		return genericRPC(target, NetworkTransportType.rpcEagerSync.ordinal(), args, new EagerSyncResponse());
+	}
+
+	public CompletableFuture<FastForwardResponse> fastForwardAsync(String target, FastForwardRequest args) {
+		return genericRPC(target, NetworkTransportType.rpcFastForward.ordinal(), args, new FastForwardResponse());
 	}
 
 	/**
-	 * Handles a simple request/response RPC.
+	 * Sends an RPC on the connection to the target. The future completes with
+	 * resp once decoded, or exceptionally with a TransportException.
 	 * @param target
 	 * @param rpcType
 	 * @param args
 	 * @param resp
 	 * @return
 	 */
-	public error genericRPC(String target, int rpcType, ParsableMessage args, ParsableMessage resp) {
+	public <R extends ParsableMessage> CompletableFuture<R> genericRPC(String target, int rpcType, ParsableMessage args, R resp) {
 		logger.field("target", target).field("rpcType", rpcType).debug("genericRPC");
 
 		// Get a conn
 		RResult<NetConn> connCall = getConn(target, timeout);
-		NetConn conn = connCall.result;
 		error err = connCall.err;
 		if (err != null) {
-			return err;
+			CompletableFuture<R> future = new CompletableFuture<R>();
+			future.completeExceptionally(new TransportException(err));
+			return future;
 		}
 
-		// Set a deadline
-		if (timeout.getSeconds() > 0) {
-			logger.field("timeout", timeout.toMillis()).debug("SetSoTimeout()");
-			try {
-				//conn.conn.configureBlocking(false);
-				conn.conn.socket().setSoTimeout((int) timeout.toMillis());
-			} catch (SocketException e) {
-				e.printStackTrace();
-				return error.Errorf(e.getMessage());
-			}
-		}
-
-		// Send the RPC
-		err = sendRPC(conn, rpcType, args);
-		logger.field("err", err).debug("sendRPC finished");
-
-		if (err != null) {
-			return err;
-		}
-
-		// Decode the response
-		logger.field("conn", conn).debug("sendRPC decoding response from conn");
-		RResult<Boolean> decodeResponse = decodeResponse(conn, resp);
-		boolean canReturn = decodeResponse.result;
-		err = decodeResponse.err;
-		logger.field("err", err).field("canReturn", canReturn).debug("decodeResponse finished");
-		if (canReturn) {
-			returnConn(conn);
-		}
-
-		return err;
+		// Send the RPC, the response is matched by its request ID
+		return connCall.result.call(rpcType, args, resp);
 	}
 
-	/**
-	 * Encode and send the RPC.
-	 * @param conn
-	 * @param rpcType
-	 * @param args
-	 * @return
-	 */
-	public error sendRPC(NetConn conn, int rpcType, ParsableMessage args) {
-		logger.field("conn", conn)
-			.field("rpcType", rpcType)
-			.field("args", args).debug("sendRPC()");
-
-		// Write the request type
-		error err = conn.enc.encode(rpcType);
-		logger.field("err", err).debug("sendRPC() encoding rpctype");
-		if (err != null) {
-			conn.release();
-			return err;
-		}
-
-		// Send the request
-		err = conn.enc.encode(args);
-		logger.field("err", err).debug("sendRPC() Encoding finished");
-
-		if (err != null) {
-			conn.release();
-			return err;
-		}
-		return null;
+	<R> RResult<R> await(CompletableFuture<R> future) {
+		return await(future, timeout);
 	}
 
 	/**
-	 * Decode an RPC response and reports whether the connection can be reused.
-	 * @param conn
-	 * @param resp
+	 * Waits for an RPC for up to the timeout, zero waiting without limit.
+	 * @param future
+	 * @param timeout
 	 * @return
 	 */
-	public RResult<Boolean> decodeResponse(NetConn conn, ParsableMessage resp) {
-		logger.field("resp", resp).debug("decodeResponse() start");
-
-		// Decode the error if any
-		error rpcError = new error(null);
-		error err = conn.dec.decode(rpcError);
-		logger.field("rpcError", rpcError)
-			.field("err", err).debug("decodeResponse() decoded the error");
-
-		if (err != null) {
-			conn.release();
-			return new RResult<>(false, err);
-		}
-
-		// Decode the response
-		err = conn.dec.decode(resp);
-		logger.field("resp", resp)
-			.field("err", err).debug("decodeResponse() decoded resp");
-
-		if (err != null) {
-			conn.release();
-			return new RResult<>(false, err);
+	static <R> RResult<R> await(CompletableFuture<R> future, Duration timeout) {
+		try {
+			R resp = timeout.isZero() ? future.get() : future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+			return new RResult<R>(resp, null);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof TransportException) {
+				return new RResult<R>(null, ((TransportException) e.getCause()).err);
+			}
+			return new RResult<R>(null, error.Errorf(e.getCause().getMessage()));
+		} catch (TimeoutException e) {
+			// gives the call's turn back on its connection
+			future.cancel(false);
+			return new RResult<R>(null, error.Errorf(String.format("rpc timed out after %d ms", timeout.toMillis())));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new RResult<R>(null, error.Errorf(e.getMessage()));
 		}
+	}
 
-		// Format an error if any
-		if (rpcError.Error() != null) {
-			return new RResult<>(true, rpcError);
-		}
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
 
-		return new RResult<>(true, null);
+	// setMaxInFlight sets the maximum RPCs in flight per target, for the connections dialed next
+	public void setMaxInFlight(int maxInFlight) {
+		this.maxInFlight = maxInFlight;
 	}
 
 	/**
-	 * Listening and handling incoming connections.
+	 * Listening and handing incoming connections to the reactors.
 	 */
 	public void listen() {
 		logger.field("addr", localAddr()).info("Listening");
 		Selector selector = stream.selector();
 		try {
-
 			while (true) {
 				// Accept incoming connections
 				selector.select();
+				if (shutdown) {
+					return;
+				}
 
-	            Set<SelectionKey> selectedKeys = selector.selectedKeys();
-	            Iterator<SelectionKey> iter = selectedKeys.iterator();
-
-	            ByteBuffer buffer = ByteBuffer.allocate(9056);
-	            while (iter.hasNext()) {
-	                SelectionKey key = iter.next();
-
-	                if (key.isAcceptable()) {
-	                	RResult<SocketChannel> accept = stream.accept();
-	        			SocketChannel conn = accept.result;
-	        			error err = accept.err;
-	        			if (err != null) {
-	        				if (IsShutdown()) {
-	        					return;
-	        				}
-	        				logger.field("error", err).error("Failed to accept connection");
-	        				continue;
-	        			}
-	        			logger.field("node", conn.socket().getLocalAddress())
-	        					.field("from", conn.socket().getRemoteSocketAddress())
-	        					.field("conn", conn)
-	        					.info("connection accepted. server socket");
-
-	        			//ExecService.go(() -> handleConn(conn));
-	        			handleConn(conn);
-	                }
-
-	                if (key.isReadable()) {
-	                	logger.field("key", key).debug("TBD XXXX key is in readable mode");
-	                	// Handle the connection
-	                	SocketChannel client = (SocketChannel) key.channel();
-	                	buffer.clear();
-	                	client.read(buffer);
-
-	                    buffer.flip();
-	                    client.write(buffer);
-	                    buffer.clear();
-	                }
-	                if (key.isWritable()) {
-	                	logger.field("key", key).debug("TBD YYYY key is in writable mode");
-	                	// Handle the connection
-	                }
-
-	                iter.remove();
-	            }
-			}
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-	}
-
-	/**
-	 * Handle an inbound connection for its lifespan.
-	 * @param conn
-	 */
-	public void handleConn(SocketChannel conn) {
-		logger.error("handleConn() conn=" + conn);
-		try {
-			JsonDecoder dec = new JsonDecoder(conn);
-			JsonEncoder enc = new JsonEncoder(conn);
+				Set<SelectionKey> selectedKeys = selector.selectedKeys();
+				Iterator<SelectionKey> iter = selectedKeys.iterator();
+				while (iter.hasNext()) {
+					SelectionKey key = iter.next();
+					iter.remove();
+					if (!key.isValid() || !key.isAcceptable()) {
+						continue;
+					}
 
-			while (true) {
-				logger.error("handleConn() LOOPING conn=" + conn);
-				error err = handleCommand(dec, enc);
-				logger.field("err", err).error("handleConn() handleCommand finished");
-
-				if (err != null) {
-					// TODO: should we check for ErrTransportShutdown here as well?
-					// if (err != io.EOF && err != ErrTransportShutdown) {
-					if (err != ErrTransportShutdown) {
-						logger.field("error", err).error("Failed to decode incoming command");
+					RResult<SocketChannel> accept = stream.accept();
+					SocketChannel conn = accept.result;
+					error err = accept.err;
+					if (err != null) {
+						if (IsShutdown()) {
+							return;
+						}
+						logger.field("error", err).error("Failed to accept connection");
+						continue;
 					}
-					return;
+					if (conn == null) {
+						continue;
+					}
+					logger.field("node", conn.socket().getLocalAddress())
+						.field("from", conn.socket().getRemoteSocketAddress())
+						.debug("connection accepted. server socket");
+
+					// Handle the connection, spreading connections over the reactors
+					Reactor reactor = reactors[nextReactor];
+					nextReactor = (nextReactor + 1) % reactors.length;
+					reactor.register(conn);
 				}
 			}
-		} finally {
-			try {
-				conn.close();
-			} catch (IOException e) {
-				e.printStackTrace();
-				logger.error("Connection close error " + e);
-				return;
-			}
+		} catch (IOException e) {
+			logger.field("error", e).error("listen() stopped");
 		}
 	}
 
 	/**
-	 * Handles a command by decoding and dispatching a single command.
-	 * @param r
-	 * @param dec
-	 * @param enc
+	 * Creates the command of an rpc type, to decode a request in.
+	 * @param rpcType
 	 * @return
 	 */
-	public error handleCommand(JsonDecoder dec, JsonEncoder enc) {
-		// Get the rpc type
-		RResult<Integer> readRpc = dec.readRpc();
-		int rpcType = readRpc.result;
-		error err = readRpc.err;
-		if (err != null) {
-			return err;
+	static RResult<ParsableMessage> newCommand(int rpcType) {
+		if (rpcType < 0 || rpcType >= NetworkTransportType.values.length) {
+			return new RResult<>(null, error.Errorf(String.format("unknown rpc type %d", rpcType)));
 		}
 
-		// Create the RPC object
-		One2OneChannel<RPCResponse> respCh = Channel.one2one(); // make(chan RPCResponse, 1);
-		RPC rpc = new RPC(respCh);
-
-		NetworkTransportType retrievedRpc = NetworkTransportType.values[rpcType];
-		logger.field("retrievedRpc", retrievedRpc).debug("handleCommand()");
-
-		// Decode the command
-		switch (retrievedRpc) {
+		switch (NetworkTransportType.values[rpcType]) {
 		case rpcSync:
-			SyncRequest sreq = new SyncRequest();
-			err = dec.decode(sreq);
-			if (err != null) {
-				return err;
-			}
-			rpc.setCommand(sreq);
-			break;
+			return new RResult<>(new SyncRequest(), null);
 		case rpcEagerSync:
-			EagerSyncRequest esreq = new EagerSyncRequest();
-			err = dec.decode(esreq);
-			if (err != null) {
-				return err;
-			}
-			rpc.setCommand(esreq);
-			break;
+			return new RResult<>(new EagerSyncRequest(), null);
 		case rpcFastForward:
-			FastForwardRequest ffreq = new FastForwardRequest();
-			err = dec.decode(ffreq);
-			if (err != null) {
-				return err;
-			}
-			rpc.setCommand(ffreq);
-			break;
+			return new RResult<>(new FastForwardRequest(), null);
 		default:
-			return error.Errorf(String.format("unknown rpc type %d", rpcType));
+			return new RResult<>(null, error.Errorf(String.format("unknown rpc type %d", rpcType)));
 		}
+	}
+
+	/**
+	 * Handles a decoded command by dispatching it to the consumer and waiting
+	 * for its response. The consumer channel is unbuffered, so a slow node
+	 * holds the reactors off reading more requests.
+	 * @param command
+	 * @return
+	 */
+	public RResult<RPCResponse> handleCommand(ParsableMessage command) {
+		// Create the RPC object
+		One2OneChannel<RPCResponse> respCh = Channel.one2one(); // make(chan RPCResponse, 1);
+		RPC rpc = new RPC(respCh);
+		rpc.setCommand(command);
 
 //		 Dispatch the RPC
 //		 TODO semantics the same?
@@ -510,66 +452,35 @@ public class NetworkTransport implements Transport {
 		case SHUTDOWN:
 			logger.debug("handleCommand() shutdown case");
 			shutdownCh.in().read();
-			return ErrTransportShutdown;
+			return new RResult<>(null, ErrTransportShutdown);
 		case TIMER:
 			logger.debug("handleCommand() timeout case");
 			tim.setAlarm(tim.read() + timeout.toMillis());
 		default:
 			logger.debug("handleCommand() consuming");
-			consumeCh.out().write(rpc);
+			consumeLock.lock();
+			try {
+				consumeCh.out().write(rpc);
+			} finally {
+				consumeLock.unlock();
+			}
 			break;
 		}
 
-//		// Wait for response
-//		select {
-//			case resp := <-respCh:
-//				// Send the error first
-//				respErr = error.Errorf("");
-//				if (resp.Error != null) {
-//					respErr = resp.Error.Error();
-//				}
-//				err = enc.Encode(respErr);
-//				if ( err != null) {
-//					return err;
-//				}
-//
-//				// Send the response
-//				err = enc.Encode(resp.Response);
-//				if  (err != null) {
-//					return err;
-//				}
-//			case <-shutdownCh:
-//				return ErrTransportShutdown;
-//		}
-
 		logger.debug("Wait for a response");
 
 		final Alternative alt2 = new Alternative(new Guard[] { respCh.in(), shutdownCh.in()});
 		final int RESPONSE = 0, SHUTDOWN2 = 1;
 
-		RPCResponse resp;
 		switch (alt2.priSelect()) {
 		case RESPONSE:
 			logger.debug("Reading response channel");
-			resp = respCh.in().read();
-			// Send the error first
-			if (resp.error != null) {
-				err = enc.encode(resp.error);
-				if (err != null) {
-					return err;
-				}
-			}
-
-			// Send the response
-			err = enc.encode(resp.response);
-			if (err != null) {
-				return err;
-			}
+			return new RResult<>(respCh.in().read(), null);
 		case SHUTDOWN2:
 			shutdownCh.in().read();
-			return ErrTransportShutdown;
+			return new RResult<>(null, ErrTransportShutdown);
 		}
 
-		return null;
+		return new RResult<>(null, ErrTransportShutdown);
 	}
-}
\ No newline at end of file
+}
@@ -1,6 +1,7 @@
 package net;
 
 import autils.JsonUtils;
+import common.IProto;
 import common.error;
 
 public interface ParsableMessage {
@@ -10,6 +11,11 @@ public interface ParsableMessage {
 	 */
 	error parseFrom(String s);
 
+	/**
+	 * Marshaller of the message, used to frame it on the network
+	 */
+	IProto<?, ?> marshaller();
+
 	default public String getString() {
 		return JsonUtils.ObjectToString(this);
 	}
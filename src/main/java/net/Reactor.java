@@ -0,0 +1,112 @@
+package net;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import autils.Logger;
+
+/**
+ * Reactor is a selector thread serving inbound connections of a
+ * NetworkTransport. Every connection is a ServerConn, which the reactor reads
+ * and writes when its channel is ready.
+ *
+ * Other threads act on the connections of a reactor by queuing tasks, which the
+ * reactor runs between selects.
+ */
+class Reactor implements Runnable {
+	private static Logger logger = Logger.getLogger(Reactor.class);
+
+	final NetworkTransport trans;
+	final Selector selector;
+	final Queue<Runnable> tasks;
+	volatile boolean closed;
+
+	public Reactor(NetworkTransport trans) throws IOException {
+		this.trans = trans;
+		this.tasks = new ConcurrentLinkedQueue<Runnable>();
+		this.selector = Selector.open();
+	}
+
+	// register hands an accepted connection to the reactor
+	public void register(SocketChannel conn) {
+		execute(() -> {
+			try {
+				conn.configureBlocking(false);
+				SelectionKey key = conn.register(selector, SelectionKey.OP_READ);
+				key.attach(new ServerConn(this, conn, key));
+			} catch (IOException e) {
+				logger.field("error", e).error("Failed to register connection");
+				closeConn(conn);
+			}
+		});
+	}
+
+	// execute runs a task on the reactor thread
+	public void execute(Runnable task) {
+		tasks.add(task);
+		selector.wakeup();
+	}
+
+	public void run() {
+		try {
+			while (!closed) {
+				selector.select();
+
+				Runnable task;
+				while ((task = tasks.poll()) != null) {
+					task.run();
+				}
+
+				Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+				while (iter.hasNext()) {
+					SelectionKey key = iter.next();
+					iter.remove();
+
+					ServerConn conn = (ServerConn) key.attachment();
+					if (conn == null) {
+						continue;
+					}
+					if (key.isValid() && key.isReadable()) {
+						conn.onReadable();
+					}
+					if (key.isValid() && key.isWritable()) {
+						conn.onWritable();
+					}
+				}
+			}
+		} catch (IOException e) {
+			logger.field("error", e).error("Reactor stopped");
+		} finally {
+			for (SelectionKey key : selector.keys()) {
+				closeConn((SocketChannel) key.channel());
+			}
+			closeSelector();
+		}
+	}
+
+	void closeSelector() {
+		try {
+			selector.close();
+		} catch (IOException e) {
+			logger.field("error", e).debug("close selector");
+		}
+	}
+
+	public void close() {
+		closed = true;
+		selector.wakeup();
+	}
+
+	static void closeConn(SocketChannel conn) {
+		try {
+			conn.close();
+		} catch (IOException e) {
+			logger.field("error", e).debug("Connection close error");
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import autils.Logger;
+import channel.ExecService;
+import common.RResult;
+import common.error;
+
+/**
+ * ServerConn is the state of an inbound connection on its reactor.
+ *
+ * It reads the request header, the rpc type, the request ID and the length of
+ * the request, then the request, and dispatches the decoded command. Requests
+ * are read while others are handled, up to the maximum in flight of the
+ * transport. Responses are queued as they come, and written in that order.
+ */
+class ServerConn {
+	private static Logger logger = Logger.getLogger(ServerConn.class);
+
+	enum State {
+		HEADER, REQUEST
+	}
+
+	final Reactor reactor;
+	final SocketChannel conn;
+	final SelectionKey key;
+	State state;
+
+	private final ByteBuffer header = ByteBuffer.allocate(12);
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(MessageDecoder.BUFFER_SIZE);
+	private ByteBuffer request;
+	private int rpcType;
+	private int id;
+
+	private int inFlight;
+	private final Queue<ByteBuffer[]> responses = new ArrayDeque<ByteBuffer[]>();
+	private final Queue<ParsableMessage> responseMessages = new ArrayDeque<ParsableMessage>();
+	private long responseRemaining;
+	private long responseSize;
+
+	public ServerConn(Reactor reactor, SocketChannel conn, SelectionKey key) {
+		this.reactor = reactor;
+		this.conn = conn;
+		this.key = key;
+		this.state = State.HEADER;
+	}
+
+	public void onReadable() {
+		try {
+			while (!paused()) {
+				ByteBuffer b = state == State.HEADER ? header : request;
+				if (conn.read(b) < 0) {
+					close(null);
+					return;
+				}
+				if (b.hasRemaining()) {
+					return;
+				}
+
+				error err = state == State.HEADER ? readHeader() : dispatch();
+				if (err != null) {
+					close(err);
+					return;
+				}
+			}
+			updateInterest();
+		} catch (IOException e) {
+			close(error.Errorf(e.getMessage()));
+		}
+	}
+
+	public void onWritable() {
+		try {
+			while (!responses.isEmpty()) {
+				ByteBuffer[] response = responses.peek();
+				if (responseRemaining == 0) {
+					for (ByteBuffer b : response) {
+						responseRemaining += b.remaining();
+					}
+					responseSize = responseRemaining;
+				}
+				responseRemaining -= conn.write(response);
+				if (responseRemaining > 0) {
+					break;
+				}
+				responses.poll();
+				reactor.trans.wireStats.written(responseMessages.poll(), responseSize);
+			}
+		} catch (IOException e) {
+			close(error.Errorf(e.getMessage()));
+			return;
+		}
+		updateInterest();
+	}
+
+	// paused is true when the connection has the maximum of requests in flight
+	private boolean paused() {
+		return inFlight >= reactor.trans.maxInFlight;
+	}
+
+	private void updateInterest() {
+		if (!key.isValid()) {
+			return;
+		}
+		int ops = paused() ? 0 : SelectionKey.OP_READ;
+		if (!responses.isEmpty()) {
+			ops |= SelectionKey.OP_WRITE;
+		}
+		key.interestOps(ops);
+	}
+
+	private error readHeader() {
+		header.flip();
+		rpcType = header.getInt();
+		id = header.getInt();
+		int length = header.getInt();
+		if (length < 0 || length > MessageDecoder.MAX_FRAME_SIZE) {
+			return error.Errorf(String.format("invalid frame length %d", length));
+		}
+
+		request = length > buffer.capacity() ? ByteBuffer.allocate(length) : buffer;
+		request.clear();
+		request.limit(length);
+		state = State.REQUEST;
+		return null;
+	}
+
+	// dispatch decodes the request and hands it to the consumer from another thread
+	private error dispatch() {
+		request.flip();
+		RResult<ParsableMessage> newCommand = NetworkTransport.newCommand(rpcType);
+		error err = newCommand.err;
+		if (err != null) {
+			return err;
+		}
+		ParsableMessage command = newCommand.result;
+		err = command.marshaller().protoUnmarshal(request);
+		request = null;
+		if (err != null) {
+			return err;
+		}
+
+		// Back to reading the next request
+		header.clear();
+		state = State.HEADER;
+		inFlight++;
+
+		int id = this.id;
+		ExecService.go(() -> {
+			RResult<RPCResponse> handleCommand = reactor.trans.handleCommand(command);
+			reactor.execute(() -> {
+				if (handleCommand.err != null) {
+					close(handleCommand.err);
+				} else {
+					reply(id, handleCommand.result);
+				}
+			});
+		});
+		return null;
+	}
+
+	private void reply(int id, RPCResponse resp) {
+		if (!key.isValid()) {
+			return;
+		}
+		inFlight--;
+		responses.add(MessageEncoder.responseFrames(id, resp.error, resp.response));
+		responseMessages.add(resp.response);
+		onWritable();
+	}
+
+	private void close(error err) {
+		if (err != null && err != NetworkTransport.ErrTransportShutdown) {
+			logger.field("error", err).error("Failed to decode incoming command");
+		}
+		key.cancel();
+		Reactor.closeConn(conn);
+	}
+}
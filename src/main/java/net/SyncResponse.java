@@ -1,9 +1,14 @@
 package net;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 
+import com.google.protobuf.Parser;
+
 import autils.JsonUtils;
+import common.IProto;
+import common.RResult;
 import common.error;
 import poset.WireEvent;
 
@@ -97,6 +102,41 @@ public class SyncResponse implements ParsableMessage {
 		return err;
 	}
 
+	@Override
+	public IProto<SyncResponse, net.proto.SyncResponse> marshaller() {
+		return new IProto<SyncResponse, net.proto.SyncResponse>() {
+			@Override
+			public net.proto.SyncResponse toProto() {
+				net.proto.SyncResponse.Builder builder = net.proto.SyncResponse.newBuilder();
+				builder.setFromID(FromID).setSyncLimit(SyncLimit);
+				if (Events != null) {
+					builder.setEvents(EventBatch.encode(Events));
+				}
+				if (Known != null) {
+					builder.putAllKnown(Known);
+				}
+				return builder.build();
+			}
+
+			@Override
+			public void fromProto(net.proto.SyncResponse proto) {
+				FromID = proto.getFromID();
+				SyncLimit = proto.getSyncLimit();
+				RResult<WireEvent[]> decode = EventBatch.decode(proto.getEvents());
+				if (decode.err != null) {
+					throw new IllegalArgumentException(decode.err.Error());
+				}
+				Events = decode.result;
+				Known = new HashMap<Long,Long>(proto.getKnownMap());
+			}
+
+			@Override
+			public Parser<net.proto.SyncResponse> parser() {
+				return net.proto.SyncResponse.parser();
+			}
+		};
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -43,7 +43,6 @@ class TCPStreamLayer implements StreamLayer {
 			logger.field("listener", listener).debug("Connecting to " + address + " on port " + listener.socket().getLocalPort());
 			socket = SocketChannel.open(new InetSocketAddress(address, listener.socket().getLocalPort()));
 			logger.field("client socket", socket).debug("Just connected to " + socket.socket().getRemoteSocketAddress());
-			socket.configureBlocking(false);
 			socket.socket().setKeepAlive(true);
 			socket.setOption(java.net.StandardSocketOptions.TCP_NODELAY, true);
 			//socket.socket().setSoTimeout((int) timeout.toMillis());
@@ -63,8 +62,8 @@ class TCPStreamLayer implements StreamLayer {
 		try {
         	client = listener.accept();
 			logger.field("accept", client).debug("Accept()");
-			client.configureBlocking(false);
-			client.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			client.socket().setKeepAlive(true);
+			client.setOption(java.net.StandardSocketOptions.TCP_NODELAY, true);
 		} catch (IOException e) {
 			return new RResult<>(null, error.Errorf(e.getMessage()));
 		}
@@ -78,6 +77,7 @@ class TCPStreamLayer implements StreamLayer {
 	public error close()  {
 		try {
 			listener.close();
+			selector.wakeup();
 			return null;
 		} catch (IOException e) {
 			return error.Errorf(e.getMessage());
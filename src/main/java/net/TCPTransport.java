@@ -1,6 +1,7 @@
 package net;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
 import java.nio.channels.ServerSocketChannel;
 import java.time.Duration;
@@ -68,8 +69,12 @@ public class TCPTransport {
 		} catch (IOException e) {
 			return new RResult<NetworkTransport>(null, error.Errorf(e.getMessage()));
 		}
-		// Create the network transport
-		NetworkTransport trans = transportCreator.transportCreator(stream);
-		return new RResult<NetworkTransport>(trans, null);
+		// Create the network transport, which closes the stream if it fails
+		try {
+			NetworkTransport trans = transportCreator.transportCreator(stream);
+			return new RResult<NetworkTransport>(trans, null);
+		} catch (UncheckedIOException e) {
+			return new RResult<NetworkTransport>(null, error.Errorf(e.getMessage()));
+		}
 	}
 }
\ No newline at end of file
@@ -25,6 +25,9 @@ public interface Transport {
 
 	error fastForward(String target, FastForwardRequest args, FastForwardResponse resp );
 
+	/** WireStats returns the counts of the Events written by the transport. */
+	WireStats getWireStats();
+
 	/** Close permanently a transport, stopping
 	 * any associated goroutines and freeing other resources.
 	 */
@@ -0,0 +1,22 @@
+package net;
+
+import common.error;
+
+/**
+ * TransportException carries the error of an RPC which completes
+ * exceptionally.
+ */
+public class TransportException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	final error err;
+
+	public TransportException(error err) {
+		super(err.Error());
+		this.err = err;
+	}
+
+	public error getErr() {
+		return err;
+	}
+}
@@ -0,0 +1,43 @@
+package net;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import poset.WireEvent;
+
+/**
+ * WireStats counts the Events written by a transport, in the SyncResponses
+ * and EagerSyncRequests it sends, and the bytes of the frames carrying them.
+ */
+public class WireStats {
+	private final AtomicLong events = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+
+	// written counts a frame of frameBytes written for message, if it carries Events
+	void written(ParsableMessage message, long frameBytes) {
+		WireEvent[] wireEvents = null;
+		if (message instanceof SyncResponse) {
+			wireEvents = ((SyncResponse) message).getEvents();
+		} else if (message instanceof EagerSyncRequest) {
+			wireEvents = ((EagerSyncRequest) message).getEvents();
+		}
+		if (wireEvents == null || wireEvents.length == 0) {
+			return;
+		}
+		events.addAndGet(wireEvents.length);
+		bytes.addAndGet(frameBytes);
+	}
+
+	public long events() {
+		return events.get();
+	}
+
+	public long bytes() {
+		return bytes.get();
+	}
+
+	// bytesPerEvent returns the mean size of the Events written so far
+	public double bytesPerEvent() {
+		long n = events.get();
+		return n == 0 ? 0 : (double) bytes.get() / n;
+	}
+}
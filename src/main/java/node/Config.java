@@ -5,12 +5,21 @@ import java.time.Duration;
 import org.apache.log4j.Level;
 
 import autils.Logger;
+import poset.Durability;
 
 public class Config {
 	public Duration HeartbeatTimeout;
 	public Duration TCPTimeout;
 	public int CacheSize;
 	public long SyncLimit;
+	public boolean ConsensusPipeline; //run consensus on the staged pipeline instead of in the sync handlers
+	public int VerifyParallelism;     //threads verifying the signatures of sync batches, <= 1 to verify on insertion
+	public long CheckpointInterval;   //blocks between consensus checkpoints restarts resume from, 0 to disable
+	public long PruneRounds;          //rounds of finalized data kept behind the anchor block, 0 to keep everything
+	public long MemoryBudget;         //bytes of events, rounds, blocks and frames cached by the store, 0 to bound counts only
+	public Durability Durability = poset.Durability.Sync; //when the persistent store commits its writes
+	public int BatchWrites = 1000;    //max uncommitted writes of the Batched durability
+	public long BatchInterval = 100;  //max ms writes stay uncommitted with the Batched and Async durabilities
 
 	private Logger logger = Logger.getLogger(Config.class);
 
@@ -79,4 +88,68 @@ public class Config {
 	public long getSyncLimit() {
 		return SyncLimit;
 	}
+
+	public int getVerifyParallelism() {
+		return VerifyParallelism;
+	}
+
+	public void setVerifyParallelism(int verifyParallelism) {
+		VerifyParallelism = verifyParallelism;
+	}
+
+	public boolean isConsensusPipeline() {
+		return ConsensusPipeline;
+	}
+
+	public void setConsensusPipeline(boolean consensusPipeline) {
+		ConsensusPipeline = consensusPipeline;
+	}
+
+	public long getCheckpointInterval() {
+		return CheckpointInterval;
+	}
+
+	public void setCheckpointInterval(long checkpointInterval) {
+		CheckpointInterval = checkpointInterval;
+	}
+
+	public long getPruneRounds() {
+		return PruneRounds;
+	}
+
+	public void setPruneRounds(long pruneRounds) {
+		PruneRounds = pruneRounds;
+	}
+
+	public long getMemoryBudget() {
+		return MemoryBudget;
+	}
+
+	public void setMemoryBudget(long memoryBudget) {
+		MemoryBudget = memoryBudget;
+	}
+
+	public Durability getDurability() {
+		return Durability;
+	}
+
+	public void setDurability(Durability durability) {
+		Durability = durability;
+	}
+
+	public int getBatchWrites() {
+		return BatchWrites;
+	}
+
+	public void setBatchWrites(int batchWrites) {
+		BatchWrites = batchWrites;
+	}
+
+	public long getBatchInterval() {
+		return BatchInterval;
+	}
+
+	public void setBatchInterval(long batchInterval) {
+		BatchInterval = batchInterval;
+	}
 }
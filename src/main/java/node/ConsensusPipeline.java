@@ -0,0 +1,173 @@
+package node;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+import autils.Logger;
+import channel.ExecService;
+import common.error;
+
+/**
+ * ConsensusPipeline runs the consensus methods of the Core out of the sync
+ * handlers.
+ *
+ * Sync handlers insert the events and submit a request; the request then
+ * flows through three stages, each on its own worker:
+ * - rounds: DivideRounds, DecideFame, DecideRoundReceived
+ * - blocks: ProcessDecidedRounds (frames and blocks)
+ * - signatures: ProcessSigPool
+ *
+ * Every stage coalesces the requests queued while it was busy into a single
+ * run, and holds the core lock only for the duration of that run, so gossip
+ * and RPC handlers interleave with consensus instead of waiting for all of it.
+ */
+public class ConsensusPipeline {
+	static final long STOP = -1;
+
+	Logger logger;
+	Stage rounds;
+	Stage blocks;
+	Stage signatures;
+	Future<?>[] workers; //null until started
+
+	public ConsensusPipeline(Core core, Lock coreLock, Logger logger) {
+		this(core::runRounds, core::runBlocks, core::runSignatures, coreLock, logger);
+	}
+
+	ConsensusPipeline(Supplier<error> rounds, Supplier<error> blocks, Supplier<error> signatures,
+			Lock coreLock, Logger logger) {
+		this.logger = logger;
+		this.signatures = new Stage("signatures", signatures, coreLock, null);
+		this.blocks = new Stage("blocks", blocks, coreLock, this.signatures);
+		this.rounds = new Stage("rounds", rounds, coreLock, this.blocks);
+	}
+
+	public void start() {
+		workers = new Future<?>[] {
+			ExecService.go(() -> signatures.run()),
+			ExecService.go(() -> blocks.run()),
+			ExecService.go(() -> rounds.run()),
+		};
+	}
+
+	// submit requests a consensus run for the events inserted so far
+	public void submit() {
+		rounds.submit(System.nanoTime());
+	}
+
+	// shutdown stops the stages and waits for them to finish their current run
+	public void shutdown() {
+		rounds.submit(STOP);
+		if (workers == null) {
+			return;
+		}
+		for (Future<?> worker : workers) {
+			try {
+				worker.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				logger.field("error", e.getCause()).error("ConsensusPipeline shutdown");
+			}
+		}
+	}
+
+	public void stats(Map<String,String> s) {
+		for (Stage stage : new Stage[] {rounds, blocks, signatures}) {
+			s.put("consensus_" + stage.name + "_queue",   "" + stage.queue.size());
+			s.put("consensus_" + stage.name + "_runs",    "" + stage.runs.get());
+			s.put("consensus_" + stage.name + "_errors",  "" + stage.errors.get());
+			s.put("consensus_" + stage.name + "_latency", String.format("%.2f", stage.meanLatency()));
+			s.put("consensus_" + stage.name + "_max_latency", String.format("%.2f", stage.maxLatency.get() / 1e6));
+		}
+	}
+
+	class Stage {
+		String name;
+		Supplier<error> work;
+		Lock coreLock;
+		Stage next;
+
+		LinkedBlockingQueue<Long> queue; //submission times of the pending requests
+		AtomicLong runs;
+		AtomicLong errors;
+		AtomicLong totalLatency;         //nanoseconds from submission to end of run
+		AtomicLong maxLatency;
+
+		Stage(String name, Supplier<error> work, Lock coreLock, Stage next) {
+			this.name = name;
+			this.work = work;
+			this.coreLock = coreLock;
+			this.next = next;
+			this.queue = new LinkedBlockingQueue<Long>();
+			this.runs = new AtomicLong(0);
+			this.errors = new AtomicLong(0);
+			this.totalLatency = new AtomicLong(0);
+			this.maxLatency = new AtomicLong(0);
+		}
+
+		void submit(long submitted) {
+			queue.add(submitted);
+		}
+
+		void run() {
+			while (true) {
+				long oldest;
+				try {
+					oldest = queue.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+
+				//coalesce the requests queued in the meantime
+				boolean stop = oldest == STOP;
+				Long t;
+				while ((t = queue.poll()) != null) {
+					stop = stop || t == STOP;
+				}
+				if (stop) {
+					if (next != null) {
+						next.submit(STOP);
+					}
+					return;
+				}
+
+				coreLock.lock();
+				error err;
+				try {
+					err = work.get();
+				} finally {
+					coreLock.unlock();
+				}
+
+				long latency = System.nanoTime() - oldest;
+				runs.incrementAndGet();
+				totalLatency.addAndGet(latency);
+				maxLatency.accumulateAndGet(latency, Math::max);
+				if (err != null) {
+					errors.incrementAndGet();
+					logger.field("stage", name).field("error", err).error("ConsensusPipeline");
+					continue;
+				}
+
+				logger.field("stage", name).field("Duration", latency).debug("ConsensusPipeline");
+				if (next != null) {
+					next.submit(oldest);
+				}
+			}
+		}
+
+		// mean latency in milliseconds
+		double meanLatency() {
+			long n = runs.get();
+			return n == 0 ? 0 : totalLatency.get() / 1e6 / n;
+		}
+	}
+}
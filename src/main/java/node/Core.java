@@ -6,6 +6,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 import org.apache.log4j.Level;
 import org.jcsp.lang.One2OneChannel;
@@ -45,6 +48,8 @@ public class Core {
 
 	int maxTransactionsInEvent;
 
+	ForkJoinPool verifyPool; //verifies the signatures of sync batches, null to verify on insertion
+
 	public Core(long id, KeyPair key, peers.Peers participants,
 			poset.Store store, One2OneChannel<poset.Block>commitCh /**chan **/ , Logger logger) {
 
@@ -221,12 +226,21 @@ public class Core {
 	}
 
 	public error insertEvent(poset.Event event, boolean setWireInfo ) {
+		return insertEvent(event, setWireInfo, false);
+	}
+
+	public error insertEvent(poset.Event event, boolean setWireInfo, boolean verified) {
 
 		logger.field("event", event).field("creator", event.creator())
 		.field("selfParent", event.selfParent()).field("index", event.index())
 		.field("hex", event.hex()).debugf("InsertEvent(event poset.Event, setWireInfo bool)");
 
-		error err = poset.InsertEvent(event, setWireInfo);
+		error err;
+		if (verified) {
+			err = poset.InsertVerifiedEvent(event, setWireInfo);
+		} else {
+			err = poset.InsertEvent(event, setWireInfo);
+		}
 		if (err != null) {
 			return err;
 		}
@@ -342,29 +356,37 @@ public class Core {
 
 		Map<Long, Long> myKnownEvents = knownEvents();
 		String otherHead = "";
-		// add unknown events
-		for (int k = 0; k < unknownEvents.length; ++k) {
-			poset.WireEvent we = unknownEvents[k];
-			logger.field("we", we).error("Sync");
-
-			RResult<Event> readWireInfo = poset.ReadWireInfo(we);
-			Event ev = readWireInfo.result;
-			logger.field("ev", ev).error("Sync");
-			error err = readWireInfo.err;
-			if (err != null) {
-				return err;
+		if (verifyPool != null) {
+			RResult<String> insertBatch = insertBatch(unknownEvents, myKnownEvents);
+			if (insertBatch.err != null) {
+				return insertBatch.err;
 			}
-
-			if (ev.index() > myKnownEvents.get(ev.creatorID())) {
-				err = insertEvent(ev, false);
+			otherHead = insertBatch.result;
+		} else {
+			// add unknown events
+			for (int k = 0; k < unknownEvents.length; ++k) {
+				poset.WireEvent we = unknownEvents[k];
+				logger.field("we", we).error("Sync");
+
+				RResult<Event> readWireInfo = poset.ReadWireInfo(we);
+				Event ev = readWireInfo.result;
+				logger.field("ev", ev).error("Sync");
+				error err = readWireInfo.err;
 				if (err != null) {
 					return err;
 				}
-			}
 
-			// assume last event corresponds to other-head
-			if (k == unknownEvents.length-1) {
-				otherHead = ev.hex();
+				if (ev.index() > myKnownEvents.get(ev.creatorID())) {
+					err = insertEvent(ev, false);
+					if (err != null) {
+						return err;
+					}
+				}
+
+				// assume last event corresponds to other-head
+				if (k == unknownEvents.length-1) {
+					otherHead = ev.hex();
+				}
 			}
 		}
 
@@ -379,6 +401,78 @@ public class Core {
 		return null;
 	}
 
+	// insertBatch reads a batch of WireEvents, verifies the signatures of the
+	// unknown ones in parallel on the verifyPool, and inserts them in order.
+	// Events read before a read error are still inserted. Returns the hex of
+	// the last event of the batch.
+	RResult<String> insertBatch(poset.WireEvent[] unknownEvents, Map<Long, Long> myKnownEvents) {
+		Event[] events = new Event[unknownEvents.length]; //null for known events
+		String[] hexes = new String[unknownEvents.length];
+		Map<String,Map<Long,String>> pending = new HashMap<String,Map<Long,String>>();
+		int n = 0;
+		error readErr = null;
+		for (; n < unknownEvents.length; ++n) {
+			RResult<Event> readWireInfo = poset.ReadWireInfo(unknownEvents[n], pending);
+			if (readWireInfo.err != null) {
+				readErr = readWireInfo.err;
+				break;
+			}
+			Event ev = readWireInfo.result;
+			if (ev.index() > myKnownEvents.get(ev.creatorID())) {
+				events[n] = ev;
+			}
+			hexes[n] = ev.hex();
+			pending.computeIfAbsent(ev.creator(), c -> new HashMap<Long,String>())
+				.put(ev.index(), ev.hex());
+		}
+
+		error[] verified = new error[n];
+		long start = System.nanoTime();
+		try {
+			verifyPool.submit(() -> IntStream.range(0, verified.length).parallel().forEach(i -> {
+				if (events[i] != null) {
+					verified[i] = poset.verifyEvent(events[i]);
+				}
+			})).get();
+		} catch (InterruptedException | ExecutionException e) {
+			return new RResult<String>("", error.Errorf(String.format("verify batch: %s", e)));
+		}
+		logger.field("events", n).field("Duration", time.Since(start)).debug("insertBatch() verified");
+
+		String otherHead = "";
+		for (int k = 0; k < n; ++k) {
+			if (verified[k] != null) {
+				return new RResult<String>(otherHead, verified[k]);
+			}
+			if (events[k] != null) {
+				error err = insertEvent(events[k], false, true);
+				if (err != null) {
+					return new RResult<String>(otherHead, err);
+				}
+			}
+			// assume last event corresponds to other-head
+			if (k == unknownEvents.length-1) {
+				otherHead = hexes[k];
+			}
+		}
+		return new RResult<String>(otherHead, readErr);
+	}
+
+	public void setVerifyParallelism(int parallelism) {
+		if (verifyPool != null) {
+			verifyPool.shutdown();
+			verifyPool = null;
+		}
+		if (parallelism > 1) {
+			verifyPool = new ForkJoinPool(parallelism);
+		}
+	}
+
+	// shutdown stops the verifyPool
+	public void shutdown() {
+		setVerifyParallelism(0);
+	}
+
 	public error fastForward(String peer, poset.Block block, poset.Frame frame) {
 
 		logger.field("peer", peer).debug("FastForward()");
@@ -520,7 +614,31 @@ public class Core {
 	}
 
 	public error runConsensus()  {
+		error err = runRounds();
+		if (err != null) {
+			return err;
+		}
+
+		err = runBlocks();
+		if (err != null) {
+			return err;
+		}
+
+		err = runSignatures();
+		if (err != null) {
+			return err;
+		}
+
+		logger.field("transaction_pool", transactionPool.length)
+			.field("block_signature_pool", blockSignaturePool.length)
+			.field("poset.PendingLoadedEvents", poset.getPendingLoadedEvents())
+			.debug("RunConsensus()");
+
+		return null;
+	}
 
+	// runRounds assigns rounds, decides fame and round received
+	public error runRounds() {
 		long start = System.nanoTime();
 		error err = poset.DivideRounds();
 		logger.field("Duration", time.Since(start)).debug("poset.DivideAtropos()");
@@ -544,28 +662,38 @@ public class Core {
 			logger.field("Error", err).error("poset.DecideAtroposRoundReceived()");
 			return err;
 		}
+		return null;
+	}
 
-		start = System.nanoTime();
-		err = poset.ProcessDecidedRounds();
+	// runBlocks builds the frames and blocks of the decided rounds
+	public error runBlocks() {
+		long start = System.nanoTime();
+		error err = poset.ProcessDecidedRounds();
 		logger.field("Duration", time.Since(start)).debug("poset.ProcessAtroposRounds()");
 		if (err != null) {
 			logger.field("Error", err).error("poset.ProcessAtroposRounds()");
 			return err;
 		}
+		return null;
+	}
 
-		start = System.nanoTime();
-		err = poset.ProcessSigPool();
+	// runSignatures verifies and applies the pending block signatures, and
+	// commits the writes buffered by the store during the pass
+	public error runSignatures() {
+		long start = System.nanoTime();
+		error err = poset.ProcessSigPool();
 		logger.field("Duration", time.Since(start)).debug("poset.ProcessSigPool()");
 		if (err != null) {
 			logger.field("Error", err).error("poset.ProcessSigPool()");
 			return err;
 		}
 
-		logger.field("transaction_pool", transactionPool.length)
-			.field("block_signature_pool", blockSignaturePool.length)
-			.field("poset.PendingLoadedEvents", poset.getPendingLoadedEvents())
-			.debug("RunConsensus()");
-
+		//commit the writes of the consensus pass at once
+		err = poset.Store.flush();
+		if (err != null) {
+			logger.field("Error", err).error("poset.Store.flush()");
+			return err;
+		}
 		return null;
 	}
 
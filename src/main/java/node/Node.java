@@ -31,6 +31,7 @@ import net.SyncRequest;
 import net.SyncResponse;
 import peers.Peer;
 import peers.Peers;
+import poset.BadgerStore;
 import poset.Block;
 import poset.BlockSignature;
 import poset.Event;
@@ -44,6 +45,7 @@ public class Node extends NodeState {
 	long id;
 	Core core;
 	Lock coreLock;
+	ConsensusPipeline pipeline; //null if consensus runs in the sync handlers
 
 	String localAddr;
 
@@ -115,6 +117,12 @@ public class Node extends NodeState {
 		this.rpcJobs = new AtomicLong(0);
 
 		this.coreLock = new ReentrantLock();
+		core.setVerifyParallelism(conf.getVerifyParallelism());
+		core.poset.SetCheckpointInterval(conf.getCheckpointInterval());
+		core.poset.SetPruneRounds(conf.getPruneRounds());
+		if (conf.isConsensusPipeline()) {
+			this.pipeline = new ConsensusPipeline(core, coreLock, this.logger);
+		}
 
 		logger.field("peers", pmap).debug("pmap");
 		logger.field("pubKey", pubKey).debug("pubKey");
@@ -159,6 +167,10 @@ public class Node extends NodeState {
 		// Process SubmitTx and CommitBlock requests
 		ExecService.go(() -> doBackgroundWork());
 
+		if (pipeline != null) {
+			pipeline.start();
+		}
+
 		// pause before gossiping test transactions to allow all nodes come up
 		try {
 			Thread.sleep(Duration.ofSeconds(conf.getTestDelay()).toMillis());
@@ -649,6 +661,10 @@ public class Node extends NodeState {
 		}
 
 		// Run consensus methods
+		if (pipeline != null) {
+			pipeline.submit();
+			return null;
+		}
 		start = System.nanoTime();
 		err = core.runConsensus();
 		logger.field("Duration", time.Since(start)).debug("core.RunConsensus()");
@@ -740,6 +756,12 @@ public class Node extends NodeState {
 			// Not entirely sure why...
 			controlTimer.Shutdown();
 
+			// Stop the consensus stages and wait for their current run
+			if (pipeline != null) {
+				pipeline.shutdown();
+			}
+			core.shutdown();
+
 			// transport and store should only be closed once all concurrent operations
 			// are finished otherwise they will panic trying to use close objects
 			trans.close();
@@ -780,8 +802,28 @@ public class Node extends NodeState {
 		s.put("events_per_second",       String.format("%.2f",consensusEventsPerSecond));
 		s.put("rounds_per_second",       String.format("%.2f", consensusRoundsPerSecond));
 		s.put("round_events",            "" + core.getLastCommittedRoundEventsCount());
+		s.put("votes_reused",            "" + core.poset.getVotesReused());
+		s.put("votes_computed",          "" + core.poset.getVotesComputed());
+		s.put("sigs_per_second",         String.format("%.2f", core.poset.getSigVerifyRate()));
 		s.put("id",                      "" + id);
 		s.put("state",                   getState().toString());
+		s.put("wire_events",             "" + trans.getWireStats().events());
+		s.put("wire_bytes_per_event",    String.format("%.2f", trans.getWireStats().bytesPerEvent()));
+		if (pipeline != null) {
+			pipeline.stats(s);
+		}
+		core.poset.Store.cacheStats(s);
+		if (core.poset.Store instanceof BadgerStore) {
+			BadgerStore store = (BadgerStore) core.poset.Store;
+			s.put("pruned_events",           "" + store.getPrunedEvents());
+			s.put("reclaimed_bytes",         "" + store.getReclaimedBytes());
+			s.put("writes_per_second",       String.format("%.2f", store.writesPerSecond()));
+			s.put("commits_per_second",      String.format("%.2f", store.commitsPerSecond()));
+		}
+		if (conf.getMemoryBudget() > 0) {
+			s.put("memory_budget",           "" + conf.getMemoryBudget());
+			s.put("cache_bytes",             "" + core.poset.Store.memoryFootprint());
+		}
 		// mqtt.FireEvent(s, "/mq/lachesis/stats")
 		return s;
 	}
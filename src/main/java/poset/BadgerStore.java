@@ -1,10 +1,20 @@
 package poset;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
@@ -25,7 +35,7 @@ import peers.Peers;
  * BadgerStore
  *
  */
-public class BadgerStore implements Store {
+public class BadgerStore implements PersistentStore {
 	public static final String participantPrefix = "participant";
 	public static final String rootSuffix        = "root";
 	public static final String roundPrefix       = "round";
@@ -33,6 +43,31 @@ public class BadgerStore implements Store {
 	public static final String blockPrefix       = "block";
 	public static final String framePrefix       = "frame";
 
+	/**
+	 * Keys are binary: a one-byte table tag followed by fixed-width big-endian
+	 * fields, the participant ID (int) instead of the hex public key and the
+	 * indexes (long), so that the keys of a table sort in index order. Event
+	 * keys are the tag and the HASH_SIZE bytes of the hash.
+	 *
+	 * Databases written with the former String.format keys have no keyFormat
+	 * entry and are migrated by LoadBadgerStore. Legacy keys are printable,
+	 * tags are not. Key format 1 had variable width event keys.
+	 */
+	public static final byte eventTag            = 0x01;
+	public static final byte topoTag             = 0x02;
+	public static final byte participantEventTag = 0x03;
+	public static final byte rootTag             = 0x04;
+	public static final byte roundTag            = 0x05;
+	public static final byte blockTag            = 0x06;
+	public static final byte frameTag            = 0x07;
+	public static final byte eventNameTag        = 0x08; //event keys which are not hex
+
+	public static final byte[] keyFormatKey = "key_format".getBytes();
+	public static final byte[] checkpointKey = "checkpoint".getBytes();
+	public static final byte[] prunedTopoKey = "pruned_topo".getBytes();
+	public static final byte keyFormat      = 2;
+	public static final int HASH_SIZE       = 32;
+
 	private static final Logger logger = Logger.getLogger(BadgerStore.class);
 
 	peers.Peers participants;
@@ -41,6 +76,25 @@ public class BadgerStore implements Store {
 	String path;
 	boolean needBoostrap;
 
+	Durability durability = Durability.Sync;
+	int batchWrites = 1000;
+	long batchInterval = 100;       //ms
+	ScheduledExecutorService committer; //background commits in Async mode
+	final Object commitLock = new Object();
+	int pendingWrites;              //writes not committed yet
+	long lastCommit = System.nanoTime();
+	long created = System.nanoTime();
+	AtomicLong writes = new AtomicLong(0);
+	AtomicLong commits = new AtomicLong(0);
+
+	ExecutorService pruner;         //background pruning, created by the first pruneAsync
+	AtomicLong pruneTarget = new AtomicLong(-1); //round before which the next pruning prunes
+	AtomicBoolean pruneQueued = new AtomicBoolean(false);
+	AtomicLong prunedEvents = new AtomicLong(0);
+	AtomicLong reclaimedBytes = new AtomicLong(0);
+	int pruneChunk = 1000;          //Events deleted per commit by dbPrune
+	volatile boolean closing;       //stops the background work before the db is closed
+
 	public BadgerStore() {
 		super();
 		this.participants = null;
@@ -94,6 +148,8 @@ public class BadgerStore implements Store {
 		if (err != null) {
 			return new RResult<BadgerStore>(null, err);
 		}
+		store.metaMap.put(keyFormatKey, new byte[] {keyFormat});
+		store.dbCommit();
 		return new RResult<>(store, null);
 	}
 
@@ -121,6 +177,14 @@ public class BadgerStore implements Store {
 			return new RResult<BadgerStore>(null, err);
 		}
 
+		store.participants = participants;
+		if (store.dbKeyFormat() != keyFormat) {
+			err = store.dbMigrateKeys();
+			if (err != null) {
+				return new RResult<BadgerStore>(null, err);
+			}
+		}
+
 		InmemStore inmemStore = new InmemStore(participants, cacheSize);
 
 		//read roots from db and put them in InmemStore
@@ -139,7 +203,6 @@ public class BadgerStore implements Store {
 			return new RResult<BadgerStore>(null, err);
 		}
 
-		store.participants = participants;
 		store.inmemStore = inmemStore;
 
 		return new RResult<BadgerStore>(store, null);
@@ -168,8 +231,35 @@ public class BadgerStore implements Store {
 	//==============================================================================
 	//Keys
 
+	public byte[] eventKey(String hex) {
+		if (isHashHex(hex)) {
+			byte[] hash = crypto.Utils.decodeHex(hex.substring(2), HASH_SIZE);
+			if (hash != null) {
+				return ByteBuffer.allocate(1 + HASH_SIZE).put(eventTag).put(hash).array();
+			}
+		}
+		byte[] name = hex.getBytes();
+		return ByteBuffer.allocate(1 + name.length).put(eventNameTag).put(name).array();
+	}
+
+	// isHashHex is true for the hex of a hash as written by crypto.Utils.toHexString,
+	// upper case and zero padded to 40 digits, so that each key has a single hex
+	private static boolean isHashHex(String hex) {
+		int digits = hex.length() - 2;
+		if (!hex.startsWith("0x") || digits < 40 || digits > HASH_SIZE * 2 || (digits > 40 && hex.charAt(2) == '0')) {
+			return false;
+		}
+		for (int i = 2; i < hex.length(); i++) {
+			char c = hex.charAt(i);
+			if ((c < '0' || c > '9') && (c < 'A' || c > 'F')) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	public byte[] topologicalEventKey(long index) {
-		return String.format("%s_%09d", topoPrefix, index).getBytes();
+		return indexKey(topoTag, index);
 	}
 
 	public byte[] participantKey(String participant) {
@@ -177,23 +267,41 @@ public class BadgerStore implements Store {
 	}
 
 	public byte[] participantEventKey(String participant, long index) {
-		return String.format("%s__event_%09d", participant, index).getBytes();
+		return ByteBuffer.allocate(13).put(participantEventTag)
+			.putInt(participantID(participant)).putLong(index).array();
 	}
 
 	public byte[] participantRootKey(String participant) {
-		return String.format("%s_%s", participant, rootSuffix).getBytes();
+		return ByteBuffer.allocate(5).put(rootTag).putInt(participantID(participant)).array();
 	}
 
 	public byte[] roundKey(long index) {
-		return String.format("%s_%09d", roundPrefix, index).getBytes();
+		return indexKey(roundTag, index);
 	}
 
 	public byte[] blockKey(long index) {
-		return String.format("%s_%09d", blockPrefix, index).getBytes();
+		return indexKey(blockTag, index);
 	}
 
 	public byte[] frameKey(long index) {
-		return String.format("%s_%09d", framePrefix, index).getBytes();
+		return indexKey(frameTag, index);
+	}
+
+	private static byte[] indexKey(byte tag, long index) {
+		return ByteBuffer.allocate(9).put(tag).putLong(index).array();
+	}
+
+	// participant IDs are 31-bit hashes of the public keys
+	private int participantID(String participant) {
+		Peer peer = participants == null ? null : participants.getByPubKey().get(participant);
+		if (peer == null) {
+			peer = new Peer(participant, "");
+		}
+		return (int) peer.getID();
+	}
+
+	private static boolean isLegacyKey(byte[] key) {
+		return key.length > 0 && key[0] >= 0x20;
 	}
 
 	//==============================================================================
@@ -421,10 +529,144 @@ public class BadgerStore implements Store {
 		if (err != null){
 			return err;
 		}
+		closing = true;
+		if (committer != null) {
+			awaitStop(committer);
+			committer = null;
+		}
+		synchronized (this) {
+			if (pruner != null) {
+				awaitStop(pruner);
+				pruner = null;
+			}
+		}
+		err = flush();
+		if (err != null) {
+			return err;
+		}
 		db.close();
 		return null;
 	}
 
+	// awaitStop stops an executor and waits for its running task, which checks
+	// closing, instead of interrupting it inside the db I/O
+	private void awaitStop(ExecutorService executor) {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+				logger.warn("close() background task still running");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public error flush() {
+		synchronized (commitLock) {
+			if (pendingWrites > 0) {
+				dbCommit();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Sets how the writes to the db are committed
+	 * @param durability
+	 * @param batchWrites maximum number of uncommitted writes in Batched mode
+	 * @param batchInterval maximum time in ms writes stay uncommitted in
+	 * Batched and Async modes
+	 */
+	public void setDurability(Durability durability, int batchWrites, long batchInterval) {
+		flush();
+		if (committer != null) {
+			committer.shutdown();
+			committer = null;
+		}
+		this.durability = durability;
+		this.batchWrites = batchWrites;
+		this.batchInterval = batchInterval;
+		if (durability == Durability.Async) {
+			committer = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "BadgerStore-committer");
+				t.setDaemon(true);
+				return t;
+			});
+			committer.scheduleWithFixedDelay(() -> flush(), batchInterval, batchInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	public Durability getDurability() {
+		return durability;
+	}
+
+	public long getWrites() {
+		return writes.get();
+	}
+
+	public long getCommits() {
+		return commits.get();
+	}
+
+	public double writesPerSecond() {
+		return writes.get() * 1e9 / Math.max(System.nanoTime() - created, 1);
+	}
+
+	public double commitsPerSecond() {
+		return commits.get() * 1e9 / Math.max(System.nanoTime() - created, 1);
+	}
+
+	public long getPrunedEvents() {
+		return prunedEvents.get();
+	}
+
+	public long getReclaimedBytes() {
+		return reclaimedBytes.get();
+	}
+
+	/**
+	 * pruneAsync prunes, in the background, what dbPrune(round) prunes.
+	 * Requests made while a pruning is queued only move its target.
+	 * @param round
+	 */
+	public void pruneAsync(long round) {
+		pruneTarget.accumulateAndGet(round, Math::max);
+		if (closing || !pruneQueued.compareAndSet(false, true)) {
+			return;
+		}
+		synchronized (this) {
+			if (closing) {
+				return;
+			}
+			if (pruner == null) {
+				pruner = Executors.newSingleThreadExecutor(r -> {
+					Thread t = new Thread(r, "BadgerStore-pruner");
+					t.setDaemon(true);
+					return t;
+				});
+			}
+		}
+		pruner.submit(() -> {
+			pruneQueued.set(false);
+			long target = pruneTarget.get();
+			RResult<Long> dbPrune = dbPrune(target);
+			if (dbPrune.err != null) {
+				logger.field("round", target).field("error", dbPrune.err).error("pruneAsync()");
+				return;
+			}
+			if (closing) {
+				return;
+			}
+			long before = new File(path).length();
+			compact();
+			logger.field("round", target)
+				.field("reclaimed", dbPrune.result)
+				.field("file_before", before)
+				.field("file_after", new File(path).length())
+				.debug("pruneAsync()");
+		});
+	}
+
 	public boolean needBoostrap() {
 		return needBoostrap;
 	}
@@ -433,9 +675,49 @@ public class BadgerStore implements Store {
 		return path;
 	}
 
+	public error setMemoryBudget(long bytes) {
+		return inmemStore.setMemoryBudget(bytes);
+	}
+
+	public long memoryFootprint() {
+		return inmemStore.memoryFootprint();
+	}
+
+	public void cacheStats(Map<String,String> s) {
+		inmemStore.cacheStats(s);
+	}
+
 	//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
 	//DB Methods
 
+	// commit records a write and commits it according to the durability
+	private void commit() {
+		writes.incrementAndGet();
+		synchronized (commitLock) {
+			pendingWrites++;
+			switch (durability) {
+			case Sync:
+				dbCommit();
+				break;
+			case Batched:
+				if (pendingWrites >= batchWrites ||
+					System.nanoTime() - lastCommit >= TimeUnit.MILLISECONDS.toNanos(batchInterval)) {
+					dbCommit();
+				}
+				break;
+			case Async:
+				break;
+			}
+		}
+	}
+
+	private void dbCommit() {
+		db.commit();
+		commits.incrementAndGet();
+		pendingWrites = 0;
+		lastCommit = System.nanoTime();
+	}
+
 	private ConcurrentNavigableMap<byte[],byte[]> eventMap;
 	private ConcurrentNavigableMap<byte[],byte[]> participantMap;
 	private ConcurrentNavigableMap<byte[],byte[]> participantEventMap;
@@ -443,6 +725,7 @@ public class BadgerStore implements Store {
 	private ConcurrentNavigableMap<byte[],byte[]> roundMap;
 	private ConcurrentNavigableMap<byte[],byte[]> blockMap;
 	private ConcurrentNavigableMap<byte[],byte[]> frameMap;
+	private ConcurrentNavigableMap<byte[],byte[]> metaMap;
 
 	private void initDBMaps() {
 		eventMap = db.treeMap("events_map", Serializer.BYTE_ARRAY, Serializer.BYTE_ARRAY).createOrOpen();
@@ -452,10 +735,11 @@ public class BadgerStore implements Store {
 		roundMap = db.treeMap("rounds_map", Serializer.BYTE_ARRAY, Serializer.BYTE_ARRAY).createOrOpen();
 		blockMap = db.treeMap("blocks_map", Serializer.BYTE_ARRAY, Serializer.BYTE_ARRAY).createOrOpen();
 		frameMap = db.treeMap("frames_map", Serializer.BYTE_ARRAY, Serializer.BYTE_ARRAY).createOrOpen();
+		metaMap = db.treeMap("meta_map", Serializer.BYTE_ARRAY, Serializer.BYTE_ARRAY).createOrOpen();
 	}
 
 	private RResult<byte[]> lookupEvent(String eventKey) {
-		byte[] v= eventMap.get(eventKey.getBytes());
+		byte[] v= eventMap.get(eventKey(eventKey));
 		//logger.field("eventKey", eventKey).field("v.length", v.length).debug("getEvent()");
 		if (v == null) {
 			return new RResult<>(null, error.Errorf(String.format("Not found key : %s", eventKey)));
@@ -486,108 +770,152 @@ public class BadgerStore implements Store {
 		// TODO why tx.Discard? how to convert.
 //		tx = db.NewTransaction(true);
 //		defer tx.Discard();
-		for (Event event : events) {
-			String eventHex = event.hex();
-			//logger.field("eventHex", eventHex).debug("dbSetEvents()");
-			byte[] eventBytes = eventHex.getBytes();
-
-			RResult<byte[]> eventProto = event.marshaller().protoMarshal();
-			byte[] val = eventProto.result;
+		byte[][] vals = new byte[events.length][];
+		for (int i = 0; i < events.length; ++i) {
+			RResult<byte[]> eventProto = events[i].marshaller().protoMarshal();
 			error err = eventProto.err;
 			if (err != null) {
 				return err;
 			}
-
-			//insert [event hash] => [event bytes]
-			eventMap.put(eventBytes, val);
-			//insert [topo_index] => [event hash]
-			byte[] topoKey = topologicalEventKey(event.message.TopologicalIndex);
-			//logger.field("topoKey", new String(topoKey)).debug("dbSetEvents()");
-			eventMap.put(topoKey, eventBytes);
-			//insert [participant_index] => [event hash]
-			byte[] peKey = participantEventKey(event.creator(), event.index());
-			//logger.field("topoKey", new String(peKey)).debug("dbSetEvents()");
-			eventMap.put(peKey, eventBytes);
+			vals[i] = eventProto.result;
 		}
 
-		db.commit();
+		//no commit between the keys of an event
+		synchronized (commitLock) {
+			for (int i = 0; i < events.length; ++i) {
+				Event event = events[i];
+				String eventHex = event.hex();
+				//logger.field("eventHex", eventHex).debug("dbSetEvents()");
+				byte[] eventBytes = eventHex.getBytes();
+
+				//insert [event hash] => [event bytes]
+				eventMap.put(eventKey(eventHex), vals[i]);
+				//insert [topo_index] => [event hash]
+				byte[] topoKey = topologicalEventKey(event.message.TopologicalIndex);
+				//logger.field("topoKey", new String(topoKey)).debug("dbSetEvents()");
+				eventMap.put(topoKey, eventBytes);
+				//insert [participant_index] => [event hash]
+				byte[] peKey = participantEventKey(event.creator(), event.index());
+				//logger.field("topoKey", new String(peKey)).debug("dbSetEvents()");
+				eventMap.put(peKey, eventBytes);
+			}
+			commit();
+		}
 		return null;
 	}
 
 	public RResult<Event[]> dbTopologicalEvents() {
-		Event[] res = null;
-		long t = 0;
-
-		error err = null;
-		byte[] key;
-		byte[] item;
-		while (err == null) {
-			key = topologicalEventKey(t);
-			item = eventMap.get(key);
-
-			//logger.field("key", new String(key)).field("item", Arrays.toString(item)).field("t",t).debug("dbTopologicalEvents");
-			if (item == null) {
-				err = StoreErr.newStoreErr("Event", StoreErrType.KeyNotFound, Arrays.toString(item));
-				break;
-			}
-			byte[] eventBytes = eventMap.get(item);
-			//logger.field("eventBytes", eventBytes).debug("dbTopologicalEvents");
-			if (eventBytes == null) {
-				err = StoreErr.newStoreErr("Event", StoreErrType.KeyNotFound, Arrays.toString(item));
+		List<Event> res = new ArrayList<Event>();
+		TopologicalCursor cursor = dbTopologicalCursor();
+		while (cursor.hasNext()) {
+			RResult<Event> next = cursor.next();
+			if (isDBKeyNotFound(next.err)) {
 				break;
 			}
-
-			Event event = new Event();
-			err = event.marshaller().protoUnmarshal(eventBytes);
-			if (err != null){
-				break;
+			if (next.err != null) {
+				return new RResult<Event[]>(res.toArray(new Event[res.size()]), next.err);
 			}
-			res = Appender.append(res, event);
-
-			t++;
+			res.add(next.result);
 		}
+		//logger.field("res", res).debug("dbTopologicalEvents()");
+		return new RResult<Event[]>(res.isEmpty() ? null : res.toArray(new Event[res.size()]), null);
+	}
 
-		if (isDBKeyNotFound(err)) {
-			//logger.field("err", err).debug("DBKeyNotFound");
-			return new RResult<Event[]>(res, null);
-		}
+	/**
+	 * dbTopologicalCursor returns a cursor over the Events of the db in
+	 * topological order, from a range scan of the topo keys.
+	 */
+	public TopologicalCursor dbTopologicalCursor() {
+		return dbTopologicalCursor(0);
+	}
 
-		//logger.field("res", res).field("err", err).debug("dbTopologicalEvents()");
-		return new RResult<Event[]>(res, err);
+	// dbTopologicalCursor starting at the topological index from
+	public TopologicalCursor dbTopologicalCursor(long from) {
+		from = Math.max(from, dbPrunedTopo());
+		return new Cursor(
+			eventMap.subMap(topologicalEventKey(from), true, topologicalEventKey(Long.MAX_VALUE), true), from);
 	}
 
-	public  RResult<String[]> dbParticipantEvents(String participant, long skip) {
-		String[] res = null;
+	// Cursor range-scans the topo keys, up to the first missing topological index
+	class Cursor implements TopologicalCursor {
+		ConcurrentNavigableMap<byte[],byte[]> topo; //[topo_index] => [event hash]
+		Iterator<Map.Entry<byte[],byte[]>> it;
+		Map.Entry<byte[],byte[]> peeked;            //entry read by hasNext, null if none
+		long expected;                              //next topological index
+
+		Cursor(ConcurrentNavigableMap<byte[],byte[]> topo, long from) {
+			this.topo = topo;
+			this.it = topo.entrySet().iterator();
+			this.expected = from;
+		}
 
-		long i = skip + 1;
-		error err = null;
-		byte[] key;
-		byte[] item;
+		public long total() {
+			if (topo.isEmpty()) {
+				return 0;
+			}
+			return ByteBuffer.wrap(topo.lastKey(), 1, 8).getLong() + 1;
+		}
 
-		while (err == null) {
-			key = participantEventKey(participant, i);
-			item = eventMap.get(key);
+		public long position() {
+			return expected;
+		}
 
-			//logger.field("i",  i).field("key", new String(key)).field("item", item).debug("dbParticipantEvents");
-			if (item == null) {
-				err = StoreErr.newStoreErr("Participant", StoreErrType.KeyNotFound, Arrays.toString(key));
-				break;
+		public boolean hasNext() {
+			if (peeked == null && it.hasNext()) {
+				peeked = it.next();
 			}
-			res = Appender.append(res, new String(item));
-			i++;
+			return peeked != null && ByteBuffer.wrap(peeked.getKey(), 1, 8).getLong() == expected;
 		}
 
-		if (!isDBKeyNotFound(err)) {
-			return new RResult<String[]>(res, err);
+		public RResult<Event> next() {
+			if (!hasNext()) {
+				return new RResult<Event>(null, StoreErr.newStoreErr("Event", StoreErrType.KeyNotFound,
+					Arrays.toString(topologicalEventKey(expected))));
+			}
+			Map.Entry<byte[],byte[]> entry = peeked;
+			peeked = null;
+			expected++;
+
+			byte[] eventBytes = eventMap.get(eventKey(new String(entry.getValue())));
+			if (eventBytes == null) {
+				return new RResult<Event>(null, StoreErr.newStoreErr("Event", StoreErrType.KeyNotFound,
+					new String(entry.getValue())));
+			}
+			Event event = new Event();
+			error err = event.marshaller().protoUnmarshal(eventBytes);
+			if (err != null) {
+				return new RResult<Event>(null, err);
+			}
+			return new RResult<Event>(event, null);
 		}
+	}
 
-		return new RResult<String[]>(res, null);
+	/**
+	 * dbParticipantEvents returns the hashes of the Events of participant after
+	 * skip, in index order, from a range scan of its participant keys. The
+	 * scan stops at the first missing index.
+	 */
+	public RResult<String[]> dbParticipantEvents(String participant, long skip) {
+		ConcurrentNavigableMap<byte[],byte[]> range = eventMap.subMap(
+			participantEventKey(participant, skip + 1), true,
+			participantEventKey(participant, Long.MAX_VALUE), true);
+
+		List<String> res = new ArrayList<String>();
+		long expected = skip + 1;
+		for (Map.Entry<byte[],byte[]> e : range.entrySet()) {
+			if (ByteBuffer.wrap(e.getKey()).getLong(5) != expected) {
+				break;
+			}
+			res.add(new String(e.getValue()));
+			expected++;
+		}
+		return new RResult<String[]>(res.isEmpty() ? null : res.toArray(new String[res.size()]), null);
 	}
 
 	public RResult<String> dbParticipantEvent(String participant, long index) {
 		//logger.field("participant", participant).field("index", index).debug("dbParticipantEvent()");
 		byte[] key = participantEventKey(participant, index);
-		byte[] data = participantMap.get(key);
+		byte[] data = eventMap.get(key);
 		//logger.field("key", new String(key)).field("data", new String(data)).debug("dbParticipantEvent()");
 
 		error err = null;
@@ -600,21 +928,26 @@ public class BadgerStore implements Store {
 	}
 
 	public error dbSetRoots(Map<String,Root> roots) {
+		Map<String,byte[]> vals = new HashMap<String,byte[]>();
 		for (String participant : roots.keySet()) {
 			Root root = roots.get(participant);
 			RResult<byte[]> rootMarshal = root.marshaller().protoMarshal();
-			byte[] val = rootMarshal.result;
 			error err = rootMarshal.err;
 			if (err != null) {
 				return err;
 			}
-			byte[] key = participantRootKey(participant);
-//			fmt.Println("Setting root", participant, "->", key)
-			//insert [participant_root] => [root bytes]
-			participantRootMap.put(key, val);
+			vals.put(participant, rootMarshal.result);
 		}
 
-		db.commit();
+		synchronized (commitLock) {
+			for (String participant : vals.keySet()) {
+				byte[] key = participantRootKey(participant);
+//				fmt.Println("Setting root", participant, "->", key)
+				//insert [participant_root] => [root bytes]
+				participantRootMap.put(key, vals.get(participant));
+			}
+			commit();
+		}
 		return null;
 	}
 
@@ -672,8 +1005,10 @@ public class BadgerStore implements Store {
 		}
 
 		//insert [round_index] => [round bytes]
-		roundMap.put(key, val);
-		db.commit();
+		synchronized (commitLock) {
+			roundMap.put(key, val);
+			commit();
+		}
 		return null;
 	}
 
@@ -699,14 +1034,16 @@ public class BadgerStore implements Store {
 	}
 
 	public error dbSetParticipants(peers.Peers participants)  {
-		for (String participant : participants.getByPubKey().keySet()) {
-			Peer id = participants.getByPubKey().get(participant);
-			byte[] key = participantKey(participant);
-			byte[] value = String.valueOf(id.getID()).getBytes();
-			//logger.field("key", new String(key)).field("value", new String(value)).debug("dbSetParticipants()");
-
-			//insert [participant_participant] => [id]
-			participantMap.put(key, value);
+		synchronized (commitLock) {
+			for (String participant : participants.getByPubKey().keySet()) {
+				Peer id = participants.getByPubKey().get(participant);
+				byte[] key = participantKey(participant);
+				byte[] value = String.valueOf(id.getID()).getBytes();
+				//logger.field("key", new String(key)).field("value", new String(value)).debug("dbSetParticipants()");
+
+				//insert [participant_participant] => [id]
+				participantMap.put(key, value);
+			}
 		}
 
 //		db.commit();
@@ -742,9 +1079,10 @@ public class BadgerStore implements Store {
 		}
 
 		//insert [index] => [block bytes]
-		blockMap.put(key, val);
-
-		db.commit();
+		synchronized (commitLock) {
+			blockMap.put(key, val);
+			commit();
+		}
 		return null;
 	}
 
@@ -777,11 +1115,259 @@ public class BadgerStore implements Store {
 		}
 
 		//insert [index] => [frame bytes]
-		frameMap.put(key, val);
-		db.commit();
+		synchronized (commitLock) {
+			frameMap.put(key, val);
+			commit();
+		}
+		return null;
+	}
+
+	/**
+	 * dbSetCheckpoint stores the latest consensus checkpoint and commits it
+	 * together with all the writes pending, whatever the durability, so that
+	 * the Block and Frame it refers to are on disk.
+	 * @param checkpoint
+	 * @return
+	 */
+	public error dbSetCheckpoint(Checkpoint checkpoint) {
+		RResult<byte[]> marshal = checkpoint.marshaller().protoMarshal();
+		if (marshal.err != null) {
+			return marshal.err;
+		}
+		synchronized (commitLock) {
+			metaMap.put(checkpointKey, marshal.result);
+			dbCommit();
+		}
 		return null;
 	}
 
+	public RResult<Checkpoint> dbGetCheckpoint() {
+		byte[] data = metaMap.get(checkpointKey);
+		if (data == null) {
+			return new RResult<Checkpoint>(null,
+				StoreErr.newStoreErr("Checkpoint", StoreErrType.KeyNotFound, new String(checkpointKey)));
+		}
+		Checkpoint checkpoint = new Checkpoint();
+		error err = checkpoint.marshaller().protoUnmarshal(data);
+		if (err != null) {
+			return new RResult<Checkpoint>(null, err);
+		}
+		return new RResult<Checkpoint>(checkpoint, null);
+	}
+
+	/**
+	 * dbPrune deletes the Events received before round, with their topo and
+	 * participant keys, and the Rounds and Frames before round. Blocks are kept.
+	 *
+	 * The db must stay restartable: nothing is pruned without a Checkpoint,
+	 * the Frame of the Checkpoint Block is kept and so are the Events from its
+	 * ReplayFrom. Events are pruned in topological order, up to the first one
+	 * which isn't received before round, so that the topo keys left are
+	 * contiguous.
+	 *
+	 * Events are deleted pruneChunk at a time, each chunk committed with the
+	 * pruned topo under the commitLock, so that writers only wait for a chunk
+	 * and the db never holds half a chunk.
+	 * @param round
+	 * @return the number of bytes of the keys and values deleted
+	 */
+	public RResult<Long> dbPrune(long round) {
+		RResult<Checkpoint> dbGetCheckpoint = dbGetCheckpoint();
+		if (dbGetCheckpoint.err != null) {
+			if (isDBKeyNotFound(dbGetCheckpoint.err)) {
+				return new RResult<Long>(0L, null);
+			}
+			return new RResult<Long>(0L, dbGetCheckpoint.err);
+		}
+		Checkpoint checkpoint = dbGetCheckpoint.result;
+		RResult<Block> dbGetBlock = dbGetBlock(checkpoint.BlockIndex);
+		if (dbGetBlock.err != null) {
+			return new RResult<Long>(0L, dbGetBlock.err);
+		}
+		round = Math.min(round, dbGetBlock.result.roundReceived());
+
+		long bytes = 0;
+		long t = dbPrunedTopo();
+		boolean more = true;
+		error err = null;
+		while (more && !closing && t < checkpoint.ReplayFrom) {
+			long chunkBytes = 0;
+			long events = 0;
+			synchronized (commitLock) {
+				long end = Math.min(t + pruneChunk, checkpoint.ReplayFrom);
+				more = end < checkpoint.ReplayFrom;
+				for (; t < end; t++) {
+					byte[] topoKey = topologicalEventKey(t);
+					byte[] hex = eventMap.get(topoKey);
+					if (hex == null) {
+						more = false;
+						break;
+					}
+					byte[] key = eventKey(new String(hex));
+					byte[] eventBytes = eventMap.get(key);
+					if (eventBytes != null) {
+						Event event = new Event();
+						err = event.marshaller().protoUnmarshal(eventBytes);
+						if (err != null || event.roundReceived < 0 || event.roundReceived >= round) {
+							more = false;
+							break;
+						}
+						byte[] peKey = participantEventKey(event.creator(), event.index());
+						if (eventMap.remove(peKey) != null) {
+							chunkBytes += peKey.length + hex.length;
+						}
+						eventMap.remove(key);
+						chunkBytes += key.length + eventBytes.length;
+					}
+					eventMap.remove(topoKey);
+					chunkBytes += topoKey.length + hex.length;
+					events++;
+				}
+				metaMap.put(prunedTopoKey, ByteBuffer.allocate(8).putLong(t).array());
+				pendingWrites++;
+				dbCommit();
+			}
+			bytes += chunkBytes;
+			prunedEvents.addAndGet(events);
+			reclaimedBytes.addAndGet(chunkBytes);
+		}
+		if (err != null || closing) {
+			return new RResult<Long>(bytes, err);
+		}
+
+		long rangeBytes;
+		synchronized (commitLock) {
+			rangeBytes = removeRange(roundMap, roundKey(0), roundKey(round));
+			rangeBytes += removeRange(frameMap, frameKey(0), frameKey(round));
+			pendingWrites++;
+			dbCommit();
+		}
+		bytes += rangeBytes;
+		reclaimedBytes.addAndGet(rangeBytes);
+		return new RResult<Long>(bytes, null);
+	}
+
+	// dbPrunedTopo is the topological index of the first Event not pruned
+	public long dbPrunedTopo() {
+		byte[] v = metaMap.get(prunedTopoKey);
+		return v == null ? 0 : ByteBuffer.wrap(v).getLong();
+	}
+
+	private static long removeRange(ConcurrentNavigableMap<byte[],byte[]> map, byte[] from, byte[] to) {
+		long bytes = 0;
+		ConcurrentNavigableMap<byte[],byte[]> range = map.subMap(from, true, to, false);
+		for (Map.Entry<byte[],byte[]> e : range.entrySet()) {
+			bytes += e.getKey().length + e.getValue().length;
+		}
+		range.clear();
+		return bytes;
+	}
+
+	// compact gives the space of the deleted records back, if the db supports it
+	private void compact() {
+		try {
+			db.getStore().compact();
+		} catch (RuntimeException e) {
+			logger.field("error", e).debug("compact()");
+		}
+	}
+
+	public byte dbKeyFormat() {
+		byte[] v = metaMap.get(keyFormatKey);
+		return v == null ? 0 : v[0];
+	}
+
+	/**
+	 * dbMigrateKeys rewrites the String.format keys of a database created
+	 * before the binary keys, or the variable width event keys of key format 1.
+	 * participants must be set.
+	 * @return
+	 */
+	public error dbMigrateKeys() {
+		long migrated = 0;
+		byte format = dbKeyFormat();
+		try {
+			if (format == 1) {
+				migrated += migrateEventKeys();
+			} else {
+				for (byte[] key : legacyKeys(eventMap)) {
+					String k = new String(key);
+					byte[] value = eventMap.remove(key);
+					int e = k.lastIndexOf("__event_");
+					if (k.startsWith(topoPrefix + "_")) {
+						eventMap.put(topologicalEventKey(legacyIndex(k)), value);
+					} else if (e >= 0) {
+						eventMap.put(participantEventKey(k.substring(0, e), legacyIndex(k)), value);
+					} else {
+						eventMap.put(eventKey(k), value);
+					}
+					migrated++;
+				}
+				for (byte[] key : legacyKeys(participantRootMap)) {
+					String k = new String(key);
+					String participant = k.substring(0, k.length() - rootSuffix.length() - 1);
+					participantRootMap.put(participantRootKey(participant), participantRootMap.remove(key));
+					migrated++;
+				}
+				for (byte[] key : legacyKeys(roundMap)) {
+					roundMap.put(roundKey(legacyIndex(new String(key))), roundMap.remove(key));
+					migrated++;
+				}
+				for (byte[] key : legacyKeys(blockMap)) {
+					blockMap.put(blockKey(legacyIndex(new String(key))), blockMap.remove(key));
+					migrated++;
+				}
+				for (byte[] key : legacyKeys(frameMap)) {
+					frameMap.put(frameKey(legacyIndex(new String(key))), frameMap.remove(key));
+					migrated++;
+				}
+			}
+		} catch (NumberFormatException e) {
+			db.rollback();
+			return error.Errorf("cannot migrate keys: " + e.getMessage());
+		}
+
+		metaMap.put(keyFormatKey, new byte[] {keyFormat});
+		dbCommit();
+		logger.field("keys", migrated).field("path", path).debug("dbMigrateKeys()");
+		return null;
+	}
+
+	// migrateEventKeys pads the event keys of key format 1, the BigInteger bytes
+	// of the hash, to HASH_SIZE bytes
+	private long migrateEventKeys() {
+		List<byte[]> keys = new ArrayList<byte[]>();
+		for (byte[] key : eventMap.subMap(new byte[] {eventTag}, new byte[] {eventTag + 1}).keySet()) {
+			if (key.length != 1 + HASH_SIZE) {
+				keys.add(key);
+			}
+		}
+		for (byte[] key : keys) {
+			//the bytes beyond HASH_SIZE are the zero sign byte
+			byte[] fixed = new byte[1 + HASH_SIZE];
+			fixed[0] = eventTag;
+			int n = Math.min(key.length - 1, HASH_SIZE);
+			System.arraycopy(key, key.length - n, fixed, fixed.length - n, n);
+			eventMap.put(fixed, eventMap.remove(key));
+		}
+		return keys.size();
+	}
+
+	private static List<byte[]> legacyKeys(ConcurrentNavigableMap<byte[],byte[]> map) {
+		List<byte[]> keys = new ArrayList<byte[]>();
+		for (byte[] key : map.keySet()) {
+			if (isLegacyKey(key)) {
+				keys.add(key);
+			}
+		}
+		return keys;
+	}
+
+	// index of a legacy key: the digits after the last '_'
+	private static long legacyIndex(String key) {
+		return Long.parseLong(key.substring(key.lastIndexOf('_') + 1));
+	}
+
 	//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
 
 	public boolean isDBKeyNotFound(error err) {
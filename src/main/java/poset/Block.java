@@ -22,6 +22,8 @@ public class Block {
 	private String hex;
 	private byte[] stateHash;
 	private byte[] frameHash;
+	private int weight = -1;       //serialized size with weightSignatures signatures
+	private int weightSignatures;
 
 	public Block() {
 		body = null;
@@ -55,6 +57,17 @@ public class Block {
 		return null;
 	}
 
+	// weight is the serialized size of the Block, computed again only when its
+	// signatures changed
+	int weight() {
+		int n = signatures == null ? 0 : signatures.size();
+		if (weight < 0 || n != weightSignatures) {
+			weight = marshaller().toProto().getSerializedSize();
+			weightSignatures = n;
+		}
+		return weight;
+	}
+
 	public Map<String,String> getSignatures() {
 		if (this.signatures != null) {
 			return this.signatures;
@@ -246,7 +259,13 @@ public class Block {
 		if (err != null) {
 			return new RResult<Boolean>(false, err);
 		}
+		return verify(sig, signBytes);
+	}
 
+	// verify with the hash of the body already computed, to check several
+	// signatures of the same block
+	public static RResult<Boolean> verify(BlockSignature sig, byte[] signBytes) {
+		error err;
 		PublicKey pubKey = crypto.Utils.ToECDSAPub(sig.validator);
 
 		RResult3<BigInteger, BigInteger> decodeSignature = crypto.Utils.DecodeSignature(sig.signature);
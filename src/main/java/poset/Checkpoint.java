@@ -0,0 +1,69 @@
+package poset;
+
+import java.util.Arrays;
+
+import com.google.protobuf.Parser;
+
+import common.IProto;
+
+/**
+ * Checkpoint is a consensus snapshot from which a node restarts without
+ * replaying all its Events.
+ *
+ * The consensus state at a Block is the Block and its Frame, which a Poset is
+ * Reset from. The Events that were not in consensus at that Block still have
+ * to be replayed: the UndeterminedEvents, those received in the Rounds after
+ * the Block, and all the Events inserted after the checkpoint was taken.
+ */
+public class Checkpoint {
+	public long BlockIndex;          //index of the Block the Poset is Reset from
+	public long TopologicalIndex;    //topological index of the first Event inserted after the checkpoint
+	public long ReplayFrom;          //lowest topological index of UndeterminedEvents
+	public String[] UndeterminedEvents; //Events before TopologicalIndex which are not in consensus
+
+	public Checkpoint() {
+		this(-1, 0, 0, new String[] {});
+	}
+
+	public Checkpoint(long blockIndex, long topologicalIndex, long replayFrom, String[] undeterminedEvents) {
+		this.BlockIndex = blockIndex;
+		this.TopologicalIndex = topologicalIndex;
+		this.ReplayFrom = replayFrom;
+		this.UndeterminedEvents = undeterminedEvents;
+	}
+
+	public IProto<Checkpoint, poset.proto.Checkpoint> marshaller() {
+		return new IProto<Checkpoint, poset.proto.Checkpoint>() {
+			@Override
+			public poset.proto.Checkpoint toProto() {
+				poset.proto.Checkpoint.Builder builder = poset.proto.Checkpoint.newBuilder()
+					.setBlockIndex(BlockIndex)
+					.setTopologicalIndex(TopologicalIndex)
+					.setReplayFrom(ReplayFrom);
+				if (UndeterminedEvents != null) {
+					builder.addAllUndeterminedEvents(Arrays.asList(UndeterminedEvents));
+				}
+				return builder.build();
+			}
+
+			@Override
+			public void fromProto(poset.proto.Checkpoint proto) {
+				BlockIndex = proto.getBlockIndex();
+				TopologicalIndex = proto.getTopologicalIndex();
+				ReplayFrom = proto.getReplayFrom();
+				UndeterminedEvents = proto.getUndeterminedEventsList().toArray(new String[0]);
+			}
+
+			@Override
+			public Parser<poset.proto.Checkpoint> parser() {
+				return poset.proto.Checkpoint.parser();
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return "Checkpoint [BlockIndex=" + BlockIndex + ", TopologicalIndex=" + TopologicalIndex
+				+ ", ReplayFrom=" + ReplayFrom + ", UndeterminedEvents=" + Arrays.toString(UndeterminedEvents) + "]";
+	}
+}
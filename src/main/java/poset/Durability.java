@@ -0,0 +1,13 @@
+package poset;
+
+/**
+ * Durability of the writes of a persistent store
+ * - Sync: every write is committed right away
+ * - Batched: writes are committed by flush(), or every batchWrites writes
+ *   or batchInterval ms, whichever comes first
+ * - Async: writes are committed by flush() or in the background every
+ *   batchInterval ms
+ */
+public enum Durability {
+	Sync, Batched, Async
+}
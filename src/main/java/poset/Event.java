@@ -4,6 +4,8 @@ import java.math.BigInteger;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 
 import com.google.protobuf.ByteString;
@@ -27,6 +29,12 @@ public class Event implements FlagtableContainer {
 	byte[] hash;
 	String hex;
 
+	int weight = -1; //serialized size at the first weighing
+
+	//decoded message.FlagTable, only serialized at wire/persist time
+	Map<String,Long> flagTable;
+	byte[] flagTableBytes; //message.FlagTable when flagTable was decoded
+
 	// NewEvent creates new block event.
 	public Event(byte[][] transactions,
 			InternalTransaction[] internalTransactions,
@@ -68,6 +76,10 @@ public class Event implements FlagtableContainer {
 		this.message = new EventMessage();
 		this.message.Body = body;
 		this.message.FlagTable = ft;
+		if (flagTable != null) {
+			this.flagTable = Collections.unmodifiableMap(new HashMap<String,Long>(flagTable));
+			this.flagTableBytes = ft;
+		}
 
 		// TODO I added these init
 		this.round = -1;
@@ -112,6 +124,8 @@ public class Event implements FlagtableContainer {
 		this.creator = ev.creator;
 		this.hash = ev.hash;
 		this.hex = ev.hex;
+		this.flagTable = ev.flagTable;
+		this.flagTableBytes = ev.flagTableBytes;
 	}
 
 	// Round returns round of event.
@@ -226,6 +240,16 @@ public class Event implements FlagtableContainer {
 		return hex;
 	}
 
+	// weight is the serialized size of the Event when it was first weighed.
+	// The later updates of its round, timestamps and indexes only change a few
+	// varint bytes.
+	int weight() {
+		if (weight < 0) {
+			weight = marshaller().toProto().getSerializedSize();
+		}
+		return weight;
+	}
+
 	public void setRound(long r) {
 		round = r;
 	}
@@ -291,14 +315,27 @@ public class Event implements FlagtableContainer {
 		RResult<byte[]> byteArrayCall = new FlagTableWrapper(flagTable).marshaller().protoMarshal();
 		message.FlagTable = byteArrayCall.result;
 		error err = byteArrayCall.err;
+		if (err == null) {
+			this.flagTable = Collections.unmodifiableMap(new HashMap<String,Long>(flagTable));
+			this.flagTableBytes = message.FlagTable;
+		}
 		return err;
 	}
 
-	// GetFlagTable returns the flag tabl
+	// GetFlagTable returns the flag table. The map is decoded once and must
+	// not be modified.
 	public RResult<Map<String,Long>> getFlagTable() {
-		FlagTableWrapper flagTable = new FlagTableWrapper();
-		error err = flagTable.marshaller().protoUnmarshal(message.FlagTable);
-		return new RResult<Map<String,Long>>(flagTable.Body, err);
+		byte[] ft = message.FlagTable;
+		if (flagTable == null || flagTableBytes != ft) {
+			FlagTableWrapper wrapper = new FlagTableWrapper();
+			error err = wrapper.marshaller().protoUnmarshal(ft);
+			if (err != null) {
+				return new RResult<Map<String,Long>>(wrapper.Body, err);
+			}
+			flagTable = Collections.unmodifiableMap(wrapper.Body);
+			flagTableBytes = ft;
+		}
+		return new RResult<Map<String,Long>>(flagTable, null);
 	}
 
 	/**
@@ -307,14 +344,14 @@ public class Event implements FlagtableContainer {
 	 * @return
 	 */
 	public RResult<Map<String,Long>> mergeFlagTable(Map<String,Long> dst) {
-		FlagTableWrapper src = new FlagTableWrapper();
-		error err = src.marshaller().protoUnmarshal(message.FlagTable);
-		if (err != null) {
-			return new RResult<Map<String,Long>>(null, err);
+		RResult<Map<String,Long>> getFlagTable = getFlagTable();
+		if (getFlagTable.err != null) {
+			return new RResult<Map<String,Long>>(null, getFlagTable.err);
 		}
 
-		src.Body.putAll(dst);
-		return new RResult<Map<String,Long>>(src.Body, err);
+		Map<String,Long> merged = new HashMap<String,Long>(getFlagTable.result);
+		merged.putAll(dst);
+		return new RResult<Map<String,Long>>(merged, null);
 	}
 
 
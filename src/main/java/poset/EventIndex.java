@@ -0,0 +1,560 @@
+package poset;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * EventIndex is a dense, in-memory index of the DAG used by the consensus
+ * methods of the Poset.
+ *
+ * Every Event inserted in the Poset is assigned an int slot. Parents, creator,
+ * index, round and Lamport timestamp are kept in primitive arrays addressed by
+ * slot, so that ancestry and round computations walk ints instead of resolving
+ * hex Strings through the Store. RootEvents (Root.SelfParent and Root.Others)
+ * get a slot too, without parents, so that the walks terminate on them.
+ *
+ * Each slot also carries a vector clock: for every creator, the highest index
+ * of that creator's events in the slot's ancestry. It is computed from the two
+ * parents when the slot is added, which turns ancestor(x, y) into a single
+ * comparison. Slots with a parent that is not indexed have no clock, unless
+ * the parent is known to be evicted: the ancestors of an evicted Event are
+ * evicted too and precede the kept Events of their creators, so it only adds
+ * its own creator and index to the clock.
+ *
+ * For stronglySee, the Events of each creator are kept in index order, and the
+ * lowest index of each creator's Events that see a slot is found by binary
+ * search and memoized. x strongly sees y when the creators whose first seeing
+ * Event is in x's ancestry form a supermajority.
+ *
+ * The Store remains the persistence boundary: the index only mirrors what is
+ * needed by the consensus algorithms and is rebuilt on Reset/Bootstrap. Slots
+ * of past rounds are evicted with evictBelow, the consensus methods fall back
+ * to the Store for them. The evicted chain tails, of the creators without
+ * kept Events, are remembered so that the creators can resume with a clock.
+ */
+public class EventIndex {
+	public static final int NONE = -1;
+	public static final long UNKNOWN = Long.MIN_VALUE;
+
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final long NO_CLOCK = Long.MAX_VALUE;
+
+	Map<String,Integer> slots;     //[hex] => slot
+	Map<String,Integer> creators;  //[creator pub key] => creator slot
+	Map<Integer,String[]> external; //[slot] => parents which are not indexed
+	Map<String,long[]> evicted;     //[hex] => creator slot and index of an evicted Event
+	long evictedBelow;              //Round below which the slots were evicted
+
+	String[] hexes;
+	int[] selfParent;
+	int[] otherParent;
+	int[] creator;
+	long[] index;
+	long[] round;
+	long[] lamport;
+	long[][] clock;  //[slot][creator slot] => highest ancestor index, null if unknown
+	int[][] chains;  //[creator slot] => slots of the creator's Events, by index
+	int[] chainLength;
+	Map<Integer,long[]> firstSeeing; //[slot][creator slot] => lowest index of an Event seeing slot
+	int size;
+
+	public EventIndex() {
+		reset();
+	}
+
+	public void reset() {
+		this.slots = new HashMap<String,Integer>();
+		this.creators = new HashMap<String,Integer>();
+		this.external = new HashMap<Integer,String[]>();
+		this.evicted = new HashMap<String,long[]>();
+		this.evictedBelow = UNKNOWN;
+		this.hexes = new String[INITIAL_CAPACITY];
+		this.selfParent = new int[INITIAL_CAPACITY];
+		this.otherParent = new int[INITIAL_CAPACITY];
+		this.creator = new int[INITIAL_CAPACITY];
+		this.index = new long[INITIAL_CAPACITY];
+		this.round = new long[INITIAL_CAPACITY];
+		this.lamport = new long[INITIAL_CAPACITY];
+		this.clock = new long[INITIAL_CAPACITY][];
+		this.chains = new int[0][];
+		this.chainLength = new int[0];
+		this.firstSeeing = new HashMap<Integer,long[]>();
+		this.size = 0;
+	}
+
+	/**
+	 * Adds an Event to the index. Parents must have been added before.
+	 * @param event
+	 * @return the slot of the event
+	 */
+	public int add(Event event) {
+		String hex = event.hex();
+		Integer existing = slots.get(hex);
+		if (existing != null) {
+			return existing;
+		}
+
+		int sp = slot(event.selfParent());
+		int op = slot(event.otherParent());
+		int slot = add(hex, creatorSlot(event.creator()), event.index(), sp, op);
+
+		String spHex = sp == NONE ? nonEmpty(event.selfParent()) : null;
+		String opHex = op == NONE ? nonEmpty(event.otherParent()) : null;
+		long[] spEvicted = spHex == null ? null : evicted.get(spHex);
+		long[] opEvicted = opHex == null ? null : evicted.get(opHex);
+		if (spHex != null || opHex != null) {
+			external.put(slot, new String[] {spHex, opHex});
+		}
+		if ((spHex == null || spEvicted != null) && (opHex == null || opEvicted != null)) {
+			clock[slot] = mergeClocks(slot, sp, op, spEvicted, opEvicted);
+		}
+		appendChain(slot);
+		if (event.round >= 0) {
+			round[slot] = event.round;
+		}
+		if (event.lamportTimestamp >= 0) {
+			lamport[slot] = event.lamportTimestamp;
+		}
+		return slot;
+	}
+
+	/**
+	 * Adds a RootEvent to the index. RootEvents have no known parents.
+	 * @param rootEvent
+	 * @param creatorPubKey
+	 * @return the slot of the root event
+	 */
+	public int addRoot(RootEvent rootEvent, String creatorPubKey) {
+		Integer existing = slots.get(rootEvent.Hash);
+		if (existing != null) {
+			return existing;
+		}
+		int slot = add(rootEvent.Hash, creatorSlot(creatorPubKey), rootEvent.Index, NONE, NONE);
+		round[slot] = rootEvent.Round;
+		lamport[slot] = rootEvent.LamportTimestamp;
+		clock[slot] = mergeClocks(slot, NONE, NONE);
+		return slot;
+	}
+
+	/**
+	 * Records an Event as evicted, so that its children get a clock. It is
+	 * forgotten on the next eviction unless it is the tail of its creator.
+	 * @param hex
+	 * @param creatorPubKey
+	 * @param idx
+	 */
+	public void addEvicted(String hex, String creatorPubKey, long idx) {
+		evicted.put(hex, new long[] {creatorSlot(creatorPubKey), idx});
+	}
+
+	public boolean isEvicted(String hex) {
+		return evicted.containsKey(hex);
+	}
+
+	// Round below which the slots were evicted, UNKNOWN if none was
+	public long evictedBelow() {
+		return evictedBelow;
+	}
+
+	private int add(String hex, int creatorSlot, long idx, int sp, int op) {
+		ensureCapacity(size + 1);
+		int slot = size++;
+		hexes[slot] = hex;
+		selfParent[slot] = sp;
+		otherParent[slot] = op;
+		creator[slot] = creatorSlot;
+		index[slot] = idx;
+		round[slot] = UNKNOWN;
+		lamport[slot] = UNKNOWN;
+		clock[slot] = null;
+		slots.put(hex, slot);
+		return slot;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= hexes.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, hexes.length * 2);
+		hexes = Arrays.copyOf(hexes, newCapacity);
+		selfParent = Arrays.copyOf(selfParent, newCapacity);
+		otherParent = Arrays.copyOf(otherParent, newCapacity);
+		creator = Arrays.copyOf(creator, newCapacity);
+		index = Arrays.copyOf(index, newCapacity);
+		round = Arrays.copyOf(round, newCapacity);
+		lamport = Arrays.copyOf(lamport, newCapacity);
+		clock = Arrays.copyOf(clock, newCapacity);
+	}
+
+	/**
+	 * Evicts the slots whose round is known and below r, and renumbers the
+	 * others. Rounds never decrease from parent to child, so every descendant
+	 * of a kept slot is kept: the clocks, chains and firstSeeing memo of the
+	 * kept slots stay valid, and the memo of the evicted ones is dropped.
+	 * Parents which are evicted become external.
+	 *
+	 * Slots held outside of the index are invalidated.
+	 * @param r
+	 * @return the number of evicted slots
+	 */
+	public int evictBelow(long r) {
+		int[] remap = new int[size];
+		int kept = 0;
+		for (int s = 0; s < size; s++) {
+			remap[s] = round[s] != UNKNOWN && round[s] < r ? NONE : kept++;
+		}
+		int evicted = size - kept;
+		evictedBelow = Math.max(evictedBelow, r);
+		if (evicted == 0) {
+			return 0;
+		}
+
+		int capacity = Math.max(INITIAL_CAPACITY, kept * 2);
+		String[] newHexes = new String[capacity];
+		int[] newSelfParent = new int[capacity];
+		int[] newOtherParent = new int[capacity];
+		int[] newCreator = new int[capacity];
+		long[] newIndex = new long[capacity];
+		long[] newRound = new long[capacity];
+		long[] newLamport = new long[capacity];
+		long[][] newClock = new long[capacity][];
+		Map<String,Integer> newSlots = new HashMap<String,Integer>();
+		Map<Integer,String[]> newExternal = new HashMap<Integer,String[]>();
+		Map<Integer,long[]> newFirstSeeing = new HashMap<Integer,long[]>();
+
+		for (int s = 0; s < size; s++) {
+			int n = remap[s];
+			if (n == NONE) {
+				continue;
+			}
+			newHexes[n] = hexes[s];
+			newCreator[n] = creator[s];
+			newIndex[n] = index[s];
+			newRound[n] = round[s];
+			newLamport[n] = lamport[s];
+			newClock[n] = clock[s];
+			newSlots.put(hexes[s], n);
+
+			String[] parents = external.get(s);
+			String spHex = parents == null ? null : parents[0];
+			String opHex = parents == null ? null : parents[1];
+			newSelfParent[n] = remapParent(selfParent[s], remap);
+			if (newSelfParent[n] == NONE && selfParent[s] != NONE) {
+				spHex = hexes[selfParent[s]];
+			}
+			newOtherParent[n] = remapParent(otherParent[s], remap);
+			if (newOtherParent[n] == NONE && otherParent[s] != NONE) {
+				opHex = hexes[otherParent[s]];
+			}
+			if (spHex != null || opHex != null) {
+				newExternal.put(n, new String[] {spHex, opHex});
+			}
+
+			long[] fs = firstSeeing.get(s);
+			if (fs != null) {
+				newFirstSeeing.put(n, fs);
+			}
+		}
+
+		//keep the evicted tails of the creators left without kept Events
+		long[][] tails = new long[chains.length][];
+		String[] tailHexes = new String[chains.length];
+		for (Map.Entry<String,long[]> e : this.evicted.entrySet()) {
+			int c = (int) e.getValue()[0];
+			if (tails[c] == null || tails[c][1] < e.getValue()[1]) {
+				tails[c] = e.getValue();
+				tailHexes[c] = e.getKey();
+			}
+		}
+		Map<String,long[]> newEvicted = new HashMap<String,long[]>();
+		for (int c = 0; c < chains.length; c++) {
+			int n = chainLength[c];
+			if (n > 0 && remap[chains[c][n - 1]] == NONE &&
+				(tails[c] == null || tails[c][1] < index[chains[c][n - 1]])) {
+				tails[c] = new long[] {c, index[chains[c][n - 1]]};
+				tailHexes[c] = hexes[chains[c][n - 1]];
+			}
+		}
+
+		for (int c = 0; c < chains.length; c++) {
+			int n = 0;
+			for (int i = 0; i < chainLength[c]; i++) {
+				int slot = remap[chains[c][i]];
+				if (slot != NONE) {
+					chains[c][n++] = slot;
+				}
+			}
+			chainLength[c] = n;
+			if (n == 0 && tails[c] != null) {
+				newEvicted.put(tailHexes[c], tails[c]);
+			}
+		}
+
+		this.hexes = newHexes;
+		this.selfParent = newSelfParent;
+		this.otherParent = newOtherParent;
+		this.creator = newCreator;
+		this.index = newIndex;
+		this.round = newRound;
+		this.lamport = newLamport;
+		this.clock = newClock;
+		this.slots = newSlots;
+		this.external = newExternal;
+		this.evicted = newEvicted;
+		this.firstSeeing = newFirstSeeing;
+		this.size = kept;
+		return evicted;
+	}
+
+	private static int remapParent(int parent, int[] remap) {
+		return parent == NONE ? NONE : remap[parent];
+	}
+
+	// clock of a slot from the clocks of its parents and the creator and index
+	// of its evicted parents. null if a parent has none.
+	private long[] mergeClocks(int slot, int sp, int op, long[]... evictedParents) {
+		long[] c = new long[creators.size()];
+		Arrays.fill(c, UNKNOWN);
+		for (int parent : new int[] {sp, op}) {
+			if (parent == NONE) {
+				continue;
+			}
+			long[] pc = clock[parent];
+			if (pc == null) {
+				return null;
+			}
+			for (int i = 0; i < pc.length; i++) {
+				c[i] = Math.max(c[i], pc[i]);
+			}
+		}
+		for (long[] e : evictedParents) {
+			if (e != null) {
+				c[(int) e[0]] = Math.max(c[(int) e[0]], e[1]);
+			}
+		}
+		c[creator[slot]] = Math.max(c[creator[slot]], index[slot]);
+		return c;
+	}
+
+	private void appendChain(int slot) {
+		int c = creator[slot];
+		int n = chainLength[c];
+		if (n > 0 && index[chains[c][n - 1]] >= index[slot]) {
+			return;
+		}
+		if (n == chains[c].length) {
+			chains[c] = Arrays.copyOf(chains[c], Math.max(16, n * 2));
+		}
+		chains[c][n] = slot;
+		chainLength[c] = n + 1;
+	}
+
+	public boolean hasClock(int slot) {
+		return clock[slot] != null;
+	}
+
+	// highest index of creator c seen by slot, UNKNOWN if none
+	public long highestSeen(int slot, int c) {
+		long[] sc = clock[slot];
+		if (sc == null || c >= sc.length) {
+			return UNKNOWN;
+		}
+		return sc[c];
+	}
+
+	/**
+	 * Ancestry through the vector clocks. Only valid if hasClock(x).
+	 * @return true if y is an ancestor of x
+	 */
+	public boolean ancestor(int x, int y) {
+		return x == y || highestSeen(x, creator[y]) >= index[y];
+	}
+
+	private static String nonEmpty(String hex) {
+		if (hex == null || hex.isEmpty()) {
+			return null;
+		}
+		return hex;
+	}
+
+	public int creatorSlot(String pubKey) {
+		Integer c = creators.get(pubKey);
+		if (c == null) {
+			c = creators.size();
+			creators.put(pubKey, c);
+			chains = Arrays.copyOf(chains, c + 1);
+			chains[c] = new int[16];
+			chainLength = Arrays.copyOf(chainLength, c + 1);
+		}
+		return c;
+	}
+
+	public int slot(String hex) {
+		if (hex == null || hex.isEmpty()) {
+			return NONE;
+		}
+		Integer slot = slots.get(hex);
+		if (slot == null) {
+			return NONE;
+		}
+		return slot;
+	}
+
+	public boolean contains(String hex) {
+		return slot(hex) != NONE;
+	}
+
+	// parent of a slot which is known by hash only, or null
+	public String externalSelfParent(int slot) {
+		String[] parents = external.get(slot);
+		return parents == null ? null : parents[0];
+	}
+
+	public String externalOtherParent(int slot) {
+		String[] parents = external.get(slot);
+		return parents == null ? null : parents[1];
+	}
+
+	/**
+	 * Lowest index of creator c's Events that see y.
+	 * @return UNKNOWN if no such Event is indexed yet, NO_CLOCK if it cannot
+	 * be decided from the clocks
+	 */
+	long firstSeeing(int y, int c) {
+		long[] fs = firstSeeing.get(y);
+		if (fs == null || fs.length < creators.size()) {
+			int from = fs == null ? 0 : fs.length;
+			fs = fs == null ? new long[creators.size()] : Arrays.copyOf(fs, creators.size());
+			Arrays.fill(fs, from, fs.length, UNKNOWN);
+			firstSeeing.put(y, fs);
+		}
+		if (fs[c] != UNKNOWN) {
+			return fs[c];
+		}
+
+		//a creator's Events see y from some index onwards
+		int[] chain = chains[c];
+		int lo = 0;
+		int hi = chainLength[c];
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (!hasClock(chain[mid])) {
+				return NO_CLOCK;
+			}
+			if (ancestor(chain[mid], y)) {
+				hi = mid;
+			} else {
+				lo = mid + 1;
+			}
+		}
+		if (lo == chainLength[c]) {
+			return UNKNOWN;
+		}
+		fs[c] = index[chain[lo]];
+		return fs[c];
+	}
+
+	/**
+	 * Sets in sentinels the creators which have an Event in x's ancestry that
+	 * sees y.
+	 * @return false if it cannot be decided from the clocks
+	 */
+	public boolean sentinels(int x, int y, BitSet sentinels) {
+		if (!hasClock(x)) {
+			return false;
+		}
+		if (!ancestor(x, y)) {
+			return true;
+		}
+		sentinels.set(creator[y]);
+		for (int c = 0; c < creators.size(); c++) {
+			if (c == creator[y]) {
+				continue;
+			}
+			long first = firstSeeing(y, c);
+			if (first == NO_CLOCK) {
+				return false;
+			}
+			if (first != UNKNOWN && highestSeen(x, c) >= first) {
+				sentinels.set(c);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Per creator minimum of the clocks of the given slots. An Event is an
+	 * ancestor of all the slots iff its index is not above the entry of its
+	 * creator.
+	 * @return null if a slot has no clock
+	 */
+	public long[] minClock(int[] slots) {
+		long[] m = new long[creators.size()];
+		Arrays.fill(m, Long.MAX_VALUE);
+		for (int slot : slots) {
+			if (slot == NONE || !hasClock(slot)) {
+				return null;
+			}
+			for (int c = 0; c < m.length; c++) {
+				m[c] = Math.min(m[c], highestSeen(slot, c));
+			}
+		}
+		return m;
+	}
+
+	// true if the slot is an ancestor of every slot whose minClock is m
+	public boolean seenBy(long[] m, int slot) {
+		int c = creator[slot];
+		return c < m.length && index[slot] <= m[c];
+	}
+
+	public static long pairKey(int x, int y) {
+		return ((long) x << 32) | (y & 0xFFFFFFFFL);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int creators() {
+		return creators.size();
+	}
+
+	public String hex(int slot) {
+		return hexes[slot];
+	}
+
+	public int selfParent(int slot) {
+		return selfParent[slot];
+	}
+
+	public int otherParent(int slot) {
+		return otherParent[slot];
+	}
+
+	public int creator(int slot) {
+		return creator[slot];
+	}
+
+	public long index(int slot) {
+		return index[slot];
+	}
+
+	public long round(int slot) {
+		return round[slot];
+	}
+
+	public void setRound(int slot, long r) {
+		round[slot] = r;
+	}
+
+	public long lamportTimestamp(int slot) {
+		return lamport[slot];
+	}
+
+	public void setLamportTimestamp(int slot, long t) {
+		lamport[slot] = t;
+	}
+}
@@ -13,6 +13,7 @@ public class Frame {
 	long Round;
 	Root[] Roots;
 	EventMessage[] Events;
+	int weight = -1; //serialized size, Frames are not modified once built
 
 	public Frame() {
 		// TODO
@@ -91,6 +92,13 @@ public class Frame {
 		return new RResult<byte[]>(hash.SHA256(hashBytes), null);
 	}
 
+	int weight() {
+		if (weight < 0) {
+			weight = marshaller().toProto().getSerializedSize();
+		}
+		return weight;
+	}
+
 	public long GetRound() {
 		return Round;
 	}
@@ -20,7 +20,7 @@ public class InmemStore implements Store {
 	LRUCache<Long,RoundInfo> roundCache;
 	LRUCache<Long,Block> blockCache;
 	LRUCache<Long,Frame> frameCache;
-	common.RollingIndex consensusCache;
+	common.RollingIndex<String> consensusCache;
 	long totConsensusEvents;
 	ParticipantEventsCache participantEventsCache;
 	Map<String,Root> rootsByParticipant; //[participant] => Root
@@ -28,6 +28,14 @@ public class InmemStore implements Store {
 	long lastRound;
 	Map<String,String> lastConsensusEvents; //[participant] => hex() of last consensus event
 	long lastBlock;
+	long memoryBudget; //bytes shared by the Event, Round, Block and Frame caches, 0 to bound their entry counts only
+
+	// cached values weigh their serialized size, computed once by the Events,
+	// Blocks and Frames. RoundInfos grow with their Events.
+	static final LRUCache.Weigher<Event> eventWeigher = e -> e.weight();
+	static final LRUCache.Weigher<RoundInfo> roundWeigher = r -> r.marshaller().toProto().getSerializedSize();
+	static final LRUCache.Weigher<Block> blockWeigher = b -> b.weight();
+	static final LRUCache.Weigher<Frame> frameWeigher = f -> f.weight();
 
 	public InmemStore(peers.Peers participants, int cacheSize) {
 		HashMap<String,Root> rootsByParticipant = new HashMap<String, Root>();
@@ -76,7 +84,7 @@ public class InmemStore implements Store {
 		this.roundCache=             roundCache;
 		this.blockCache=             blockCache;
 		this.frameCache=             frameCache;
-		this.consensusCache=         new RollingIndex("ConsensusCache", cacheSize);
+		this.consensusCache=         new RollingIndex<String>("ConsensusCache", cacheSize);
 		this.participantEventsCache= new ParticipantEventsCache(cacheSize, participants);
 		this.rootsByParticipant=     rootsByParticipant;
 		this.lastRound=              -1;
@@ -140,6 +148,7 @@ public class InmemStore implements Store {
 
 		// fmt.Println("Adding event to cache", event.Hex())
 		eventCache.put(key, event);
+		rebalance();
 
 		return null;
 	}
@@ -222,12 +231,8 @@ public class InmemStore implements Store {
 	}
 
 	public String[] consensusEvents() {
-		Object[] lastWindow = consensusCache.getLastWindow().result1;
-		String[] res = new String[lastWindow.length];
-		for (int i =0 ; i< lastWindow.length; ++i) {
-			res[i] = lastWindow[i].toString();
-		}
-		return res;
+		RollingIndex.Window<String> lastWindow = consensusCache.lastWindow();
+		return lastWindow.toArray(new String[lastWindow.size()]);
 	}
 
 	public long consensusEventsCount() {
@@ -251,6 +256,7 @@ public class InmemStore implements Store {
 
 	public error setRound(long r , RoundInfo round )  {
 		roundCache.put(r, round);
+		rebalance();
 		if (r > lastRound) {
 			lastRound = r;
 		}
@@ -305,6 +311,7 @@ public class InmemStore implements Store {
 			return err;
 		}
 		blockCache.put(index, block);
+		rebalance();
 		if (index > lastBlock) {
 			lastBlock = index;
 		}
@@ -331,11 +338,12 @@ public class InmemStore implements Store {
 			return err;
 		}
 		frameCache.put(index, frame);
+		rebalance();
 		return null;
 	}
 
 	public error reset(Map<String,Root> roots)  {
-		RResult<LRUCache<String,Event>> newCache = LRUCache.New(cacheSize);
+		RResult<LRUCache<String,Event>> newCache = newCache(eventWeigher);
 		LRUCache<String,Event> eventCache = newCache.result;
 		error err = newCache.err;
 		if (err != null) {
@@ -343,7 +351,7 @@ public class InmemStore implements Store {
 			System.exit(41);
 		}
 
-		RResult<LRUCache<Long,RoundInfo>> newCache1 = LRUCache.New(cacheSize);
+		RResult<LRUCache<Long,RoundInfo>> newCache1 = newCache(roundWeigher);
 		LRUCache<Long,RoundInfo> roundCache = newCache1.result;
 		err = newCache1.err;
 		if (err != null) {
@@ -356,7 +364,7 @@ public class InmemStore implements Store {
 		this.rootsBySelfParent = null;
 		this.eventCache = eventCache;
 		this.roundCache = roundCache;
-		this.consensusCache = new RollingIndex("ConsensusCache", cacheSize);
+		this.consensusCache = new RollingIndex<String>("ConsensusCache", cacheSize);
 		err = participantEventsCache.Reset();
 		this.lastRound = -1;
 		this.lastBlock = -1;
@@ -369,6 +377,86 @@ public class InmemStore implements Store {
 		return null;
 	}
 
+	public error flush() {
+		return null;
+	}
+
+	/**
+	 * setMemoryBudget bounds the total serialized size of the cached Events,
+	 * Rounds, Blocks and Frames, on top of their entry counts. The caches are
+	 * recreated, so it is set before the store is filled.
+	 */
+	public error setMemoryBudget(long bytes) {
+		if (eventCache.size() > 0 || roundCache.size() > 0 || blockCache.size() > 0 || frameCache.size() > 0) {
+			return error.Errorf("memory budget must be set on an empty store");
+		}
+		this.memoryBudget = bytes;
+
+		RResult<LRUCache<String,Event>> eventCacheCre = newCache(eventWeigher);
+		if (eventCacheCre.err != null) {
+			return eventCacheCre.err;
+		}
+		RResult<LRUCache<Long,RoundInfo>> roundCacheCre = newCache(roundWeigher);
+		if (roundCacheCre.err != null) {
+			return roundCacheCre.err;
+		}
+		RResult<LRUCache<Long,Block>> blockCacheCre = newCache(blockWeigher);
+		if (blockCacheCre.err != null) {
+			return blockCacheCre.err;
+		}
+		RResult<LRUCache<Long,Frame>> frameCacheCre = newCache(frameWeigher);
+		if (frameCacheCre.err != null) {
+			return frameCacheCre.err;
+		}
+		this.eventCache = eventCacheCre.result;
+		this.roundCache = roundCacheCre.result;
+		this.blockCache = blockCacheCre.result;
+		this.frameCache = frameCacheCre.result;
+		return null;
+	}
+
+	// memoryFootprint is the serialized size of the cached Events, Rounds,
+	// Blocks and Frames, 0 without a memory budget
+	public long memoryFootprint() {
+		return eventCache.weight() + roundCache.weight() + blockCache.weight() + frameCache.weight();
+	}
+
+	public void cacheStats(Map<String,String> s) {
+		String[] names = new String[]{"event", "round", "block", "frame"};
+		LRUCache<?,?>[] caches = new LRUCache<?,?>[]{eventCache, roundCache, blockCache, frameCache};
+		for (int i = 0; i < caches.length; i++) {
+			s.put(names[i] + "_cache_hits",      "" + caches[i].hits());
+			s.put(names[i] + "_cache_misses",    "" + caches[i].misses());
+			s.put(names[i] + "_cache_evictions", "" + caches[i].evictions());
+			s.put(names[i] + "_cache_hit_rate",  String.format("%.2f", caches[i].hitRate()));
+		}
+	}
+
+	// every cache may use the whole budget, rebalance shares it
+	private <K,V> RResult<LRUCache<K,V>> newCache(LRUCache.Weigher<? super V> weigher) {
+		if (memoryBudget <= 0) {
+			return LRUCache.New(cacheSize);
+		}
+		return LRUCache.New(cacheSize, memoryBudget, weigher);
+	}
+
+	// rebalance trims the caches to 90% of the budget when together they weigh
+	// more than the budget. Every cache keeps the same fraction of its current
+	// weight, so the shares follow the weights the caches have reached.
+	private void rebalance() {
+		if (memoryBudget <= 0) {
+			return;
+		}
+		long total = memoryFootprint();
+		if (total <= memoryBudget) {
+			return;
+		}
+		double ratio = (double) (memoryBudget - memoryBudget / 10) / total;
+		for (LRUCache<?,?> cache : new LRUCache<?,?>[]{eventCache, roundCache, blockCache, frameCache}) {
+			cache.trim((long) (cache.weight() * ratio));
+		}
+	}
+
 	public boolean needBoostrap() {
 		return false;
 	}
@@ -0,0 +1,182 @@
+package poset;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import common.RResult;
+import common.error;
+
+/**
+ * MmapLog is an append-only log of records in memory-mapped segment files
+ * named prefix-00000.log, prefix-00001.log, ...
+ *
+ * A record is [int length][byte tag][payload], the length counting the tag and
+ * the payload. Records don't span segments: a new segment is started when a
+ * record doesn't fit in the current one. The offset of a record is its segment
+ * number in the high 32 bits and its position in the segment in the low ones.
+ * Segments are zero-filled when created, a zero length ends the records.
+ */
+class MmapLog {
+	static final int HEADER = 5;
+
+	interface Visitor {
+		error visit(long offset, byte tag, ByteBuffer payload);
+	}
+
+	File dir;
+	String prefix;
+	int segmentSize;
+	List<MappedByteBuffer> segments; //read through duplicates, appended under the lock
+	int position;                    //write position in the last segment
+
+	private MmapLog(File dir, String prefix, int segmentSize) {
+		this.dir = dir;
+		this.prefix = prefix;
+		this.segmentSize = segmentSize;
+		this.segments = new CopyOnWriteArrayList<MappedByteBuffer>();
+		this.position = 0;
+	}
+
+	/**
+	 * Opens the segments of the log in dir, or creates the first one. scan must
+	 * be called before appending to an existing log.
+	 */
+	static RResult<MmapLog> open(String dir, String prefix, int segmentSize) {
+		MmapLog log = new MmapLog(new File(dir), prefix, segmentSize);
+		try {
+			log.dir.mkdirs();
+			for (int n = 0; log.segmentFile(n).exists(); n++) {
+				log.map(log.segmentFile(n), 0);
+			}
+			if (log.segments.isEmpty()) {
+				log.map(log.segmentFile(0), segmentSize);
+			}
+		} catch (IOException e) {
+			log.close();
+			return new RResult<MmapLog>(null, error.Errorf("cannot open log " + prefix + ": " + e));
+		}
+		return new RResult<MmapLog>(log, null);
+	}
+
+	static boolean exists(String dir, String prefix) {
+		return new File(dir, String.format("%s-%05d.log", prefix, 0)).exists();
+	}
+
+	private File segmentFile(int n) {
+		return new File(dir, String.format("%s-%05d.log", prefix, n));
+	}
+
+	// map maps a segment file, growing it to size
+	private void map(File file, long size) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			FileChannel channel = raf.getChannel();
+			size = Math.max(size, channel.size());
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			segments.add(buffer);
+		}
+	}
+
+	/**
+	 * Calls visitor with every record, in order, and moves the write position
+	 * after the last one.
+	 */
+	synchronized error scan(Visitor visitor) {
+		for (int n = 0; n < segments.size(); n++) {
+			ByteBuffer segment = segments.get(n).duplicate();
+			int pos = 0;
+			while (pos + HEADER <= segment.limit()) {
+				int length = segment.getInt(pos);
+				if (length <= 0 || pos + 4 + length > segment.limit()) {
+					break;
+				}
+				byte tag = segment.get(pos + 4);
+				segment.limit(pos + 4 + length).position(pos + HEADER);
+				error err = visitor.visit(offset(n, pos), tag, segment.slice().asReadOnlyBuffer());
+				if (err != null) {
+					return err;
+				}
+				segment.clear();
+				pos += 4 + length;
+			}
+			position = pos;
+		}
+		return null;
+	}
+
+	/**
+	 * Appends a record
+	 * @return the offset of the record
+	 */
+	synchronized RResult<Long> append(byte tag, byte[] payload) {
+		int size = HEADER + payload.length;
+		MappedByteBuffer segment = segments.get(segments.size() - 1);
+		if (position + size > segment.capacity()) {
+			segment.force();
+			try {
+				map(segmentFile(segments.size()), Math.max(segmentSize, size));
+			} catch (IOException e) {
+				return new RResult<Long>(-1L, error.Errorf("cannot add segment to log " + prefix + ": " + e));
+			}
+			segment = segments.get(segments.size() - 1);
+			position = 0;
+		}
+
+		//write the length last so that a partial record ends the log
+		ByteBuffer b = segment.duplicate();
+		b.position(position + 4);
+		b.put(tag).put(payload);
+		b.putInt(position, 1 + payload.length);
+
+		long offset = offset(segments.size() - 1, position);
+		position += size;
+		return new RResult<Long>(offset, null);
+	}
+
+	/**
+	 * @return the payload of the record at offset, a read-only view of the
+	 * mapped segment
+	 */
+	ByteBuffer read(long offset) {
+		ByteBuffer segment = segments.get((int) (offset >>> 32)).duplicate();
+		int pos = (int) offset;
+		int length = segment.getInt(pos);
+		segment.limit(pos + 4 + length).position(pos + HEADER);
+		return segment.slice().asReadOnlyBuffer();
+	}
+
+	byte[] readBytes(long offset) {
+		ByteBuffer payload = read(offset);
+		byte[] bytes = new byte[payload.remaining()];
+		payload.get(bytes);
+		return bytes;
+	}
+
+	// force writes the appended records to disk. Full segments were forced
+	// when the next one was started.
+	synchronized void force() {
+		segments.get(segments.size() - 1).force();
+	}
+
+	synchronized void close() {
+		if (!segments.isEmpty()) {
+			force();
+		}
+		segments.clear();
+	}
+
+	private static long offset(int segment, int position) {
+		return ((long) segment << 32) | (position & 0xFFFFFFFFL);
+	}
+
+	@Override
+	public String toString() {
+		return "MmapLog [dir=" + dir + ", prefix=" + prefix + ", segments=" + segments.size()
+				+ ", position=" + position + ", segmentSize=" + segmentSize + "]";
+	}
+}
@@ -0,0 +1,711 @@
+package poset;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import autils.Logger;
+import common.IProto;
+import common.RResult;
+import common.RResult3;
+import common.StoreErr;
+import common.StoreErrType;
+import common.error;
+import peers.Peer;
+import peers.Peers;
+
+/**
+ * MmapStore is a persistent Store on append-only logs of memory-mapped
+ * segments (see MmapLog), as an alternative to the BadgerStore BTrees.
+ *
+ * Events are written once to the events log. Their round, Lamport timestamp
+ * and roundReceived, which change after insertion, are appended to the tables
+ * log instead, along with the Rounds, Blocks, Frames, Roots, participants and
+ * Checkpoints. The offsets of the records are indexed in memory:
+ * - topological index => event offset, in a primitive array
+ * - participant ID, index => event offset, in a primitive array per participant
+ * - event hex => event offset
+ * - table, key => offset of the last record of the key
+ * The indexes are rebuilt by scanning the logs when the store is loaded.
+ *
+ * Like BadgerStore, an InmemStore caches the most recent items.
+ */
+public class MmapStore implements PersistentStore {
+	public static final int defaultSegmentSize = 64 << 20;
+
+	static final String eventsLog = "events";
+	static final String tablesLog = "tables";
+
+	static final byte eventTag       = 0x01; //events log
+	static final byte metaTag        = 0x02; //tables log, [event offset] => round, lamport, roundReceived
+	static final byte roundTag       = 0x03;
+	static final byte blockTag       = 0x04;
+	static final byte frameTag       = 0x05;
+	static final byte rootTag        = 0x06; //[participant ID] => Root
+	static final byte participantTag = 0x07; //[participant ID] => pub key
+	static final byte checkpointTag  = 0x08;
+
+	private static final Logger logger = Logger.getLogger(MmapStore.class);
+
+	peers.Peers participants;
+	InmemStore inmemStore;
+	String path;
+	boolean needBoostrap;
+
+	MmapLog events;
+	MmapLog tables;
+
+	OffsetIndex topo;                          //[topological index] => event offset
+	Map<Long,OffsetIndex> participantEvents;   //[participant ID][index] => event offset
+	Map<String,Long> hashes;                   //[event hex] => event offset
+	Map<Byte,Map<Long,Long>> tableIndex;       //[tag][key] => record offset
+
+	MmapStore(String path, MmapLog events, MmapLog tables, boolean needBoostrap) {
+		this.path = path;
+		this.events = events;
+		this.tables = tables;
+		this.needBoostrap = needBoostrap;
+		this.topo = new OffsetIndex();
+		this.participantEvents = new ConcurrentHashMap<Long,OffsetIndex>();
+		this.hashes = new ConcurrentHashMap<String,Long>();
+		this.tableIndex = new ConcurrentHashMap<Byte,Map<Long,Long>>();
+	}
+
+	/**
+	 * NewMmapStore creates a brand new Store in the directory path
+	 * @param participants
+	 * @param cacheSize
+	 * @param path
+	 * @param segmentSize size of the log segment files
+	 * @return
+	 */
+	public static RResult<MmapStore> NewMmapStore(peers.Peers participants, int cacheSize, String path, int segmentSize) {
+		if (MmapLog.exists(path, eventsLog)) {
+			return new RResult<MmapStore>(null, error.Errorf("store already exists in " + path));
+		}
+		RResult<MmapStore> open = open(path, segmentSize, false);
+		MmapStore store = open.result;
+		if (open.err != null) {
+			return open;
+		}
+		store.participants = participants;
+		store.inmemStore = new InmemStore(participants, cacheSize);
+
+		for (Peer peer : participants.getByPubKey().values()) {
+			error err = store.putTable(participantTag, peer.getID(), peer.getPubKeyHex().getBytes());
+			if (err != null) {
+				return new RResult<MmapStore>(null, err);
+			}
+		}
+		for (Map.Entry<String,Root> e : store.inmemStore.rootsByParticipant.entrySet()) {
+			error err = store.dbSetRoot(e.getKey(), e.getValue());
+			if (err != null) {
+				return new RResult<MmapStore>(null, err);
+			}
+		}
+		store.flush();
+		return new RResult<MmapStore>(store, null);
+	}
+
+	/**
+	 * LoadMmapStore creates a Store from the logs in the directory path
+	 * @param cacheSize
+	 * @param path
+	 * @param segmentSize
+	 * @return
+	 */
+	public static RResult<MmapStore> LoadMmapStore(int cacheSize, String path, int segmentSize) {
+		if (!MmapLog.exists(path, eventsLog)) {
+			return new RResult<MmapStore>(null, error.Errorf("no store in " + path));
+		}
+		RResult<MmapStore> open = open(path, segmentSize, true);
+		MmapStore store = open.result;
+		if (open.err != null) {
+			return open;
+		}
+
+		long start = System.nanoTime();
+		error err = store.tables.scan((offset, tag, payload) -> {
+			store.index(tag).put(payload.getLong(0), offset);
+			return null;
+		});
+		if (err != null) {
+			return new RResult<MmapStore>(null, err);
+		}
+
+		store.participants = new Peers();
+		for (Long id : store.index(participantTag).keySet()) {
+			ByteBuffer value = store.tableValue(participantTag, id);
+			byte[] pubKey = new byte[value.remaining()];
+			value.get(pubKey);
+			store.participants.addPeer(new Peer(new String(pubKey), ""));
+		}
+
+		err = store.events.scan((offset, tag, payload) -> {
+			Event event = new Event();
+			error e = event.marshaller().protoUnmarshal(payload);
+			if (e != null) {
+				return e;
+			}
+			store.indexEvent(event, offset);
+			return null;
+		});
+		if (err != null) {
+			return new RResult<MmapStore>(null, err);
+		}
+
+		//read roots and put them in InmemStore
+		InmemStore inmemStore = new InmemStore(store.participants, cacheSize);
+		Map<String, Root> roots = new HashMap<String,Root>();
+		for (String p : store.participants.getByPubKey().keySet()) {
+			RResult<Root> dbGetRoot = store.dbGetRoot(p);
+			if (dbGetRoot.err != null) {
+				return new RResult<MmapStore>(null, dbGetRoot.err);
+			}
+			roots.put(p, dbGetRoot.result);
+		}
+		err = inmemStore.reset(roots);
+		if (err != null) {
+			return new RResult<MmapStore>(null, err);
+		}
+		store.inmemStore = inmemStore;
+
+		logger.field("events", store.hashes.size())
+			.field("duration", (System.nanoTime() - start) / 1000000)
+			.debug("LoadMmapStore()");
+		return new RResult<MmapStore>(store, null);
+	}
+
+	public static RResult<MmapStore> LoadOrCreateMmapStore(peers.Peers participants, int cacheSize, String path) {
+		RResult<MmapStore> load = LoadMmapStore(cacheSize, path, defaultSegmentSize);
+		if (load.err == null) {
+			return load;
+		}
+		logger.field("path", path).field("error", load.err).debug("Could not load store - creating new");
+		return NewMmapStore(participants, cacheSize, path, defaultSegmentSize);
+	}
+
+	private static RResult<MmapStore> open(String path, int segmentSize, boolean needBoostrap) {
+		RResult<MmapLog> events = MmapLog.open(path, eventsLog, segmentSize);
+		if (events.err != null) {
+			return new RResult<MmapStore>(null, events.err);
+		}
+		RResult<MmapLog> tables = MmapLog.open(path, tablesLog, segmentSize);
+		if (tables.err != null) {
+			events.result.close();
+			return new RResult<MmapStore>(null, tables.err);
+		}
+		return new RResult<MmapStore>(new MmapStore(path, events.result, tables.result, needBoostrap), null);
+	}
+
+	//==============================================================================
+	//Indexes
+
+	/**
+	 * OffsetIndex maps dense long indexes to record offsets
+	 */
+	static class OffsetIndex {
+		static final long NONE = -1;
+
+		long[] offsets = new long[1024];
+		int size;
+
+		synchronized void put(long index, long offset) {
+			int i = (int) index;
+			if (i >= offsets.length) {
+				int from = offsets.length;
+				offsets = Arrays.copyOf(offsets, Math.max(i + 1, offsets.length * 2));
+				Arrays.fill(offsets, from, offsets.length, NONE);
+			}
+			if (i >= size) {
+				Arrays.fill(offsets, size, i, NONE);
+				size = i + 1;
+			}
+			offsets[i] = offset;
+		}
+
+		synchronized long get(long index) {
+			if (index < 0 || index >= size) {
+				return NONE;
+			}
+			return offsets[(int) index];
+		}
+
+		synchronized int size() {
+			return size;
+		}
+	}
+
+	private void indexEvent(Event event, long offset) {
+		hashes.put(event.hex(), offset);
+		topo.put(event.message.TopologicalIndex, offset);
+		participantEvents.computeIfAbsent(participantID(event.creator()), id -> new OffsetIndex())
+			.put(event.index(), offset);
+	}
+
+	private long participantID(String participant) {
+		Peer peer = participants == null ? null : participants.getByPubKey().get(participant);
+		if (peer == null) {
+			peer = new Peer(participant, "");
+		}
+		return peer.getID();
+	}
+
+	private Map<Long,Long> index(byte tag) {
+		return tableIndex.computeIfAbsent(tag, t -> new ConcurrentHashMap<Long,Long>());
+	}
+
+	// putTable appends [key][value] to the tables log
+	private error putTable(byte tag, long key, byte[] value) {
+		byte[] payload = ByteBuffer.allocate(8 + value.length).putLong(key).put(value).array();
+		RResult<Long> append = tables.append(tag, payload);
+		if (append.err != null) {
+			return append.err;
+		}
+		index(tag).put(key, append.result);
+		return null;
+	}
+
+	// tableValue is the value of the last record of key, null if none
+	private ByteBuffer tableValue(byte tag, long key) {
+		Long offset = index(tag).get(key);
+		if (offset == null) {
+			return null;
+		}
+		ByteBuffer payload = tables.read(offset);
+		payload.position(8);
+		return payload.slice();
+	}
+
+	private <T> error getTable(byte tag, long key, String name, IProto<T,?> marshaller) {
+		ByteBuffer value = tableValue(tag, key);
+		if (value == null) {
+			return StoreErr.newStoreErr(name, StoreErrType.KeyNotFound, String.valueOf(key));
+		}
+		return marshaller.protoUnmarshal(value);
+	}
+
+	//==============================================================================
+	//Implement the Store interface
+
+	public int cacheSize() {
+		return inmemStore.cacheSize();
+	}
+
+	public RResult<peers.Peers> participants() {
+		return new RResult<peers.Peers>(participants, null);
+	}
+
+	public RResult<Map<String,Root>> rootsBySelfParent() {
+		return inmemStore.rootsBySelfParent();
+	}
+
+	public RResult<Event> getEvent(String key) {
+		RResult<Event> getEvent = inmemStore.getEvent(key);
+		if (getEvent.err != null) {
+			getEvent = dbGetEvent(key);
+		}
+		return getEvent;
+	}
+
+	public error setEvent(Event event) {
+		error err = inmemStore.setEvent(event);
+		if (err != null) {
+			return err;
+		}
+		return dbSetEvent(event);
+	}
+
+	public RResult<String[]> participantEvents(String participant, long skip) {
+		RResult<String[]> participantEvents = inmemStore.participantEvents(participant, skip);
+		if (participantEvents.err != null) {
+			participantEvents = dbParticipantEvents(participant, skip);
+		}
+		return participantEvents;
+	}
+
+	public RResult<String> participantEvent(String participant, long index) {
+		RResult<String> participantEvent = inmemStore.participantEvent(participant, index);
+		if (participantEvent.err != null) {
+			participantEvent = dbParticipantEvent(participant, index);
+		}
+		return participantEvent;
+	}
+
+	public RResult3<String,Boolean> lastEventFrom(String participant) {
+		return inmemStore.lastEventFrom(participant);
+	}
+
+	public RResult3<String,Boolean> lastConsensusEventFrom(String participant) {
+		return inmemStore.lastConsensusEventFrom(participant);
+	}
+
+	public Map<Long,Long> knownEvents() {
+		Map<Long,Long> known = new HashMap<Long,Long>();
+		for (String p : participants.getByPubKey().keySet()) {
+			Peer pid = participants.getByPubKey().get(p);
+			long index = -1;
+			RResult3<String, Boolean> lastEventFrom = lastEventFrom(p);
+			if (lastEventFrom.err == null) {
+				if (lastEventFrom.result2) {
+					RResult<Root> getRoot = getRoot(p);
+					if (getRoot.err == null) {
+						index = getRoot.result.SelfParent.Index;
+					}
+				} else {
+					RResult<Event> getEvent = getEvent(lastEventFrom.result1);
+					if (getEvent.err == null) {
+						index = getEvent.result.index();
+					}
+				}
+			}
+			known.put(pid.getID(), index);
+		}
+		return known;
+	}
+
+	public String[] consensusEvents() {
+		return inmemStore.consensusEvents();
+	}
+
+	public long consensusEventsCount() {
+		return inmemStore.consensusEventsCount();
+	}
+
+	public error addConsensusEvent(Event event) {
+		return inmemStore.addConsensusEvent(event);
+	}
+
+	public RResult<RoundInfo> getRound(long r) {
+		RResult<RoundInfo> getRound = inmemStore.getRound(r);
+		if (getRound.err != null) {
+			RoundInfo round = new RoundInfo();
+			error err = getTable(roundTag, r, "Round", round.marshaller());
+			getRound = new RResult<RoundInfo>(err == null ? round : new RoundInfo(), err);
+		}
+		return getRound;
+	}
+
+	public error setRound(long r, RoundInfo round) {
+		error err = inmemStore.setRound(r, round);
+		if (err != null) {
+			return err;
+		}
+		RResult<byte[]> marshal = round.marshaller().protoMarshal();
+		if (marshal.err != null) {
+			return marshal.err;
+		}
+		return putTable(roundTag, r, marshal.result);
+	}
+
+	public long lastRound() {
+		return inmemStore.lastRound();
+	}
+
+	public String[] roundWitnesses(long r) {
+		RResult<RoundInfo> getRound = getRound(r);
+		if (getRound.err != null) {
+			return new String[] {};
+		}
+		return getRound.result.Witnesses();
+	}
+
+	public int roundEvents(long r) {
+		RResult<RoundInfo> getRound = getRound(r);
+		if (getRound.err != null) {
+			return 0;
+		}
+		return getRound.result.Message.Events.size();
+	}
+
+	public RResult<Root> getRoot(String participant) {
+		RResult<Root> getRoot = inmemStore.getRoot(participant);
+		if (getRoot.err != null) {
+			getRoot = dbGetRoot(participant);
+		}
+		return getRoot;
+	}
+
+	public RResult<Block> getBlock(long index) {
+		RResult<Block> getBlock = inmemStore.getBlock(index);
+		if (getBlock.err != null) {
+			Block block = new Block();
+			error err = getTable(blockTag, index, "Block", block.marshaller());
+			getBlock = new RResult<Block>(err == null ? block : null, err);
+		}
+		return getBlock;
+	}
+
+	public error setBlock(Block block) {
+		error err = inmemStore.setBlock(block);
+		if (err != null) {
+			return err;
+		}
+		RResult<byte[]> marshal = block.marshaller().protoMarshal();
+		if (marshal.err != null) {
+			return marshal.err;
+		}
+		return putTable(blockTag, block.Index(), marshal.result);
+	}
+
+	public long lastBlockIndex() {
+		return inmemStore.lastBlockIndex();
+	}
+
+	public RResult<Frame> getFrame(long index) {
+		RResult<Frame> getFrame = inmemStore.getFrame(index);
+		if (getFrame.err != null) {
+			Frame frame = new Frame();
+			error err = getTable(frameTag, index, "Frame", frame.marshaller());
+			getFrame = new RResult<Frame>(err == null ? frame : new Frame(), err);
+		}
+		return getFrame;
+	}
+
+	public error setFrame(Frame frame) {
+		error err = inmemStore.setFrame(frame);
+		if (err != null) {
+			return err;
+		}
+		RResult<byte[]> marshal = frame.marshaller().protoMarshal();
+		if (marshal.err != null) {
+			return marshal.err;
+		}
+		return putTable(frameTag, frame.Round, marshal.result);
+	}
+
+	public error reset(Map<String,Root> roots) {
+		return inmemStore.reset(roots);
+	}
+
+	public error close() {
+		error err = inmemStore.close();
+		if (err != null) {
+			return err;
+		}
+		events.close();
+		tables.close();
+		return null;
+	}
+
+	public error flush() {
+		events.force();
+		tables.force();
+		return null;
+	}
+
+	public boolean needBoostrap() {
+		return needBoostrap;
+	}
+
+	public String storePath() {
+		return path;
+	}
+
+	public error setMemoryBudget(long bytes) {
+		return inmemStore.setMemoryBudget(bytes);
+	}
+
+	public long memoryFootprint() {
+		return inmemStore.memoryFootprint();
+	}
+
+	public void cacheStats(Map<String,String> s) {
+		inmemStore.cacheStats(s);
+	}
+
+	public RResult<Event[]> topologicalEvents() {
+		List<Event> res = new ArrayList<Event>();
+		TopologicalCursor cursor = dbTopologicalCursor(0);
+		while (cursor.hasNext()) {
+			RResult<Event> next = cursor.next();
+			if (next.err != null) {
+				return new RResult<Event[]>(res.toArray(new Event[res.size()]), next.err);
+			}
+			res.add(next.result);
+		}
+		return new RResult<Event[]>(res.toArray(new Event[res.size()]), null);
+	}
+
+	//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+	//DB Methods
+
+	public RResult<Event> dbGetEvent(String key) {
+		Long offset = hashes.get(key);
+		if (offset == null) {
+			return new RResult<Event>(null, StoreErr.newStoreErr("Event", StoreErrType.KeyNotFound, key));
+		}
+		return readEvent(offset);
+	}
+
+	// readEvent decodes the Event at offset, with its latest metadata
+	private RResult<Event> readEvent(long offset) {
+		Event event = new Event();
+		error err = event.marshaller().protoUnmarshal(events.read(offset));
+		if (err != null) {
+			return new RResult<Event>(null, err);
+		}
+		ByteBuffer meta = tableValue(metaTag, offset);
+		if (meta != null) {
+			event.setRound(meta.getLong(0));
+			event.setLamportTimestamp(meta.getLong(8));
+			event.setRoundReceived(meta.getLong(16));
+		}
+		return new RResult<Event>(event, null);
+	}
+
+	/**
+	 * dbSetEvent appends a new Event to the events log. An Event which is
+	 * already there only gets its metadata appended to the tables log, if it
+	 * changed.
+	 * @param event
+	 * @return
+	 */
+	public error dbSetEvent(Event event) {
+		Long offset = hashes.get(event.hex());
+		if (offset != null) {
+			ByteBuffer meta = meta(event);
+			ByteBuffer current = tableValue(metaTag, offset);
+			if (current == null) {
+				RResult<Event> readEvent = readEvent(offset);
+				current = readEvent.err == null ? meta(readEvent.result) : null;
+			}
+			if (meta.equals(current)) {
+				return null;
+			}
+			return putTable(metaTag, offset, meta.array());
+		}
+
+		RResult<byte[]> marshal = event.marshaller().protoMarshal();
+		if (marshal.err != null) {
+			return marshal.err;
+		}
+		RResult<Long> append = events.append(eventTag, marshal.result);
+		if (append.err != null) {
+			return append.err;
+		}
+		indexEvent(event, append.result);
+		return null;
+	}
+
+	// meta is the metadata of event stored in the tables log
+	private static ByteBuffer meta(Event event) {
+		return ByteBuffer.wrap(ByteBuffer.allocate(24)
+			.putLong(event.round)
+			.putLong(event.lamportTimestamp)
+			.putLong(event.roundReceived)
+			.array());
+	}
+
+	public RResult<String[]> dbParticipantEvents(String participant, long skip) {
+		List<String> res = new ArrayList<String>();
+		OffsetIndex index = participantEvents.get(participantID(participant));
+		if (index != null) {
+			for (long i = skip + 1; index.get(i) != OffsetIndex.NONE; i++) {
+				RResult<Event> readEvent = readEvent(index.get(i));
+				if (readEvent.err != null) {
+					return new RResult<String[]>(null, readEvent.err);
+				}
+				res.add(readEvent.result.hex());
+			}
+		}
+		return new RResult<String[]>(res.isEmpty() ? null : res.toArray(new String[res.size()]), null);
+	}
+
+	public RResult<String> dbParticipantEvent(String participant, long index) {
+		OffsetIndex offsets = participantEvents.get(participantID(participant));
+		long offset = offsets == null ? OffsetIndex.NONE : offsets.get(index);
+		if (offset == OffsetIndex.NONE) {
+			return new RResult<String>("", StoreErr.newStoreErr("ParticipantEvent", StoreErrType.KeyNotFound,
+				participant + " " + index));
+		}
+		RResult<Event> readEvent = readEvent(offset);
+		if (readEvent.err != null) {
+			return new RResult<String>("", readEvent.err);
+		}
+		return new RResult<String>(readEvent.result.hex(), null);
+	}
+
+	public RResult<Root> dbGetRoot(String participant) {
+		Root root = new Root();
+		error err = getTable(rootTag, participantID(participant), "Root", root.marshaller());
+		if (err != null) {
+			return new RResult<Root>(new Root(), err);
+		}
+		return new RResult<Root>(root, null);
+	}
+
+	public error dbSetRoot(String participant, Root root) {
+		RResult<byte[]> marshal = root.marshaller().protoMarshal();
+		if (marshal.err != null) {
+			return marshal.err;
+		}
+		return putTable(rootTag, participantID(participant), marshal.result);
+	}
+
+	public RResult<Checkpoint> dbGetCheckpoint() {
+		ByteBuffer value = tableValue(checkpointTag, 0);
+		if (value == null) {
+			return new RResult<Checkpoint>(null, StoreErr.newStoreErr("Checkpoint", StoreErrType.KeyNotFound, "0"));
+		}
+		byte[] data = new byte[value.remaining()];
+		value.get(data);
+		Checkpoint checkpoint = new Checkpoint();
+		error err = checkpoint.marshaller().protoUnmarshal(data);
+		if (err != null) {
+			return new RResult<Checkpoint>(null, err);
+		}
+		return new RResult<Checkpoint>(checkpoint, null);
+	}
+
+	// dbSetCheckpoint forces the logs, so that the Block and Frame of the
+	// checkpoint are on disk with it
+	public error dbSetCheckpoint(Checkpoint checkpoint) {
+		RResult<byte[]> marshal = checkpoint.marshaller().protoMarshal();
+		if (marshal.err != null) {
+			return marshal.err;
+		}
+		error err = putTable(checkpointTag, 0, marshal.result);
+		if (err != null) {
+			return err;
+		}
+		return flush();
+	}
+
+	// dbPrunedTopo is 0 as the logs are not pruned
+	public long dbPrunedTopo() {
+		return 0;
+	}
+
+	public TopologicalCursor dbTopologicalCursor(long from) {
+		return new TopologicalCursor() {
+			long next = from;
+
+			public long total() {
+				return topo.size();
+			}
+
+			public long position() {
+				return next;
+			}
+
+			public boolean hasNext() {
+				return next < topo.size() && topo.get(next) != OffsetIndex.NONE;
+			}
+
+			public RResult<Event> next() {
+				long offset = topo.get(next);
+				if (offset == OffsetIndex.NONE) {
+					return new RResult<Event>(null, StoreErr.newStoreErr("Event", StoreErrType.KeyNotFound,
+						"topo " + next));
+				}
+				next++;
+				return readEvent(offset);
+			}
+		};
+	}
+}
@@ -3,6 +3,7 @@ package poset;
 import java.util.Map;
 
 import common.RResult;
+import common.RollingIndex;
 import common.RollingIndexMap;
 import common.StoreErr;
 import common.StoreErrType;
@@ -11,11 +12,11 @@ import peers.Peer;
 
 public class ParticipantBlockSignaturesCache {
 	peers.Peers participants;
-	RollingIndexMap rim;
+	RollingIndexMap<BlockSignature> rim;
 
 	public ParticipantBlockSignaturesCache(int size, peers.Peers participants) {
 		this.participants =  participants;
-		this.rim = new RollingIndexMap("ParticipantBlockSignatures", size, participants.toIDSlice());
+		this.rim = new RollingIndexMap<BlockSignature>("ParticipantBlockSignatures", size, participants.toIDSlice());
 	}
 
 	public RResult<Long> participantID(String participant) {
@@ -37,18 +38,14 @@ public class ParticipantBlockSignaturesCache {
 			return new RResult<>( new BlockSignature[]{}, err);
 		}
 
-		RResult<Object[]> getId = rim.get(id, skipIndex);
-		Object[] ps = getId.result;
+		RResult<RollingIndex.Window<BlockSignature>> getId = rim.get(id, skipIndex);
+		RollingIndex.Window<BlockSignature> ps = getId.result;
 		err = getId.err;
 		if (err != null) {
 			return new RResult<>( new BlockSignature[]{}, err);
 		}
 
-		BlockSignature[] res = new BlockSignature[ps.length];
-		for (int k = 0; k < ps.length; ++k) {
-			res[k] = (BlockSignature) ps[k];
-		}
-		return new RResult<>(res, null);
+		return new RResult<>(ps.toArray(new BlockSignature[ps.size()]), null);
 	}
 
 	public RResult<BlockSignature> GetItem(String participant, long index) {
@@ -59,26 +56,26 @@ public class ParticipantBlockSignaturesCache {
 			return new RResult<>(new BlockSignature(), err);
 		}
 
-		RResult<Object> getItem = rim.getItem(id, index);
-		Object item = getItem.result;
+		RResult<BlockSignature> getItem = rim.getItem(id, index);
+		BlockSignature item = getItem.result;
 		err = getItem.err;
 		if (err != null) {
 			return new RResult<>(new BlockSignature(), err);
 		}
-		return new RResult<>( (BlockSignature)item, null);
+		return new RResult<>(item, null);
 	}
 
 	public RResult<BlockSignature> GetLast(String participant) {
 
-		RResult<Object> getLast = rim.getLast(participants.getByPubKey().get(participant).getID());
-		Object last = getLast.result;
+		RResult<BlockSignature> getLast = rim.getLast(participants.getByPubKey().get(participant).getID());
+		BlockSignature last = getLast.result;
 		error err = getLast.err;
 
 		if (err != null) {
 			return new RResult<>(new BlockSignature(), err);
 		}
 
-		return new RResult<>( (BlockSignature) last, null);
+		return new RResult<>(last, null);
 	}
 
 	public error Set(String participant , BlockSignature sig ) {
@@ -5,6 +5,7 @@ import java.util.Map;
 import autils.Logger;
 import common.StoreErrType;
 import common.RResult;
+import common.RollingIndex;
 import common.RollingIndexMap;
 import common.StoreErr;
 import common.error;
@@ -14,7 +15,7 @@ public class ParticipantEventsCache {
 
 	private static Logger logger = Logger.getLogger(ParticipantEventsCache.class);
 	peers.Peers participants;
-	RollingIndexMap rim;
+	RollingIndexMap<String> rim;
 
 	class Key {
 		String x;
@@ -27,7 +28,7 @@ public class ParticipantEventsCache {
 
 	public ParticipantEventsCache(int size, peers.Peers participants) {
 		this.participants = participants;
-		this.rim = new RollingIndexMap("ParticipantEvents", size, participants.toIDSlice());
+		this.rim = new RollingIndexMap<String>("ParticipantEvents", size, participants.toIDSlice());
 	}
 
 	public RResult<Long> participantID(String participant) {
@@ -51,18 +52,14 @@ public class ParticipantEventsCache {
 			return new RResult<String[]>(null, err);
 		}
 
-		RResult<Object[]> get = rim.get(id, skipIndex);
-		Object[] pe = get.result;
+		RResult<RollingIndex.Window<String>> get = rim.get(id, skipIndex);
+		RollingIndex.Window<String> pe = get.result;
 		err = get.err;
 		if (err != null) {
 			return new RResult<String[]>(null, err);
 		}
 
-		String[] res = new String[pe.length];
-		for (int k = 0; k < pe.length; k++) {
-			res[k] = pe[k].toString();
-		}
-		return new RResult<String[]>(res, null);
+		return new RResult<String[]>(pe.toArray(new String[pe.size()]), null);
 	}
 
 	public RResult<String> GetItem(String participant, long index) {
@@ -75,8 +72,8 @@ public class ParticipantEventsCache {
 			return new  RResult<String>("", err);
 		}
 
-		RResult<Object> getItem = rim.getItem(id, index);
-		Object item = getItem.result;
+		RResult<String> getItem = rim.getItem(id, index);
+		String item = getItem.result;
 		err = getItem.err;
 		logger.field("id", id)
 			.field("item", item)
@@ -85,7 +82,7 @@ public class ParticipantEventsCache {
 		if (err != null) {
 			return new  RResult<String>("", err);
 		}
-		return new  RResult<String>(item.toString(), null);
+		return new  RResult<String>(item, null);
 	}
 
 	public RResult<String> GetLast(String participant) {
@@ -96,13 +93,13 @@ public class ParticipantEventsCache {
 			return new RResult<String>("", err);
 		}
 
-		RResult<Object> getLast = rim.getLast(id);
-		Object last = getLast.result;
+		RResult<String> getLast = rim.getLast(id);
+		String last = getLast.result;
 		err = getLast.err;
 		if (err != null) {
 			return new RResult<String>("", err);
 		}
-		return new RResult<String>(last.toString(), null);
+		return new RResult<String>(last, null);
 	}
 
 	public RResult<String> GetLastConsensus(String participant) {
@@ -113,13 +110,13 @@ public class ParticipantEventsCache {
 			return new RResult<String>("", err);
 		}
 
-		RResult<Object> getLast = rim.getLast(id);
-		Object last = getLast.result;
+		RResult<String> getLast = rim.getLast(id);
+		String last = getLast.result;
 		err = getLast.err;
 		if (err != null) {
 			return new RResult<String>("", err);
 		}
-		return new RResult<String>(last.toString(), null);
+		return new RResult<String>(last, null);
 	}
 
 	public error Set(String participant, String hash, long index) {
@@ -0,0 +1,16 @@
+package poset;
+
+import common.RResult;
+import common.error;
+
+/**
+ * PersistentStore is a Store backed by a database, which a Poset can be
+ * bootstrapped from.
+ */
+public interface PersistentStore extends Store {
+	TopologicalCursor dbTopologicalCursor(long from);
+	RResult<Root> dbGetRoot(String participant); // Roots the database was created with
+	RResult<Checkpoint> dbGetCheckpoint();
+	error dbSetCheckpoint(Checkpoint checkpoint);
+	long dbPrunedTopo();                         // topological index of the first Event not pruned
+}
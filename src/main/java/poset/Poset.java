@@ -2,10 +2,17 @@ package poset;
 
 import java.security.PrivateKey;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -45,11 +52,24 @@ public class Poset {
 	int trustCount;
 	Core core;
 
-	LRUCache<String,Boolean> ancestorCache;
-	LRUCache<String,Boolean> selfAncestorCache;
-	LRUCache<String,Boolean> stronglySeeCache;
-	LRUCache<String,Long> roundCache;
-	LRUCache<String,Long> timestampCache;
+	EventIndex dag;                //dense int index of the DAG walked by the consensus methods
+
+	LRUCache<Long,Boolean> ancestorCache;   //[EventIndex.pairKey(x, y)] => ancestor(x, y)
+	LRUCache<Long,Boolean> stronglySeeCache; //[EventIndex.pairKey(x, y)] => stronglySee(x, y)
+
+	LRUCache<Long,long[]> receivedCache;     //[round] => EventIndex.minClock of its famous witnesses
+
+	HashMap<String,Map<String,Boolean>> votes; //[y][x] => vote(y,x), kept across DecideFame calls
+	long votesReused;              //number of votes found in votes by DecideFame
+	long votesComputed;            //number of votes computed by DecideFame
+	long sigsVerified;             //number of block signatures verified by ProcessSigPool
+	long sigsVerifyTime;           //nanoseconds spent verifying them
+	int bootstrapChunk = 1000;     //number of Events inserted by Bootstrap between consensus runs
+	boolean replaying;             //Events are replayed from the Store by Bootstrap
+	long checkpointInterval;       //number of Blocks between Checkpoints, 0 if disabled
+	long lastCheckpoint = -1;      //index of the Block of the last Checkpoint
+	long pruneRounds;              //number of Rounds kept behind the AnchorBlock, 0 if pruning is disabled
+	long indexRounds = 10;         //number of Rounds kept in the dag index behind the AnchorBlock
 
 	Logger logger;
 
@@ -71,54 +91,40 @@ public class Poset {
 		int trustCount = (int) Math.ceil(((double) participants.length()) / 3);
 
 		int cacheSize = store.cacheSize();
-		RResult<LRUCache<String,Boolean>> ancestorCacheCre = LRUCache.New(cacheSize);
-		LRUCache<String,Boolean> ancestorCache = ancestorCacheCre.result;
+		RResult<LRUCache<Long,Boolean>> ancestorCacheCre = LRUCache.New(cacheSize);
+		LRUCache<Long,Boolean> ancestorCache = ancestorCacheCre.result;
 		error err = ancestorCacheCre.err;
 		if ( err != null) {
 			logger.fatal("Unable to init Poset.ancestorCache");
 		}
 
-		RResult<LRUCache<String,Boolean>> selfAncestorCacheCre = LRUCache.New(cacheSize);
-		LRUCache<String,Boolean> selfAncestorCache = selfAncestorCacheCre.result;
-		err = selfAncestorCacheCre.err;
-		if ( err != null) {
-			logger.fatal("Unable to init Poset.selfAncestorCache");
-		}
-
-		RResult<LRUCache<String,Boolean>> stronglySeeCacheCre = LRUCache.New(cacheSize);
-		LRUCache<String,Boolean> stronglySeeCache = stronglySeeCacheCre.result;
+		RResult<LRUCache<Long,Boolean>> stronglySeeCacheCre = LRUCache.New(cacheSize);
+		LRUCache<Long,Boolean> stronglySeeCache = stronglySeeCacheCre.result;
 		err = stronglySeeCacheCre.err;
 		if ( err != null) {
 			logger.fatal("Unable to init Poset.stronglySeeCache");
 		}
 
-		RResult<LRUCache<String,Long>> roundCacheCre = LRUCache.New(cacheSize);
-		LRUCache<String,Long> roundCache = roundCacheCre.result;
-		err = roundCacheCre.err;
+		RResult<LRUCache<Long,long[]>> receivedCacheCre = LRUCache.New(cacheSize);
+		LRUCache<Long,long[]> receivedCache = receivedCacheCre.result;
+		err = receivedCacheCre.err;
 		if ( err != null) {
-			logger.fatal("Unable to init Poset.roundCache");
-		}
-
-		RResult<LRUCache<String,Long>> timestampCacheCre = LRUCache.New(cacheSize);
-		LRUCache<String,Long> timestampCache = timestampCacheCre.result;
-		err = timestampCacheCre.err;
-		if ( err != null) {
-			logger.fatal("Unable to init Poset.timestampCache");
+			logger.fatal("Unable to init Poset.receivedCache");
 		}
 
 		this.Participants=      participants;
 		this.Store=             store;
 		this.commitCh=          commitCh;
+		this.dag=               new EventIndex();
 		this.ancestorCache=     ancestorCache;
-		this.selfAncestorCache= selfAncestorCache;
 		this.stronglySeeCache=  stronglySeeCache;
-		this.roundCache=        roundCache;
-		this.timestampCache=   timestampCache;
+		this.receivedCache=     receivedCache;
 		this.logger=            logger;
 		this.superMajority=     superMajority;
 		this.trustCount=        trustCount;
 
 		this.UndeterminedEvents = new ArrayList<String>();
+		this.votes = new HashMap<String,Map<String,Boolean>>();
 
 		participants.onNewPeer(
 			new Listener() {
@@ -138,29 +144,177 @@ public class Poset {
 	/*******************************************************************************
 	Private Methods
 	*******************************************************************************/
-	private static String Key (String x, String y) {
-		return x + "*****************" + y;
+	// slot of an Event or RootEvent in the dag index. RootEvents are indexed on
+	// demand the first time they are looked up.
+	int slotOf(String hex) {
+		int slot = dag.slot(hex);
+		if (slot != EventIndex.NONE || hex == null || hex.isEmpty()) {
+			return slot;
+		}
+		Root root = Store.rootsBySelfParent().result.get(hex);
+		if (root == null) {
+			return EventIndex.NONE;
+		}
+		return indexRootEvent(root.SelfParent);
 	}
 
-	//true if y is an ancestor of x
-	public RResult<Boolean> ancestor(String x, String y) {
-		Boolean c = ancestorCache.get(Key (x, y));
-		if(c != null) {
-			return new RResult<Boolean>(c, null);
+	private int indexRootEvent(RootEvent rootEvent) {
+		Peer creator = Participants.byId(rootEvent.CreatorID);
+		if (creator == null) {
+			return EventIndex.NONE;
+		}
+		return dag.addRoot(rootEvent, creator.getPubKeyHex());
+	}
+
+	// indexEvent adds an inserted Event to the dag index. An other-parent that is
+	// only known through the creator's Root is indexed as a RootEvent first, and
+	// a parent evicted from the index is recorded as such.
+	private void indexEvent(Event event) {
+		String selfParent = event.selfParent();
+		if (selfParent != null && !selfParent.isEmpty() && slotOf(selfParent) == EventIndex.NONE) {
+			markEvicted(selfParent);
+		}
+
+		String op = event.otherParent();
+		if (op != null && !op.isEmpty() && slotOf(op) == EventIndex.NONE) {
+			RResult<Root> getRoot = Store.getRoot(event.creator());
+			if (getRoot.err == null) {
+				RootEvent other = getRoot.result.Others.get(event.hex());
+				if (other != null && other.Hash.equals(op)) {
+					indexRootEvent(other);
+				}
+			}
+			if (slotOf(op) == EventIndex.NONE) {
+				markEvicted(op);
+			}
 		}
 
+		int slot = dag.add(event);
+
+		//parents are indexed before their children, so the Lamport timestamp
+		//can be computed right away
+		int sp = dag.selfParent(slot);
+		int opSlot = dag.otherParent(slot);
+		if (dag.lamportTimestamp(slot) == EventIndex.UNKNOWN && sp != EventIndex.NONE &&
+			dag.lamportTimestamp(sp) != EventIndex.UNKNOWN) {
+			long plt = dag.lamportTimestamp(sp);
+			if (opSlot != EventIndex.NONE && dag.lamportTimestamp(opSlot) > plt) {
+				plt = dag.lamportTimestamp(opSlot);
+			}
+			dag.setLamportTimestamp(slot, plt + 1);
+		}
+	}
+
+	// markEvicted records a parent which is not indexed as evicted, if its Round
+	// is below the Round the dag index was evicted from
+	private void markEvicted(String hex) {
+		if (dag.evictedBelow() == EventIndex.UNKNOWN || dag.isEvicted(hex)) {
+			return;
+		}
+		RResult<Event> getEvent = Store.getEvent(hex);
+		if (getEvent.err != null) {
+			return;
+		}
+		Event parent = getEvent.result;
+		if (parent.round >= 0 && parent.round < dag.evictedBelow()) {
+			dag.addEvicted(hex, parent.creator(), parent.index());
+		}
+	}
+
+	//true if y is an ancestor of x
+	public RResult<Boolean> ancestor(String x, String y) {
 		if (x == null || x.isEmpty() || y == null || y.isEmpty()) {
 			return new RResult<Boolean>(false, null);
 		}
 
+		int xs = slotOf(x);
+		int ys = slotOf(y);
+		if (xs != EventIndex.NONE && ys != EventIndex.NONE) {
+			return ancestor(xs, ys);
+		}
+		return ancestor2(x, y);
+	}
+
+	//true if y is an ancestor of x, x and y being slots of the dag index
+	RResult<Boolean> ancestor(int x, int y) {
+		if (dag.hasClock(x)) {
+			return new RResult<Boolean>(dag.ancestor(x, y), null);
+		}
+
+		long key = EventIndex.pairKey(x, y);
+		Boolean c = ancestorCache.get(key);
+		if (c != null) {
+			return new RResult<Boolean>(c, null);
+		}
+
 		RResult<Boolean> ancestor2 = ancestor2(x, y);
-		Boolean a = ancestor2.result;
-		error err = ancestor2.err;
-		if (err != null) {
-			return new RResult<Boolean>(false, err);
+		if (ancestor2.err != null) {
+			return new RResult<Boolean>(false, ancestor2.err);
+		}
+		ancestorCache.put(key, ancestor2.result);
+		return ancestor2;
+	}
+
+	RResult<Boolean> ancestor2(int x, int y) {
+		int yCreator = dag.creator(y);
+		long yIndex = dag.index(y);
+		long yLamport = dag.lamportTimestamp(y);
+
+		Set<Integer> visited = new HashSet<Integer>();
+		int[] stack = new int[16];
+		int top = 0;
+		stack[top++] = x;
+
+		while (top > 0) {
+			int cur = stack[--top];
+			if (cur == y) {
+				return new RResult<Boolean>(true, null);
+			}
+			if (!visited.add(cur)) {
+				continue;
+			}
+
+			if (dag.hasClock(cur)) {
+				if (dag.ancestor(cur, y)) {
+					return new RResult<Boolean>(true, null);
+				}
+				continue;
+			}
+
+			//check if creators are equals and check indexes
+			if (dag.creator(cur) == yCreator) {
+				if (dag.index(cur) >= yIndex) {
+					return new RResult<Boolean>(true, null);
+				}
+				continue;
+			}
+
+			//an ancestor has a strictly lower Lamport timestamp
+			long lt = dag.lamportTimestamp(cur);
+			if (lt != EventIndex.UNKNOWN && yLamport != EventIndex.UNKNOWN && yLamport >= lt) {
+				continue;
+			}
+
+			if (top + 2 > stack.length) {
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			}
+			int[] parents = new int[] {dag.otherParent(cur), dag.selfParent(cur)};
+			String[] external = new String[] {dag.externalOtherParent(cur), dag.externalSelfParent(cur)};
+			for (int i = 0; i < parents.length; i++) {
+				if (parents[i] != EventIndex.NONE) {
+					stack[top++] = parents[i];
+				} else if (external[i] != null) {
+					RResult<Boolean> ancestorCall = ancestor2(external[i], dag.hex(y));
+					if (ancestorCall.err != null) {
+						return new RResult<Boolean>(false, ancestorCall.err);
+					}
+					if (ancestorCall.result) {
+						return new RResult<Boolean>(true, null);
+					}
+				}
+			}
 		}
-		ancestorCache.put(Key(x, y), a);
-		return new RResult<Boolean>(a, null);
+		return new RResult<Boolean>(false, null);
 	}
 
 	public RResult<Boolean> ancestor2(String x, String y) {
@@ -242,21 +396,17 @@ public class Poset {
 
 	//true if y is a self-ancestor of x
 	public RResult<Boolean> selfAncestor(String x, String y) {
-		Boolean c = selfAncestorCache.get(Key(x, y));
-		if (c != null) {
-			return new RResult<Boolean>(c, null);
-		}
 		if (x == null || x.length() == 0 || y == null || y.length() == 0) {
 			return new  RResult<Boolean>(false, null);
 		}
-		RResult<Boolean> selfAncestor2 = selfAncestor2(x, y);
-		boolean a = selfAncestor2.result;
-		error err = selfAncestor2.err;
-		if ( err != null) {
-			return new  RResult<Boolean>( false, err);
+
+		int xs = slotOf(x);
+		int ys = slotOf(y);
+		if (xs != EventIndex.NONE && ys != EventIndex.NONE) {
+			return new RResult<Boolean>(dag.creator(xs) == dag.creator(ys) &&
+				dag.index(xs) >= dag.index(ys), null);
 		}
-		selfAncestorCache.put(Key(x, y), a);
-		return new  RResult<Boolean>(a, null);
+		return selfAncestor2(x, y);
 	}
 
 	public RResult<Boolean> selfAncestor2(String x, String y) {
@@ -323,18 +473,32 @@ public class Poset {
 			return new RResult<Boolean>(false, null);
 		}
 
-		Boolean c = stronglySeeCache.get( Key(x, y));
+		int xs = slotOf(x);
+		int ys = slotOf(y);
+		if (xs != EventIndex.NONE && ys != EventIndex.NONE) {
+			return stronglySee(xs, ys);
+		}
+		return stronglySee2(x, y);
+	}
+
+	RResult<Boolean> stronglySee(int x, int y) {
+		long key = EventIndex.pairKey(x, y);
+		Boolean c = stronglySeeCache.get(key);
 		if (c != null) {
 			return new RResult<Boolean>(c, null);
 		}
 
-		RResult<Boolean> stronglySee2 = stronglySee2(x, y);
-		Boolean ss = stronglySee2.result;
-		error err = stronglySee2.err;
-		if (err != null) {
-			return new RResult<Boolean>(false, err);
+		BitSet sentinels = new BitSet();
+		if (!dag.sentinels(x, y, sentinels)) {
+			sentinels.clear();
+			error err = mapSentinels(x, y, sentinels);
+			if (err != null) {
+				return new RResult<Boolean>(false, err);
+			}
 		}
-		stronglySeeCache.put(Key(x, y), ss);
+
+		boolean ss = sentinels.cardinality() >= superMajority;
+		stronglySeeCache.put(key, ss);
 		return new RResult<Boolean>(ss, null);
 	}
 
@@ -351,6 +515,56 @@ public class Poset {
 		return new RResult<Boolean>(sentinels.size()>= superMajority, null);
 	}
 
+	// creators (as EventIndex creator slots) in x's ancestry that see y
+	error mapSentinels(int x, int y, BitSet sentinels) {
+		Set<Integer> visited = new HashSet<Integer>();
+		int[] stack = new int[16];
+		int top = 0;
+		stack[top++] = x;
+
+		while (top > 0) {
+			int cur = stack[--top];
+			if (!visited.add(cur)) {
+				continue;
+			}
+
+			RResult<Boolean> seeXY = ancestor(cur, y);
+			if (seeXY.err != null) {
+				return seeXY.err;
+			}
+			if (!seeXY.result) {
+				continue;
+			}
+
+			sentinels.set(dag.creator(cur));
+
+			if (cur == y) {
+				continue;
+			}
+
+			if (top + 2 > stack.length) {
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			}
+			int[] parents = new int[] {dag.selfParent(cur), dag.otherParent(cur)};
+			String[] external = new String[] {dag.externalSelfParent(cur), dag.externalOtherParent(cur)};
+			for (int i = 0; i < parents.length; i++) {
+				if (parents[i] != EventIndex.NONE) {
+					stack[top++] = parents[i];
+				} else if (external[i] != null) {
+					Map<String,Boolean> others = new HashMap<String,Boolean>();
+					error err = MapSentinels(external[i], dag.hex(y), others);
+					if (err != null) {
+						return err;
+					}
+					for (String creator : others.keySet()) {
+						sentinels.set(dag.creatorSlot(creator));
+					}
+				}
+			}
+		}
+		return null;
+	}
+
 	// participants in x's ancestry that see y
 	public error MapSentinels(String x, String y, Map<String,Boolean> sentinels) {
 		if (x == null || x.isEmpty()) {
@@ -401,9 +615,9 @@ public class Poset {
 	}
 
 	public RResult<Long> round(String x) {
-		Long c = roundCache.get(x);
-		if (c != null) {
-			return new RResult<Long>( (long) c, null);
+		int slot = slotOf(x);
+		if (slot != EventIndex.NONE && dag.round(slot) != EventIndex.UNKNOWN) {
+			return new RResult<Long>(dag.round(slot), null);
 		}
 		RResult<Long> round2 = round2(x);
 		Long r = round2.result;
@@ -411,7 +625,9 @@ public class Poset {
 		if (err != null) {
 			return new RResult<Long>( (long) -1, err);
 		}
-		roundCache.put(x, r);
+		if (slot != EventIndex.NONE) {
+			dag.setRound(slot, r);
+		}
 		return new RResult<Long>(r, null);
 	}
 
@@ -492,22 +708,20 @@ public class Poset {
 				String[] ws = Store.roundWitnesses(opRound);
 				RResult<Map<String, Long>> getFlagTable = ex.getFlagTable();
 				Map<String, Long> ft = getFlagTable.result;
-				for (String k : ft.keySet()) {
-					for (String w : ws) {
-						if (w.equals(k) && !w.equals(ex.hex())) {
-							RResult<Boolean> seeCall = see(ex.hex(), w);
-							Boolean see = seeCall.result;
-							err = seeCall.err;
-							if ( err != null) {
-								return new RResult<Long>(Long.MIN_VALUE, err);
-							}
+				for (String w : ws) {
+					if (ft.containsKey(w) && !w.equals(ex.hex())) {
+						RResult<Boolean> seeCall = see(ex.hex(), w);
+						Boolean see = seeCall.result;
+						err = seeCall.err;
+						if ( err != null) {
+							return new RResult<Long>(Long.MIN_VALUE, err);
+						}
 
-							if (see) {
-								if (!found) {
-									found = true;
-								}
-								seeOpRoundRoots++;
+						if (see) {
+							if (!found) {
+								found = true;
 							}
+							seeOpRoundRoots++;
 						}
 					}
 				}
@@ -643,9 +857,9 @@ public class Poset {
 	}
 
 	public RResult<Long> lamportTimestamp(String x) {
-		Long c = timestampCache.get(x);
-		if (c != null) {
-			return new RResult<Long>(c, null);
+		int slot = slotOf(x);
+		if (slot != EventIndex.NONE && dag.lamportTimestamp(slot) != EventIndex.UNKNOWN) {
+			return new RResult<Long>(dag.lamportTimestamp(slot), null);
 		}
 		RResult<Long> lamportTimestamp = lamportTimestamp2(x);
 		long r = lamportTimestamp.result;
@@ -653,7 +867,9 @@ public class Poset {
 		if (err != null) {
 			return new RResult<Long> ( (long) -1, err);
 		}
-		timestampCache.put(x, r);
+		if (slot != EventIndex.NONE) {
+			dag.setLamportTimestamp(slot, r);
+		}
 		return new RResult<Long> (r, null);
 	}
 
@@ -1030,10 +1246,10 @@ public class Poset {
 	//Remove processed Signatures from SigPool
 	public void removeProcessedSignatures(Map<Long,Boolean> processedSignatures) {
 		ArrayList<BlockSignature> newSigPool = new ArrayList<BlockSignature>();
-		for (BlockSignature bs : SigPool) {
-			boolean ok = processedSignatures.get(bs.index);
-			if (!ok) {
-				newSigPool.add(bs);
+		for (int i = 0; i < SigPool.size(); ++i) {
+			Boolean ok = processedSignatures.get((long) i);
+			if (ok == null || !ok) {
+				newSigPool.add(SigPool.get(i));
 			}
 		}
 		SigPool = newSigPool;
@@ -1046,7 +1262,15 @@ public class Poset {
 	//InsertEvent attempts to insert an Event in the DAG. It verifies the signature,
 	//checks the ancestors are known, and prevents the introduction of forks.
 	public error InsertEvent(Event event, boolean setWireInfo) {
-		//verify signature
+		error err = verifyEvent(event);
+		if (err != null) {
+			return err;
+		}
+		return InsertVerifiedEvent(event, setWireInfo);
+	}
+
+	//verifyEvent checks the signature of an Event
+	public error verifyEvent(Event event) {
 		RResult<Boolean> verify = event.verify();
 		Boolean ok = verify.result;
 		error err = verify.err;
@@ -1064,7 +1288,13 @@ public class Poset {
 
 			return error.Errorf("invalid Event signature");
 		}
-		err = checkSelfParent(event);
+		return null;
+	}
+
+	//InsertVerifiedEvent is InsertEvent for an Event whose signature has
+	//already been checked with verifyEvent
+	public error InsertVerifiedEvent(Event event, boolean setWireInfo) {
+		error err = checkSelfParent(event);
 		if  (err != null) {
 			return error.Errorf(String.format("CheckSelfParent: %s", err));
 		}
@@ -1073,8 +1303,13 @@ public class Poset {
 			return error.Errorf(String.format("CheckOtherParent: %s", err));
 		}
 
-		event.message.TopologicalIndex = topologicalIndex;
-		topologicalIndex++;
+		if (replaying) {
+			//keep the topological index the Event has in the Store
+			topologicalIndex = Math.max(topologicalIndex, event.message.TopologicalIndex + 1);
+		} else {
+			event.message.TopologicalIndex = topologicalIndex;
+			topologicalIndex++;
+		}
 
 		if (setWireInfo) {
 			err = setWireInfo(event);
@@ -1088,6 +1323,8 @@ public class Poset {
 			return error.Errorf(String.format("SetEvent: %s", err));
 		}
 
+		indexEvent(event);
+
 		logger.field("UndeterminedEvents", UndeterminedEvents).debug("adding hex");
 
 		if (UndeterminedEvents == null) {
@@ -1269,15 +1506,25 @@ public class Poset {
 		votes.get(x).put(y, vote);
 	};
 
+	// forgets the votes on a witness whose fame is decided
+	private void clearVotes(String x) {
+		Iterator<Map<String,Boolean>> it = votes.values().iterator();
+		while (it.hasNext()) {
+			Map<String,Boolean> v = it.next();
+			v.remove(x);
+			if (v.isEmpty()) {
+				it.remove();
+			}
+		}
+	}
 
 	//DecideFame decides if witnesses are famous
 	public error DecideFame() {
 
 		logger.field("poset", this).debug("DecideFame() starts");
 
-		//Initialize the vote map
-		HashMap<String,Map<String,Boolean>> votes = new HashMap<String, Map<String, Boolean>>(); //[x][y]=>vote(x,y)
-
+		//votes are kept from the previous calls: the vote of y on x only depends
+		//on y's ancestry, so it never changes once computed
 		Map<Long,Long> decidedRounds = new HashMap<Long,Long>(); // [round number] => index in PendingRounds
 
 		for (int pos = 0; pos < PendingRounds.size(); ++pos ) {
@@ -1321,6 +1568,13 @@ public class Poset {
 					for (String y : Store.roundWitnesses(j)) {
 						long diff = j - roundIndex;
 
+						Map<String,Boolean> yVotes = votes.get(y);
+						if (yVotes != null && yVotes.containsKey(x)) {
+							votesReused++;
+							continue;
+						}
+						votesComputed++;
+
 //						logger.WithFields(logrus.Fields{
 //							"Store.LastRound()": Store.LastRound(),
 //							"j" : j,
@@ -1406,7 +1660,7 @@ public class Poset {
 //									}).debug("DecideFame() in VOTE_LOOP XXXXX calling SetFame");
 
 									roundInfo.SetFame(x, v);
-									setVote(votes, y, x, v);
+									clearVotes(x);
 									break VOTE_LOOP; //break out of j loop
 								} else {
 
@@ -1502,6 +1756,7 @@ public class Poset {
 		for (String x :  UndeterminedEvents) {
 
 			boolean received = false;
+			int xs = slotOf(x);
 			RResult<Long> roundCall = round(x);
 			long r = roundCall.result;
 			error err = roundCall.err;
@@ -1532,17 +1787,28 @@ public class Poset {
 				}
 
 				String[] fws = tr.FamousWitnesses();
+				if (fws.length == 0) {
+					continue;
+				}
+
 				//set of famous witnesses that see x
 				List<String> s = new ArrayList<String>();
-				for (String w : fws) {
-					RResult<Boolean> seeCall = see(w, x);
-					boolean see = seeCall.result;
-					err = seeCall.err;
-					if ( err != null) {
-						return err;
+				long[] m = xs == EventIndex.NONE ? null : receivedClock(i, fws);
+				if (m != null) {
+					if (dag.seenBy(m, xs)) {
+						s.addAll(Arrays.asList(fws));
 					}
-					if (see) {
-						s.add(w);
+				} else {
+					for (String w : fws) {
+						RResult<Boolean> seeCall = see(w, x);
+						boolean see = seeCall.result;
+						err = seeCall.err;
+						if ( err != null) {
+							return err;
+						}
+						if (see) {
+							s.add(w);
+						}
 					}
 				}
 
@@ -1585,6 +1851,24 @@ public class Poset {
 		return null;
 	}
 
+	// minClock of the famous witnesses of a decided round, or null if they are
+	// not all clocked in the dag index
+	private long[] receivedClock(long round, String[] fws) {
+		long[] m = receivedCache.get(round);
+		if (m != null && m.length == dag.creators()) {
+			return m;
+		}
+		int[] slots = new int[fws.length];
+		for (int k = 0; k < fws.length; k++) {
+			slots[k] = slotOf(fws[k]);
+		}
+		m = dag.minClock(slots);
+		if (m != null) {
+			receivedCache.put(round, m);
+		}
+		return m;
+	}
+
 	//ProcessDecidedRounds takes Rounds whose witnesses are decided, computes the
 	//corresponding Frames, maps them into Blocks, and commits the Blocks via the
 	//commit channel
@@ -1693,6 +1977,9 @@ public class Poset {
 		}
 
 		PendingRounds = PendingRounds.subList(processedIndex, PendingRounds.size());
+		if (processedIndex > 0) {
+			return checkpoint();
+		}
 		return null;
 	}
 
@@ -1843,10 +2130,11 @@ public class Poset {
 	public error ProcessSigPool() {
 		Map<Long,Boolean> processedSignatures = new HashMap<Long,Boolean>(); //index in SigPool => Processed?
 
+		//group the signatures by block, in SigPool order
+		Map<Long,List<Integer>> blockSignatures = new LinkedHashMap<Long,List<Integer>>(); //[block index] => indexes in SigPool
 		for (int i = 0; i < SigPool.size(); ++i) {
 			BlockSignature bs = SigPool.get(i);
 			//check if validator belongs to list of participants
-//			String validatorHex = String.format("0x%X", bs.Validator);
 			String validatorHex = bs.validatorHex();
 
 			Peer ok = Participants.getByPubKey().get(validatorHex);
@@ -1858,60 +2146,103 @@ public class Poset {
 				continue;
 			}
 			//only check if bs is greater than AnchorBlock, otherwise simply remove
-			if (AnchorBlock < 0 ||
-				bs.index > AnchorBlock) {
-				RResult<Block> getBlock = Store.getBlock(bs.index);
-				Block block = getBlock.result;
-				error err = getBlock.err;
-				if (err != null) {
-					logger
-						.field("index", bs.index)
-						.field("msg",   err)
-						.warn("Verifying Block signature. Could not fetch Block");
-					continue;
-				}
-				RResult<Boolean> verify = block.verify(bs);
-				Boolean valid = verify.result;
-				err = verify.err;
-				if ( err != null) {
+			if (AnchorBlock >= 0 && bs.index <= AnchorBlock) {
+				processedSignatures.put((long) i, true);
+				continue;
+			}
+			blockSignatures.computeIfAbsent(bs.index, k -> new ArrayList<Integer>()).add(i);
+		}
+
+		long anchor = -1;
+		long verified = 0;
+		long start = System.nanoTime();
+		for (Map.Entry<Long,List<Integer>> group : blockSignatures.entrySet()) {
+			long index = group.getKey();
+			List<Integer> positions = group.getValue();
+
+			RResult<Block> getBlock = Store.getBlock(index);
+			Block block = getBlock.result;
+			error err = getBlock.err;
+			if (err != null) {
+				logger
+					.field("index", index)
+					.field("msg",   err)
+					.warn("Verifying Block signature. Could not fetch Block");
+				continue;
+			}
+
+			//the body is hashed once for all the signatures of the block
+			RResult<byte[]> hashCall = block.getBody().hash();
+			byte[] signBytes = hashCall.result;
+			err = hashCall.err;
+			if (err != null) {
+				logger
+					.field("index", index)
+					.field("msg",   err)
+					.error("Verifying Block signature");
+				return err;
+			}
+
+			List<RResult<Boolean>> results = positions.parallelStream()
+				.map(i -> Block.verify(SigPool.get(i), signBytes))
+				.collect(Collectors.toList());
+			verified += positions.size();
+
+			for (int k = 0; k < positions.size(); ++k) {
+				int i = positions.get(k);
+				BlockSignature bs = SigPool.get(i);
+				RResult<Boolean> verify = results.get(k);
+				if (verify.err != null) {
 					logger
-						.field("index", bs.index)
-						.field("msg",   err)
+						.field("index", index)
+						.field("msg",   verify.err)
 						.error("Verifying Block signature");
-					return err;
+					return verify.err;
 				}
-				if (!valid) {
+				if (!verify.result) {
 					logger
-						.field("index",     bs.index)
-						.field("validator", Participants.byPubKey(validatorHex))
+						.field("index",     index)
+						.field("validator", Participants.byPubKey(bs.validatorHex()))
 						.field("block",     block)
 						.warn("Verifying Block signature. Invalid signature");
 					continue;
 				}
 
 				block.setSignature(bs);
+				processedSignatures.put((long) i, true);
+			}
 
-				err = Store.setBlock(block);
-				if ( err != null) {
-					logger
-						.field("index", bs.index)
-						.field("msg",   err)
-						.warn("Saving Block");
-				}
+			err = Store.setBlock(block);
+			if ( err != null) {
+				logger
+					.field("index", index)
+					.field("msg",   err)
+					.warn("Saving Block");
+			}
 
-				if (block.getSignatures().size() > trustCount &&
-					(AnchorBlock < 0 ||
-						block.Index() > AnchorBlock)) {
-					setAnchorBlock(block.Index());
-					logger
-						.field("block_index", block.Index())
-						.field("signatures",  block.getSignatures().size())
-						.field("trustCount",  trustCount)
-						.debug("Setting AnchorBlock");
-				}
+			if (block.getSignatures().size() > trustCount && block.Index() > anchor) {
+				anchor = block.Index();
 			}
+		}
+
+		if (verified > 0) {
+			long elapsed = System.nanoTime() - start;
+			sigsVerified += verified;
+			sigsVerifyTime += elapsed;
+			logger
+				.field("signatures", verified)
+				.field("blocks",     blockSignatures.size())
+				.field("sigs/s",     String.format("%.2f", verified * 1e9 / Math.max(elapsed, 1)))
+				.debug("ProcessSigPool() verified");
+		}
 
-			processedSignatures.put((long) i, true);
+		if (anchor >= 0 && (AnchorBlock < 0 || anchor > AnchorBlock)) {
+			setAnchorBlock(anchor);
+			logger
+				.field("block_index", anchor)
+				.field("trustCount",  trustCount)
+				.debug("Setting AnchorBlock");
+			prune(anchor);
 		}
 
 		removeProcessedSignatures(processedSignatures);
@@ -1946,9 +2277,52 @@ public class Poset {
 
 	//Reset clears the Poset and resets it from a new base.
 	public error Reset(Block block, Frame frame) {
+		return reset(block, frame, false);
+	}
+
+	// reset with trusted set for a Block and Frame read from the local Store:
+	// the Frame Events are not verified again
+	private error reset(Block block, Frame frame, boolean trusted) {
 		logger.field("block", block).debug("Reset()");
 
-		//Clear all state
+		clear();
+
+		Peer[] participants = Participants.toPeerSlice();
+
+		//Initialize new Roots
+		HashMap<String, Root> rootMap = new HashMap<String,Root>();
+		for (int id = 0; id < frame.Roots.length; id++) {
+			Root root = frame.Roots[id];
+			Peer p = participants[id];
+			rootMap.put(p.getPubKeyHex(), root);
+		}
+		error err = Store.reset(rootMap);
+		if (err != null) {
+			return err;
+		}
+
+		//Insert Block
+		err = Store.setBlock(block);
+		if (err != null) {
+			return err;
+		}
+
+		setLastConsensusRound(block.roundReceived());
+
+		//Insert Frame Events
+		for (EventMessage ev : frame.Events) {
+			Event event = ev.ToEvent();
+			err = trusted ? InsertVerifiedEvent(event, false) : InsertEvent(event, false);
+			if (err != null){
+				return err;
+			}
+		}
+
+		return null;
+	}
+
+	//Clear all state
+	private void clear() {
 		LastConsensusRound = -1;
 		FirstConsensusRound = -1;
 		AnchorBlock = -1;
@@ -1959,125 +2333,331 @@ public class Poset {
 		topologicalIndex = 0;
 
 		int cacheSize = Store.cacheSize();
-		RResult<LRUCache<String,Boolean>> ancestorCacheCall = LRUCache.New(cacheSize);
-		LRUCache<String,Boolean> ancestorCache = ancestorCacheCall.result;
+		RResult<LRUCache<Long,Boolean>> ancestorCacheCall = LRUCache.New(cacheSize);
+		LRUCache<Long,Boolean> ancestorCache = ancestorCacheCall.result;
 		error err = ancestorCacheCall.err;
 		if ( err != null) {
 			logger.fatal("Unable to reset Poset.ancestorCache");
 		}
 
-		RResult<LRUCache<String,Boolean>> selfAncestorCacheCall = LRUCache.New(cacheSize);
-		LRUCache<String,Boolean> selfAncestorCache = selfAncestorCacheCall.result;
-		err = selfAncestorCacheCall.err;
-		if ( err != null) {
-			logger.fatal("Unable to reset Poset.selfAncestorCache");
-		}
-		RResult<LRUCache<String,Boolean>> stronglySeeCacheCall = LRUCache.New(cacheSize);
-		LRUCache<String,Boolean> stronglySeeCache = stronglySeeCacheCall.result;
+		RResult<LRUCache<Long,Boolean>> stronglySeeCacheCall = LRUCache.New(cacheSize);
+		LRUCache<Long,Boolean> stronglySeeCache = stronglySeeCacheCall.result;
 		err = stronglySeeCacheCall.err;
 		if ( err != null) {
 			logger.fatal("Unable to reset Poset.stronglySeeCache");
 		}
 
-		RResult<LRUCache<String,Long>> roundCacheCall = LRUCache.New(cacheSize);
-		LRUCache<String,Long> roundCache = roundCacheCall.result;
-		err = roundCacheCall.err;
-		if (err != null) {
-			logger.fatal("Unable to reset Poset.roundCache");
+		RResult<LRUCache<Long,long[]>> receivedCacheCall = LRUCache.New(cacheSize);
+		LRUCache<Long,long[]> receivedCache = receivedCacheCall.result;
+		err = receivedCacheCall.err;
+		if ( err != null) {
+			logger.fatal("Unable to reset Poset.receivedCache");
 		}
 
 		this.ancestorCache = ancestorCache;
-		this.selfAncestorCache = selfAncestorCache;
 		this.stronglySeeCache = stronglySeeCache;
-		this.roundCache = roundCache;
+		this.receivedCache = receivedCache;
+		this.dag.reset();
+		this.votes = new HashMap<String,Map<String,Boolean>>();
+	}
 
-		Peer[] participants = Participants.toPeerSlice();
+	//Bootstrap loads all Events from the Store's DB (if there is one) and feeds
+	//them to the Poset (in topological order) for consensus ordering. After this
+	//method call, the Poset should be in a state coherent with the 'tip' of the Poset
+	//
+	//If the DB has a Checkpoint, the Poset is Reset from its Block and only the
+	//Events which were not in consensus at that Block are replayed. Events from
+	//the DB were verified when first inserted, their signatures are not checked
+	//again. Once the DB is pruned, the Checkpoint is the only way back.
+	public error Bootstrap() {
+		if (Store instanceof PersistentStore) {
+			PersistentStore persistentStore = (PersistentStore) Store;
 
-		//Initialize new Roots
-		HashMap<String, Root> rootMap = new HashMap<String,Root>();
-		for (int id = 0; id < frame.Roots.length; id++) {
-			Root root = frame.Roots[id];
-			Peer p = participants[id];
-			rootMap.put(p.getPubKeyHex(), root);
+			RResult<Checkpoint> dbGetCheckpoint = persistentStore.dbGetCheckpoint();
+			Checkpoint checkpoint = dbGetCheckpoint.result;
+			error err = dbGetCheckpoint.err;
+			if (err == null) {
+				err = bootstrapFrom(persistentStore, checkpoint);
+				if (err == null) {
+					return null;
+				}
+				long pruned = persistentStore.dbPrunedTopo();
+				if (pruned > 0) {
+					return error.Errorf(String.format(
+						"cannot bootstrap from checkpoint at block %d: %s; the events before %d are pruned, they cannot be replayed",
+						checkpoint.BlockIndex, err, pruned));
+				}
+				logger.field("checkpoint", checkpoint).field("error", err)
+					.warn("Bootstrap from checkpoint failed, replaying all Events");
+
+				//back to the Roots the DB was created with
+				Map<String, Root> roots = new HashMap<String,Root>();
+				for (String p : Participants.getByPubKey().keySet()) {
+					RResult<Root> dbGetRoot = persistentStore.dbGetRoot(p);
+					if (dbGetRoot.err != null) {
+						return dbGetRoot.err;
+					}
+					roots.put(p, dbGetRoot.result);
+				}
+				clear();
+				SigPool = new ArrayList<BlockSignature>();
+				err = Store.reset(roots);
+				if (err != null) {
+					return err;
+				}
+			} else if (!StoreErr.Is(err, StoreErrType.KeyNotFound)) {
+				return err;
+			}
+
+			return replay(persistentStore.dbTopologicalCursor(0), null);
 		}
-		err = Store.reset(rootMap);
+
+		return null;
+	}
+
+	private error bootstrapFrom(PersistentStore store, Checkpoint checkpoint) {
+		RResult<Block> getBlock = Store.getBlock(checkpoint.BlockIndex);
+		Block block = getBlock.result;
+		error err = getBlock.err;
+		if (err != null) {
+			return err;
+		}
+		RResult<Frame> getFrame = Store.getFrame(block.roundReceived());
+		Frame frame = getFrame.result;
+		err = getFrame.err;
 		if (err != null) {
 			return err;
 		}
 
-		//Insert Block
-		err = Store.setBlock(block);
+		replaying = true;
+		try {
+			err = reset(block, frame, true);
+		} finally {
+			replaying = false;
+		}
 		if (err != null) {
 			return err;
 		}
+		lastCheckpoint = checkpoint.BlockIndex;
 
-		setLastConsensusRound(block.roundReceived());
+		logger.field("block", checkpoint.BlockIndex)
+			.field("from", checkpoint.ReplayFrom)
+			.field("undetermined", checkpoint.UndeterminedEvents.length)
+			.info("Bootstrap from checkpoint");
 
-		//Insert Frame Events
-		for (EventMessage ev : frame.Events) {
-			err = InsertEvent(ev.ToEvent(), false);
-			if (err != null){
-				return err;
+		//skip the Events which were already in consensus at the checkpoint
+		Set<String> undetermined = new HashSet<String>(Arrays.asList(checkpoint.UndeterminedEvents));
+		return replay(store.dbTopologicalCursor(checkpoint.ReplayFrom),
+			e -> e.message.TopologicalIndex >= checkpoint.TopologicalIndex || undetermined.contains(e.hex()));
+	}
+
+	// replay inserts the Events of the cursor accepted by filter (all if null),
+	// computing the consensus order every bootstrapChunk Events so that the
+	// undetermined Events don't pile up
+	private error replay(TopologicalCursor cursor, Predicate<Event> filter) {
+		long total = cursor.total();
+		long start = System.nanoTime();
+		long replayed = 0;
+		int chunk = 0;
+		error err;
+
+		replaying = true;
+		try {
+			while (cursor.hasNext()) {
+				RResult<Event> next = cursor.next();
+				err = next.err;
+				if (err != null) {
+					return err;
+				}
+				Event event = next.result;
+				if (filter != null && !filter.test(event)) {
+					continue;
+				}
+				err = InsertVerifiedEvent(event, true);
+				if (err != null) {
+					return err;
+				}
+				replayed++;
+
+				if (++chunk == bootstrapChunk) {
+					chunk = 0;
+					err = runConsensus();
+					if (err != null) {
+						return err;
+					}
+					logger.field("events", cursor.position())
+						.field("total", total)
+						.field("events/s", String.format("%.0f", replayed * 1e9 / (System.nanoTime() - start)))
+						.info("Bootstrap");
+				}
 			}
+		} finally {
+			replaying = false;
 		}
 
+		err = runConsensus();
+		if (err != null) {
+			return err;
+		}
+		logger.field("events", replayed)
+			.field("duration", (System.nanoTime() - start) / 1000000)
+			.info("Bootstrap done");
 		return null;
 	}
 
-	//Bootstrap loads all Events from the Store's DB (if there is one) and feeds
-	//them to the Poset (in topological order) for consensus ordering. After this
-	//method call, the Poset should be in a state coherent with the 'tip' of the Poset
-	public error Bootstrap() {
-		if (Store instanceof BadgerStore) {
-			BadgerStore badgerStore = (BadgerStore) Store;
+	// SetBootstrapChunk sets the number of Events inserted by Bootstrap between
+	// two computations of the consensus
+	public void SetBootstrapChunk(int chunk) {
+		this.bootstrapChunk = Math.max(1, chunk);
+	}
 
-			//Retrieve the Events from the underlying DB. They come out in topological order
-			RResult<Event[]> dbTopologicalEventsCall = badgerStore.dbTopologicalEvents();
-			Event[] topologicalEvents = dbTopologicalEventsCall.result;
-			error err = dbTopologicalEventsCall.err;
-			if (err != null) {
-				return err;
-			}
+	// SetCheckpointInterval sets the number of Blocks between two Checkpoints,
+	// 0 disables them
+	public void SetCheckpointInterval(long blocks) {
+		this.checkpointInterval = blocks;
+	}
 
-			//Insert the Events in the Poset
-			for (Event e : topologicalEvents) {
-				err = InsertEvent(e, true);
-				if ( err != null) {
-					return err;
-				}
-			}
+	// SetPruneRounds sets the number of Rounds kept behind the AnchorBlock
+	// when pruning the Store, 0 disables pruning
+	public void SetPruneRounds(long rounds) {
+		this.pruneRounds = rounds;
+	}
 
-			//Compute the consensus order of Events
-			err = DivideRounds();
-			if  (err != null) {
-				return err;
-			}
-			err = DecideFame();
-			if ( err != null) {
-				return err;
-			}
+	// SetIndexRounds sets the number of Rounds of Events kept in the dag index
+	// behind the AnchorBlock
+	public void SetIndexRounds(long rounds) {
+		this.indexRounds = Math.max(1, rounds);
+	}
 
-			err = DecideRoundReceived();
-			if (err != null) {
-				return err;
-			}
+	// prune evicts from the dag index the Events more than indexRounds Rounds
+	// before the anchor Block, and asks the Store to prune, in the background,
+	// the data received more than pruneRounds Rounds before it
+	private void prune(long anchor) {
+		RResult<Block> getBlock = Store.getBlock(anchor);
+		if (getBlock.err != null) {
+			logger.field("block_index", anchor).field("error", getBlock.err).warn("prune()");
+			return;
+		}
+		long roundReceived = getBlock.result.roundReceived();
+		evictIndex(roundReceived - Math.max(indexRounds, pruneRounds));
 
-			err = ProcessDecidedRounds();
-			if (err != null) {
-				return err;
+		if (pruneRounds <= 0 || !(Store instanceof BadgerStore)) {
+			return;
+		}
+		long round = roundReceived - pruneRounds;
+		if (round > 0) {
+			((BadgerStore) Store).pruneAsync(round);
+		}
+	}
+
+	// evictIndex evicts the Events of the Rounds before round from the dag
+	// index. The caches keyed by slot are cleared as the slots are renumbered.
+	void evictIndex(long round) {
+		if (round <= 0) {
+			return;
+		}
+		int evicted = dag.evictBelow(round);
+		if (evicted > 0) {
+			ancestorCache.clear();
+			stronglySeeCache.clear();
+			logger.field("round", round).field("evicted", evicted).field("size", dag.size()).debug("evictIndex()");
+		}
+	}
+
+	//Compute the consensus order of Events
+	private error runConsensus() {
+		error err = DivideRounds();
+		if  (err != null) {
+			return err;
+		}
+		err = DecideFame();
+		if ( err != null) {
+			return err;
+		}
+
+		err = DecideRoundReceived();
+		if (err != null) {
+			return err;
+		}
+
+		err = ProcessDecidedRounds();
+		if (err != null) {
+			return err;
+		}
+		return ProcessSigPool();
+	}
+
+	// checkpoint stores a Checkpoint at the last Block if checkpointInterval
+	// Blocks were created since the previous one
+	private error checkpoint() {
+		if (checkpointInterval <= 0 || replaying || !(Store instanceof PersistentStore)) {
+			return null;
+		}
+		long blockIndex = Store.lastBlockIndex();
+		if (blockIndex < 0 || blockIndex - lastCheckpoint < checkpointInterval) {
+			return null;
+		}
+		RResult<Block> getBlock = Store.getBlock(blockIndex);
+		Block block = getBlock.result;
+		error err = getBlock.err;
+		if (err != null) {
+			return err;
+		}
+
+		//the Events received after the Block are replayed as well
+		List<String> undetermined = new ArrayList<String>(UndeterminedEvents);
+		for (long r = block.roundReceived() + 1; r <= Store.lastRound(); r++) {
+			RResult<RoundInfo> getRound = Store.getRound(r);
+			if (getRound.err != null) {
+				continue;
 			}
-			err = ProcessSigPool();
+			undetermined.addAll(Arrays.asList(getRound.result.ConsensusEvents()));
+		}
+
+		long replayFrom = topologicalIndex;
+		for (String h : undetermined) {
+			RResult<Event> getEvent = Store.getEvent(h);
+			err = getEvent.err;
 			if (err != null) {
 				return err;
 			}
+			replayFrom = Math.min(replayFrom, getEvent.result.message.TopologicalIndex);
 		}
 
+		Checkpoint checkpoint = new Checkpoint(blockIndex, topologicalIndex, replayFrom,
+			undetermined.toArray(new String[undetermined.size()]));
+		err = ((PersistentStore) Store).dbSetCheckpoint(checkpoint);
+		if (err != null) {
+			return err;
+		}
+		lastCheckpoint = blockIndex;
+		logger.field("block", blockIndex)
+			.field("undetermined", undetermined.size())
+			.debug("Checkpoint");
 		return null;
 	}
 
 	//ReadWireInfo converts a WireEvent to an Event by replacing int IDs with the
 	//corresponding public keys.
 	public RResult<Event> ReadWireInfo(WireEvent wevent) {
+		return ReadWireInfo(wevent, null);
+	}
+
+	// participantEvent looks up the events read from the same batch but not
+	// inserted yet before the Store
+	private RResult<String> participantEvent(String pubKey, long index, Map<String,Map<Long,String>> pending) {
+		if (pending != null) {
+			Map<Long,String> events = pending.get(pubKey);
+			if (events != null && events.containsKey(index)) {
+				return new RResult<String>(events.get(index), null);
+			}
+		}
+		return Store.participantEvent(pubKey, index);
+	}
+
+	//ReadWireInfo with pending the events of the same batch which are read but
+	//not inserted yet: [creator pub key][index] => hex
+	public RResult<Event> ReadWireInfo(WireEvent wevent, Map<String,Map<Long,String>> pending) {
 		String selfParent = Event.rootSelfParent(wevent.Body.CreatorID);
 		String otherParent = "";
 		error err;
@@ -2097,7 +2677,7 @@ public class Poset {
 		}
 
 		if (wevent.Body.SelfParentIndex >= 0) {
-			RResult<String> ParticipantEventCall = Store.participantEvent(creator.getPubKeyHex(), wevent.Body.SelfParentIndex);
+			RResult<String> ParticipantEventCall = participantEvent(creator.getPubKeyHex(), wevent.Body.SelfParentIndex, pending);
 			selfParent = ParticipantEventCall.result;
 			err = ParticipantEventCall.err;
 			if ( err != null) {
@@ -2107,7 +2687,7 @@ public class Poset {
 		if (wevent.Body.OtherParentIndex >= 0) {
 			Peer otherParentCreator = Participants.byId(wevent.Body.OtherParentCreatorID);
 			if (otherParentCreator != null) {
-				RResult<String> participantEventCall = Store.participantEvent(otherParentCreator.getPubKeyHex(), wevent.Body.OtherParentIndex);
+				RResult<String> participantEventCall = participantEvent(otherParentCreator.getPubKeyHex(), wevent.Body.OtherParentIndex, pending);
 				otherParent = participantEventCall.result;
 				err = participantEventCall.err;
 
@@ -2277,6 +2857,22 @@ public class Poset {
 		return ConsensusTransactions;
 	}
 
+	public long getVotesReused() {
+		return votesReused;
+	}
+
+	public long getVotesComputed() {
+		return votesComputed;
+	}
+
+	//block signatures verified per second by ProcessSigPool
+	public double getSigVerifyRate() {
+		if (sigsVerifyTime == 0) {
+			return 0;
+		}
+		return sigsVerified * 1e9 / sigsVerifyTime;
+	}
+
 	/*******************************************************************************
 	   Helpers
 	*******************************************************************************/
@@ -2317,9 +2913,8 @@ public class Poset {
 				.append(", PendingLoadedEvents=").append(PendingLoadedEvents).append(", commitCh=").append(commitCh)
 				.append(", topologicalIndex=").append(topologicalIndex).append(", superMajority=").append(superMajority)
 				.append(", trustCount=").append(trustCount).append(", core=").append(core.hashCode()).append(", ancestorCache=")
-				.append(ancestorCache).append(", selfAncestorCache=").append(selfAncestorCache)
-				.append(", stronglySeeCache=").append(stronglySeeCache).append(", roundCache=").append(roundCache)
-				.append(", timestampCache=").append(timestampCache).append(", logger=").append(logger).append("]");
+				.append(ancestorCache).append(", stronglySeeCache=").append(stronglySeeCache)
+				.append(", dag.size=").append(dag.size()).append(", logger=").append(logger).append("]");
 		return builder.toString();
 	}
 }
\ No newline at end of file
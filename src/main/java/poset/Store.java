@@ -36,6 +36,10 @@ public interface Store {
 	error setFrame(Frame f);
 	error reset(Map<String,Root> map);
 	error close();
+	error flush(); // commits the writes buffered by the store, if any
+	error setMemoryBudget(long bytes); // bounds the size of the cached data, 0 to bound entry counts only
+	long memoryFootprint(); // size of the cached data, 0 without a memory budget
+	void cacheStats(Map<String,String> s); // puts the hits, misses and evictions of the caches
 	boolean needBoostrap(); // Was the store loaded from existing db
 	String storePath();
 	RResult<Event[]> topologicalEvents();
@@ -0,0 +1,15 @@
+package poset;
+
+import common.RResult;
+
+/**
+ * TopologicalCursor reads the Events of a PersistentStore in topological
+ * order, one at a time, so that they don't have to be held in memory together.
+ * The Events end at the first missing topological index.
+ */
+public interface TopologicalCursor {
+	long total();            // topological index after the last Event
+	long position();         // topological index of the next Event
+	boolean hasNext();       // false at the end or at a missing topological index
+	RResult<Event> next();   // KeyNotFound if there is no next Event
+}
@@ -1,5 +1,9 @@
 package poset;
 
+import com.google.protobuf.Parser;
+
+import common.IProto;
+
 public class WireBlockSignature {
 	long Index;
 	String Signature;
@@ -26,6 +30,31 @@ public class WireBlockSignature {
 		return new WireBlockSignature (Index, Signature);
 	}
 
+	public IProto<WireBlockSignature, poset.proto.WireBlockSignature> marshaller() {
+		return new IProto<WireBlockSignature, poset.proto.WireBlockSignature>() {
+			@Override
+			public poset.proto.WireBlockSignature toProto() {
+				poset.proto.WireBlockSignature.Builder builder = poset.proto.WireBlockSignature.newBuilder();
+				builder.setIndex(Index);
+				if (Signature != null) {
+					builder.setSignature(Signature);
+				}
+				return builder.build();
+			}
+
+			@Override
+			public void fromProto(poset.proto.WireBlockSignature proto) {
+				Index = proto.getIndex();
+				Signature = proto.getSignature();
+			}
+
+			@Override
+			public Parser<poset.proto.WireBlockSignature> parser() {
+				return poset.proto.WireBlockSignature.parser();
+			}
+		};
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
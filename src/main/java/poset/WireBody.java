@@ -2,6 +2,11 @@ package poset;
 
 import java.util.Arrays;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Parser;
+
+import common.IProto;
+
 public class WireBody {
 	byte[][] Transactions;
 	InternalTransaction[] InternalTransactions;
@@ -103,6 +108,65 @@ public class WireBody {
 		Index = index;
 	}
 
+	public IProto<WireBody, poset.proto.WireBody> marshaller() {
+		return new IProto<WireBody, poset.proto.WireBody>() {
+			@Override
+			public poset.proto.WireBody toProto() {
+				poset.proto.WireBody.Builder builder = poset.proto.WireBody.newBuilder();
+
+				if (Transactions != null) {
+					for (byte[] transaction : Transactions) {
+						builder.addTransactions(ByteString.copyFrom(transaction));
+					}
+				}
+				if (InternalTransactions != null) {
+					for (InternalTransaction internalTransaction : InternalTransactions) {
+						builder.addInternalTransactions(internalTransaction.marshaller().toProto());
+					}
+				}
+				if (BlockSignatures != null) {
+					for (WireBlockSignature blockSignature : BlockSignatures) {
+						builder.addBlockSignatures(blockSignature.marshaller().toProto());
+					}
+				}
+				builder.setSelfParentIndex(SelfParentIndex)
+					.setOtherParentCreatorID(OtherParentCreatorID)
+					.setOtherParentIndex(OtherParentIndex)
+					.setCreatorID(CreatorID)
+					.setIndex(Index);
+				return builder.build();
+			}
+
+			@Override
+			public void fromProto(poset.proto.WireBody proto) {
+				Transactions = toArray(proto.getTransactionsList());
+
+				InternalTransactions = new InternalTransaction[proto.getInternalTransactionsCount()];
+				for (int i = 0; i < InternalTransactions.length; ++i) {
+					InternalTransactions[i] = new InternalTransaction();
+					InternalTransactions[i].marshaller().fromProto(proto.getInternalTransactions(i));
+				}
+
+				BlockSignatures = new WireBlockSignature[proto.getBlockSignaturesCount()];
+				for (int i = 0; i < BlockSignatures.length; ++i) {
+					BlockSignatures[i] = new WireBlockSignature(0, "");
+					BlockSignatures[i].marshaller().fromProto(proto.getBlockSignatures(i));
+				}
+
+				SelfParentIndex = proto.getSelfParentIndex();
+				OtherParentCreatorID = proto.getOtherParentCreatorID();
+				OtherParentIndex = proto.getOtherParentIndex();
+				CreatorID = proto.getCreatorID();
+				Index = proto.getIndex();
+			}
+
+			@Override
+			public Parser<poset.proto.WireBody> parser() {
+				return poset.proto.WireBody.parser();
+			}
+		};
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -2,6 +2,11 @@ package poset;
 
 import java.util.Arrays;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Parser;
+
+import common.IProto;
+
 public class WireEvent {
 	WireBody Body;
 	String Signature;
@@ -47,6 +52,59 @@ public class WireEvent {
 		return Body;
 	}
 
+	public String getSignature() {
+		return Signature;
+	}
+
+	public byte[] getFlagTable() {
+		return FlagTable;
+	}
+
+	public String[] getWitnessProof() {
+		return WitnessProof;
+	}
+
+	public IProto<WireEvent, poset.proto.WireEvent> marshaller() {
+		return new IProto<WireEvent, poset.proto.WireEvent>() {
+			@Override
+			public poset.proto.WireEvent toProto() {
+				poset.proto.WireEvent.Builder builder = poset.proto.WireEvent.newBuilder();
+				if (Body != null) {
+					builder.setBody(Body.marshaller().toProto());
+				}
+				if (Signature != null) {
+					builder.setSignature(Signature);
+				}
+				if (FlagTable != null) {
+					builder.setFlagTable(ByteString.copyFrom(FlagTable));
+				}
+				if (WitnessProof != null) {
+					for (String proof : WitnessProof) {
+						builder.addWitnessProof(proof);
+					}
+				}
+				return builder.build();
+			}
+
+			@Override
+			public void fromProto(poset.proto.WireEvent proto) {
+				Body = null;
+				if (proto.hasBody()) {
+					Body = new WireBody();
+					Body.marshaller().fromProto(proto.getBody());
+				}
+				Signature = proto.getSignature();
+				FlagTable = proto.getFlagTable().toByteArray();
+				WitnessProof = proto.getWitnessProofList().toArray(new String[0]);
+			}
+
+			@Override
+			public Parser<poset.proto.WireEvent> parser() {
+				return poset.proto.WireEvent.parser();
+			}
+		};
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
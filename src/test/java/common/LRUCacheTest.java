@@ -0,0 +1,110 @@
+package common;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for LRUCache
+ *
+ * @author qn
+ *
+ */
+public class LRUCacheTest {
+	@Test
+	public void TestLRUCacheRecency() {
+		int size = 10;
+		RResult<LRUCache<Long,String>> newCache = LRUCache.New(size);
+		assertNull("No error", newCache.err);
+		LRUCache<Long,String> cache = newCache.result;
+
+		for (long i = 0; i < size; i++) {
+			cache.put(i, "item" + i);
+		}
+		assertEquals("Cache should hold size items", size, cache.size());
+
+		//reading 0 makes 1 the least recently used
+		assertEquals("item0", cache.get(0L));
+		cache.put((long) size, "item" + size);
+
+		assertNotNull("Recently used item should be kept", cache.get(0L));
+		assertNull("Least recently used item should be evicted", cache.get(1L));
+		assertEquals("Cache should hold size items", size, cache.size());
+
+		assertEquals("hits", 2, cache.hits());
+		assertEquals("misses", 1, cache.misses());
+		assertEquals("evictions", 1, cache.evictions());
+
+		assertTrue("Zero size should fail", LRUCache.New(0).err != null);
+	}
+
+	@Test
+	public void TestLRUCacheWeight() {
+		LRUCache<Long,byte[]> cache = LRUCache.<Long,byte[]>New(100, 1000, v -> v.length).result;
+
+		for (long i = 0; i < 10; i++) {
+			cache.put(i, new byte[100]);
+		}
+		assertEquals("weight", 1000, cache.weight());
+		assertEquals("evictions", 0, cache.evictions());
+
+		//a heavy value evicts as many light ones as it needs
+		cache.put(10L, new byte[450]);
+		assertEquals("weight", 950, cache.weight());
+		assertEquals("evictions", 5, cache.evictions());
+		assertNull("Oldest items should be evicted", cache.get(4L));
+		assertNotNull("Newer items should be kept", cache.get(5L));
+
+		//a value heavier than the cache is kept alone
+		cache.put(11L, new byte[2000]);
+		assertEquals("size", 1, cache.size());
+		assertEquals("weight", 2000, cache.weight());
+
+		cache.remove(11L);
+		assertEquals("weight", 0, cache.weight());
+	}
+
+	@Test
+	public void TestLRUCacheConcurrent() throws InterruptedException, ExecutionException {
+		int size = 1024;
+		int threads = 8;
+		int ops = 20000;
+		LRUCache<Long,Long> cache = LRUCache.<Long,Long>New(size).result;
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<?>> workers = new ArrayList<Future<?>>();
+		for (int t = 0; t < threads; t++) {
+			long seed = t;
+			workers.add(pool.submit(() -> {
+				for (long i = 0; i < ops; i++) {
+					long k = (i * 31 + seed) % (2 * size);
+					Long v = cache.get(k);
+					if (v == null) {
+						cache.put(k, k);
+					} else {
+						assertEquals("Value should match key", k, (long) v);
+					}
+				}
+			}));
+		}
+		pool.shutdown();
+		assertTrue("Workers should finish", pool.awaitTermination(30, TimeUnit.SECONDS));
+		//rethrows the assertion errors of the workers
+		for (Future<?> worker : workers) {
+			worker.get();
+		}
+
+		assertTrue("Cache should not exceed its size", cache.size() <= size);
+		assertEquals("Every get should be counted", threads * ops, cache.hits() + cache.misses());
+	}
+}
@@ -0,0 +1,111 @@
+package common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the ArrayList RollingIndex, kept here as ListRollingIndex, with the
+ * ring RollingIndex, for sets and for the reads Core.eventDiff makes through
+ * ParticipantEventsCache.Get: the String[] of the items after a skip index.
+ *
+ * Run with: java common.RollingIndexBenchmark [window size] [items]
+ */
+public class RollingIndexBenchmark {
+	static final int rounds = 5;
+
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int n = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+
+		String[] hashes = new String[4 * size];
+		for (int i = 0; i < hashes.length; i++) {
+			hashes[i] = String.format("0x%064X", i);
+		}
+
+		for (int r = 0; r < rounds; r++) {
+			runList(size, n, hashes, r == rounds - 1);
+			runRing(size, n, hashes, r == rounds - 1);
+		}
+	}
+
+	static void runList(int size, int n, String[] hashes, boolean print) {
+		ListRollingIndex index = new ListRollingIndex(size);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			index.set(hashes[i % hashes.length], i);
+		}
+		long set = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		long read = 0;
+		for (int i = 0; i < n / size; i++) {
+			//skip half of the cached items, then copy them the way Get did
+			Object[] items = index.get(n - 1 - size / 2 - i % (size / 2));
+			String[] res = new String[items.length];
+			for (int k = 0; k < items.length; k++) {
+				res[k] = items[k].toString();
+			}
+			read += res.length;
+		}
+		long get = System.nanoTime() - start;
+
+		print("list", set, n, get, read, print);
+	}
+
+	static void runRing(int size, int n, String[] hashes, boolean print) {
+		RollingIndex<String> index = new RollingIndex<String>("bench", size);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			index.set(hashes[i % hashes.length], i);
+		}
+		long set = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		long read = 0;
+		for (int i = 0; i < n / size; i++) {
+			RollingIndex.Window<String> window = index.window(n - 1 - size / 2 - i % (size / 2)).result;
+			String[] res = window.toArray(new String[window.size()]);
+			read += res.length;
+		}
+		long get = System.nanoTime() - start;
+
+		print("ring", set, n, get, read, print);
+	}
+
+	static void print(String name, long set, long sets, long get, long read, boolean print) {
+		if (print) {
+			System.out.println(String.format("%s: set %.1f ns/op, get %.2f ns/item (%d items)",
+				name, (double) set / sets, (double) get / read, read));
+		}
+	}
+
+	// ListRollingIndex is RollingIndex as it was on an ArrayList
+	static class ListRollingIndex {
+		int size;
+		long lastIndex = -1;
+		List<Object> items;
+
+		ListRollingIndex(int size) {
+			this.size = size;
+			this.items = new ArrayList<Object>(2 * size);
+		}
+
+		Object[] get(long skipIndex) {
+			long oldestCachedIndex = lastIndex - items.size() + 1;
+			long start = skipIndex - oldestCachedIndex + 1;
+			return items.subList((int) start, items.size()).toArray();
+		}
+
+		void set(Object item, long index) {
+			if (items.size() >= 2 * size) {
+				List<Object> newList = new ArrayList<Object>(2 * size);
+				newList.addAll(items.subList(size, items.size()));
+				items = newList;
+			}
+			items.add(item);
+			lastIndex = index;
+		}
+	}
+}
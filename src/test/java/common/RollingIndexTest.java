@@ -151,4 +151,34 @@ public class RollingIndexTest {
 
 		assertEquals("expected and cached should be equal", expected3, convertedItems);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void TestRollingIndexWindow() {
+		int size = 10;
+		RollingIndex<String> rollingIndex = new RollingIndex<String>("test", size);
+		String[] items = null;
+		//start the indexes past the ring so that windows wrap around it
+		for (long i = 7; i < 7 + 3 * size + 5; i++) {
+			String item = String.format("item%d", i);
+			assertNull("No error", rollingIndex.set(item, i));
+			items = Appender.append(items, item);
+		}
+		long lastIndex = rollingIndex.getLastIndex();
+
+		RollingIndex.Window<String> window = rollingIndex.lastWindow();
+		assertEquals("Window should hold the items since the last roll", size + 5, window.size());
+		for (long skip = lastIndex - window.size(); skip <= lastIndex; skip++) {
+			RResult<RollingIndex.Window<String>> get = rollingIndex.window(skip);
+			assertNull(String.format("window(%d) err", skip), get.err);
+			String[] expected = Appender.slice(items, (int) (skip - 7 + 1), items.length);
+			assertArrayEquals(String.format("window(%d) should match", skip),
+				expected, get.result.toArray(new String[get.result.size()]));
+			for (int k = 0; k < get.result.size(); k++) {
+				assertEquals(String.format("window(%d).get(%d) should match", skip, k), expected[k], get.result.get(k));
+			}
+		}
+
+		RResult<RollingIndex.Window<String>> tooLate = rollingIndex.window(lastIndex - window.size() - 1);
+		assertTrue("Should return ErrTooLate", StoreErr.Is(tooLate.err, StoreErrType.TooLate));
+	}
+}
@@ -200,6 +200,27 @@ public class CryptoTest {
 		assertEquals("Signature Ss should be the same", s, ds);
 	}
 
+	@Test
+	public void testLegacySignatureDecoding() {
+		BigInteger r = new BigInteger("78441670540129529755648814670619364386938674096127498561112585467726523488290");
+		BigInteger s = new BigInteger("23563287253252453955330730565106518753652686154399070621327758530430438184785");
+
+		String legacy = String.format("%s|%s", r.toString(36), s.toString(36));
+		RResult3<BigInteger, BigInteger> decodeLegacy = Utils.DecodeSignature(legacy);
+		assertNull("no error in decoding legacy signature", decodeLegacy.err);
+		assertEquals("Signature Rs should be the same", r, decodeLegacy.result1);
+		assertEquals("Signature Ss should be the same", s, decodeLegacy.result2);
+
+		String compact = Utils.encodeSignature(r, s);
+		assertTrue("compact signature is shorter", compact.length() < legacy.length());
+		RResult3<BigInteger, BigInteger> decodeCompact = Utils.DecodeSignature(compact);
+		assertNull("no error in decoding compact signature", decodeCompact.err);
+		assertEquals("Signature Rs should be the same", r, decodeCompact.result1);
+		assertEquals("Signature Ss should be the same", s, decodeCompact.result2);
+
+		assertNotNull("truncated signature", Utils.DecodeSignature(compact.substring(0, 40)).err);
+	}
+
 	@Test
 	public void testECDHKeyRegeneration() throws IOException, InvalidKeySpecException, NoSuchAlgorithmException, NoSuchProviderException {
 		Security.addProvider(new org.bouncycastle.jce.provider.BouncyCastleProvider());
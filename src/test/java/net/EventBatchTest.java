@@ -0,0 +1,113 @@
+package net;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import common.RResult;
+import poset.FlagTableWrapper;
+import poset.InternalTransaction;
+import poset.WireBlockSignature;
+import poset.WireBody;
+import poset.WireEvent;
+
+/**
+ * Test for EventBatch
+ *
+ * @author qn
+ *
+ */
+public class EventBatchTest {
+
+	// events of creators 0, 1 and 2 interleaved, each one's flag table adding
+	// an entry to its self-parent's
+	private WireEvent[] getEvents(int n, int txSize) {
+		WireEvent[] events = new WireEvent[n];
+		Map<Long,Map<String,Long>> tables = new HashMap<Long,Map<String,Long>>();
+		for (int i = 0; i < n; i++) {
+			long creator = i % 3;
+			long index = i / 3;
+			Map<String,Long> table = tables.get(creator);
+			table = table == null ? new HashMap<String,Long>() : new HashMap<String,Long>(table);
+			table.put("0x" + creator + "_" + index, index);
+			tables.put(creator, table);
+
+			WireBody body = new WireBody(new byte[][] { new byte[txSize] }, new InternalTransaction[0],
+				new WireBlockSignature[] { new WireBlockSignature(index, "sig" + index) },
+				index - 1, (creator + 1) % 3, index, creator, index);
+			byte[] ft = new FlagTableWrapper(table).marshaller().protoMarshal().result;
+			events[i] = new WireEvent(body, "signature" + i, ft, new String[] { "proof" + (i % 2) });
+		}
+		return events;
+	}
+
+	private Map<String,Long> flagTable(WireEvent event) {
+		FlagTableWrapper wrapper = new FlagTableWrapper();
+		assertNull("No error", wrapper.marshaller().protoUnmarshal(event.getFlagTable()));
+		return wrapper.GetBody();
+	}
+
+	private void assertEvents(WireEvent[] expected, WireEvent[] events) {
+		assertEquals("Event count should match", expected.length, events.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals("Body should match", expected[i].getBody(), events[i].getBody());
+			assertEquals("Signature should match", expected[i].getSignature(), events[i].getSignature());
+			assertArrayEquals("WitnessProof should match", expected[i].getWitnessProof(), events[i].getWitnessProof());
+			assertEquals("FlagTable should match", flagTable(expected[i]), flagTable(events[i]));
+		}
+	}
+
+	@Test
+	public void testEncodeDecode() {
+		WireEvent[] events = getEvents(30, 8);
+		net.proto.EventBatch batch = EventBatch.encode(events);
+		assertTrue("Small batch should not be deflated", batch.getDeflated().isEmpty());
+		assertEquals("Events should be grouped by creator", 3, batch.getCreatorsCount());
+		assertEquals("Witness proofs should be shared", 2, batch.getProofsCount());
+
+		net.proto.BatchEvent second = batch.getCreators(0).getEvents(1);
+		assertEquals("Index should be delta encoded", 1, second.getIndexDelta());
+		assertTrue("FlagTable should be a diff", second.getFlagTableDiff());
+		assertEquals("FlagTable diff should hold the new entry", 1, second.getFlagTableChangesCount());
+
+		RResult<WireEvent[]> decode = EventBatch.decode(batch);
+		assertNull("No error", decode.err);
+		assertEvents(events, decode.result);
+	}
+
+	@Test
+	public void testDeflate() {
+		WireEvent[] events = getEvents(600, 64);
+		net.proto.EventBatch batch = EventBatch.encode(events);
+		assertTrue("Large batch should be deflated", !batch.getDeflated().isEmpty());
+
+		RResult<WireEvent[]> decode = EventBatch.decode(batch);
+		assertNull("No error", decode.err);
+		assertEvents(events, decode.result);
+
+		SyncResponse resp = new SyncResponse(1, false, events, new HashMap<Long,Long>());
+		SyncResponse decoded = new SyncResponse();
+		assertNull("No error", decoded.marshaller().protoUnmarshal(resp.marshaller().protoMarshal().result));
+		assertEvents(events, decoded.getEvents());
+	}
+
+	@Test
+	public void testInvalidBatch() {
+		net.proto.EventBatch batch = EventBatch.encode(getEvents(6, 8)).toBuilder().addOrder(5).build();
+		assertNotNull("Order out of range should fail", EventBatch.decode(batch).err);
+
+		net.proto.EventBatch deflated = net.proto.EventBatch.newBuilder()
+			.setDeflated(com.google.protobuf.ByteString.copyFrom(new byte[] { 1, 2, 3 })).setSize(100).build();
+		assertNotNull("Corrupt deflated batch should fail", EventBatch.decode(deflated).err);
+
+		EagerSyncRequest req = new EagerSyncRequest();
+		byte[] data = net.proto.EagerSyncRequest.newBuilder().setEvents(batch).build().toByteArray();
+		assertNotNull("Invalid batch should not unmarshal", req.marshaller().protoUnmarshal(data));
+	}
+}
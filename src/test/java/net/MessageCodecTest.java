@@ -0,0 +1,101 @@
+package net;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import common.RResult;
+import common.error;
+import poset.InternalTransaction;
+import poset.WireBlockSignature;
+import poset.WireBody;
+import poset.WireEvent;
+
+/**
+ * Test for MessageEncoder and MessageDecoder
+ *
+ * @author qn
+ *
+ */
+public class MessageCodecTest {
+
+	@Test
+	public void testLargeSyncResponse() throws IOException {
+		ServerSocketChannel listener = ServerSocketChannel.open();
+		listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		SocketChannel client = SocketChannel.open(listener.getLocalAddress());
+		SocketChannel server = listener.accept();
+		client.configureBlocking(false);
+
+		Duration timeout = Duration.ofSeconds(5);
+		MessageEncoder enc = new MessageEncoder(server, timeout);
+		MessageDecoder dec = new MessageDecoder(client, timeout);
+		try {
+			//a response much larger than the decoder's buffer
+			int n = 2000;
+			WireEvent[] events = new WireEvent[n];
+			for (int i = 0; i < n; i++) {
+				WireBody body = new WireBody(new byte[][] { new byte[64] }, new InternalTransaction[0],
+					new WireBlockSignature[] { new WireBlockSignature(i, "sig" + i) }, i - 1, 1, i, 0, i);
+				events[i] = new WireEvent(body, "signature" + i, new byte[] { 1, 2, 3 }, new String[] { "proof" + i });
+			}
+			Map<Long,Long> known = new HashMap<Long,Long>();
+			known.put(0L, (long) n - 1);
+			known.put(1L, (long) n);
+			SyncResponse resp = new SyncResponse(3, true, events, known);
+
+			assertNull("No error", enc.encode(7, error.Errorf("sync error"), resp));
+
+			RResult<Integer> id = dec.readID();
+			assertNull("No error", id.err);
+			assertEquals("Request ID should match", 7, (int) id.result);
+			error rpcError = new error(null);
+			assertNull("No error", dec.decode(rpcError));
+			assertEquals("sync error", rpcError.Error());
+
+			SyncResponse decoded = new SyncResponse();
+			assertNull("No error", dec.decode(decoded));
+			assertEquals("Response should be decoded", resp, decoded);
+			assertArrayEquals("Transactions should be decoded", new byte[64], decoded.getEvents()[n - 1].getBody().getTransactions()[0]);
+
+			//a request, without error frame
+			SyncRequest req = new SyncRequest(2, known);
+			MessageEncoder clientEnc = new MessageEncoder(client, timeout);
+			MessageDecoder serverDec = new MessageDecoder(server, timeout);
+			assertNull("No error", clientEnc.encode(NetworkTransportType.rpcSync.ordinal(), 9, req));
+			RResult<Integer> rpcType = serverDec.readRpc();
+			assertNull("No error", rpcType.err);
+			assertEquals(NetworkTransportType.rpcSync.ordinal(), (int) rpcType.result);
+			id = serverDec.readID();
+			assertNull("No error", id.err);
+			assertEquals("Request ID should match", 9, (int) id.result);
+			SyncRequest decodedReq = new SyncRequest();
+			assertNull("No error", serverDec.decode(decodedReq));
+			assertEquals("Request should be decoded", req, decodedReq);
+
+			//nothing to read before the timeout
+			MessageDecoder timedDec = new MessageDecoder(client, Duration.ofMillis(50));
+			assertNotNull("Read should time out", timedDec.decode(new SyncResponse()));
+			timedDec.close();
+			clientEnc.close();
+			serverDec.close();
+		} finally {
+			enc.close();
+			dec.close();
+			client.close();
+			server.close();
+			listener.close();
+		}
+	}
+}
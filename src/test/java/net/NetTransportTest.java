@@ -1,4 +1,5 @@
 package net;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
@@ -45,12 +46,18 @@ public class NetTransportTest {
 		map.put(1L, 5L);
 		map.put(2L, 6L);
 
-		WireBody wireBody = new poset.WireBody(null, null, null, 1L, 10L, 0L, 9L, -1L);
 		SyncResponse expectedResp = new SyncResponse(1, false,
-				new poset.WireEvent[]{new poset.WireEvent(wireBody, null)},	map);
+				new poset.WireEvent[]{getExpectedWireEvent()},	map);
 		return expectedResp;
 	}
 
+	// getExpectedWireEvent has no null fields, which network transports decode as empty
+	protected poset.WireEvent getExpectedWireEvent() {
+		WireBody wireBody = new poset.WireBody(new byte[][]{}, new poset.InternalTransaction[]{},
+				new poset.WireBlockSignature[]{}, 1L, 10L, 0L, 9L, -1L);
+		return new poset.WireEvent(wireBody, "", new byte[]{}, new String[]{});
+	}
+
 	protected void testSync(One2OneChannel<RPC> rpcCh, Transport trans1, Transport trans2) {
 		SyncRequest expectedReq = getExpectedSyncRequest();
 		SyncResponse expectedResp = getExpectedSyncResponse();
@@ -74,8 +81,7 @@ public class NetTransportTest {
 
 
 	protected void testEagerSync(One2OneChannel<RPC> rpcCh, Transport trans1, Transport trans2) {
-		WireBody wireBody = new poset.WireBody(null, null, null, 1L, 10L, 0L, 9L, -1L);
-		EagerSyncRequest expectedReq = new EagerSyncRequest(0, new poset.WireEvent[]{new poset.WireEvent(wireBody, null)});
+		EagerSyncRequest expectedReq = new EagerSyncRequest(0, new poset.WireEvent[]{getExpectedWireEvent()});
 		EagerSyncResponse expectedResp = new EagerSyncResponse(1, true);
 
 		ExecService.go(() -> {
@@ -89,10 +95,17 @@ public class NetTransportTest {
 			}.setTimeout(timeout, errTimeout).run();
 		});
 
+		long written = trans2.getWireStats().events();
 		EagerSyncResponse resp = new EagerSyncResponse();
 		error err = trans2.eagerSync(trans1.localAddr(), expectedReq, resp);
 		assertNull("No error when Sync", err);
 		assertEquals("EagerSync response should match", expectedResp, resp);
+
+		// the in-memory transport writes no frame
+		if (!(trans2 instanceof InmemTransport)) {
+			assertEquals("Written events should be counted", written + 1, trans2.getWireStats().events());
+			assertTrue("Bytes per event should be measured", trans2.getWireStats().bytesPerEvent() > 0);
+		}
 	}
 
 	protected void testFastForward(One2OneChannel<RPC> rpcCh, Transport trans1, Transport trans2) {
@@ -121,7 +134,7 @@ public class NetTransportTest {
 		err = trans2.fastForward(trans1.localAddr(), expectedReq, resp);
 		assertNull("No error when creating block from frame", err);
 
-		assertEquals("response snapshot should match" , expectedResp.Snapshot, resp.Snapshot);
+		assertArrayEquals("response snapshot should match" , expectedResp.Snapshot, resp.Snapshot);
 		assertEquals("response id should match" , expectedResp.FromID, resp.FromID);
 
 		assertEquals("Response block should match", resp.Block, expectedResp.Block);
@@ -147,7 +160,7 @@ public class NetTransportTest {
 
 		WaitGroup wg = new WaitGroup();
 
-		// Try to do parallel appends, should stress the conn pool
+		// Try to do parallel appends, should stress the multiplexed conn
 		int count = maxPool * 2;
 		wg.add(count);
 		for (int i = 0; i < count; i++) {
@@ -165,9 +178,10 @@ public class NetTransportTest {
 			e.printStackTrace();
 		}
 
-		// Check the conn pool size
+		// The RPCs should share a single connection
 		String addr = trans1.localAddr();
-		assertEquals("Length should match", maxPool, trans2.connPool.get(addr).size());
+		assertEquals("Length should match", 1, trans2.conns.size());
+		assertEquals("No RPC should be pending", 0, trans2.conns.get(addr).calls.size());
 	}
 
 	//@Test
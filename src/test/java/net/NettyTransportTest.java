@@ -0,0 +1,90 @@
+package net;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.HashMap;
+
+import org.jcsp.lang.One2OneChannel;
+import org.junit.Test;
+
+import common.RResult;
+import common.TestUtils;
+import common.error;
+import io.netty.channel.Channel;
+
+/**
+ * Test for NettyTransport
+ * @author qn
+ *
+ */
+public class NettyTransportTest extends NetTransportTest {
+
+	@Test
+	public void testNettyTransport() {
+		// Transport 1 is consumer
+		RResult<NettyTransport> newTransport = NettyTransport.NewNettyTransport("127.0.0.1:0", null,
+				Duration.ofSeconds(1), TestUtils.NewTestLogger(this.getClass()));
+		assertNull("No error", newTransport.err);
+		NettyTransport trans1 = newTransport.result;
+
+		One2OneChannel<RPC> rpcCh = trans1.getConsumer();
+
+		// Transport 2 makes outbound request
+		RResult<NettyTransport> newTransport2 = NettyTransport.NewNettyTransport("127.0.0.1:0", null,
+				Duration.ofSeconds(1), TestUtils.NewTestLogger(this.getClass()));
+		assertNull("No error", newTransport2.err);
+		NettyTransport trans2 = newTransport2.result;
+
+		// "Sync"
+		testSync(rpcCh, trans1, trans2);
+
+		// "EagerSync"
+		testEagerSync(rpcCh, trans1, trans2);
+
+		// "FastForward"
+		testFastForward(rpcCh, trans1, trans2);
+
+		trans2.close();
+		trans1.close();
+	}
+
+	@Test
+	public void testUnresponsivePeer() throws Exception {
+		Duration timeout = Duration.ofMillis(200);
+		RResult<NettyTransport> newTransport = NettyTransport.NewNettyTransport("127.0.0.1:0", null,
+				timeout, TestUtils.NewTestLogger(this.getClass()));
+		assertNull("No error", newTransport.err);
+		NettyTransport trans = newTransport.result;
+
+		// The peer accepts the connection and never answers
+		ServerSocketChannel peer = ServerSocketChannel.open();
+		peer.bind(new InetSocketAddress("127.0.0.1", 0));
+		String target = "127.0.0.1:" + peer.socket().getLocalPort();
+		SocketChannel accepted = null;
+		try {
+			Channel ch = trans.getConn(target).result;
+			assertNotNull("Should connect", ch);
+			accepted = peer.accept();
+			NettyTransport.ClientHandler handler = ch.pipeline().get(NettyTransport.ClientHandler.class);
+
+			error err = trans.sync(target, new SyncRequest(1, new HashMap<Long,Long>()), new SyncResponse());
+			assertNotNull("Sync should time out", err);
+
+			assertTrue("Channel should be closed", ch.closeFuture().await(10 * timeout.toMillis()));
+			assertTrue("Call should be removed", handler.calls.isEmpty());
+			assertEquals("Permit should be released", trans.maxInFlight, handler.inFlight.availablePermits());
+		} finally {
+			if (accepted != null) {
+				accepted.close();
+			}
+			peer.close();
+			trans.close();
+		}
+	}
+}
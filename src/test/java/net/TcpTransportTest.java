@@ -2,13 +2,26 @@ package net;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import org.jcsp.lang.One2OneChannel;
 import org.junit.Test;
 
+import channel.ExecService;
 import common.RResult;
 import common.TestUtils;
 import common.error;
@@ -64,4 +77,125 @@ public class TcpTransportTest {
 		int actualPort = ((TCPStreamLayer) trans.stream).listener.socket().getLocalPort();
 		assertEquals("Bind port should match", expectedPort, actualPort);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void TestTCPTransport_ServesPeersConcurrently() throws IOException {
+		int peers = 3;
+		RResult<NetworkTransport> newTCPTransport = TCPTransport.NewTCPTransport(
+				"127.0.0.1:0", null, 1, Duration.ofSeconds(1), TestUtils.NewTestLogger(this.getClass()));
+		assertNull("No error when create new tcp transport", newTCPTransport.err);
+		NetworkTransport trans = newTCPTransport.result;
+		int port = ((TCPStreamLayer) trans.stream).listener.socket().getLocalPort();
+
+		// The consumer answers once it holds the requests of all the peers
+		One2OneChannel<RPC> rpcCh = trans.getConsumer();
+		ExecService.go(() -> {
+			RPC[] rpcs = new RPC[peers];
+			for (int i = 0; i < peers; i++) {
+				rpcs[i] = rpcCh.in().read();
+			}
+			for (RPC rpc : rpcs) {
+				SyncRequest req = (SyncRequest) rpc.getCommand();
+				rpc.respond(new SyncResponse(req.getFromID() + 100), null);
+			}
+		});
+
+		SocketChannel[] conns = new SocketChannel[peers];
+		try {
+			for (int i = 0; i < peers; i++) {
+				conns[i] = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+				MessageEncoder enc = new MessageEncoder(conns[i], Duration.ZERO);
+				error err = enc.encode(NetworkTransportType.rpcSync.ordinal(), i, new SyncRequest(i, new HashMap<Long,Long>()));
+				assertNull("No error sending the request", err);
+			}
+
+			for (int i = 0; i < peers; i++) {
+				MessageDecoder dec = new MessageDecoder(conns[i], Duration.ZERO);
+				assertEquals("Request ID should match", i, (int) dec.readID().result);
+				error rpcError = new error(null);
+				assertNull("No error decoding the error", dec.decode(rpcError));
+				assertNull("No rpc error", rpcError.Error());
+				SyncResponse resp = new SyncResponse();
+				assertNull("No error decoding the response", dec.decode(resp));
+				assertEquals("Response should match its request", i + 100, resp.getFromID());
+			}
+		} finally {
+			for (SocketChannel conn : conns) {
+				if (conn != null) {
+					conn.close();
+				}
+			}
+			trans.close();
+		}
+	}
+
+	@Test
+	public void TestTCPTransport_MultiplexesRPCs() throws Exception {
+		int count = 8;
+		Duration timeout = Duration.ofSeconds(2);
+		// The transport sends the RPCs to itself, as it dials its own port
+		NetworkTransport trans = TCPTransport.NewTCPTransport("127.0.0.1:0", null, 1, timeout,
+				TestUtils.NewTestLogger(this.getClass())).result;
+		String target = trans.localAddr();
+
+		// The consumer answers the requests in reverse order
+		One2OneChannel<RPC> rpcCh = trans.getConsumer();
+		ExecService.go(() -> {
+			RPC[] rpcs = new RPC[count];
+			for (int i = 0; i < count; i++) {
+				rpcs[i] = rpcCh.in().read();
+			}
+			for (int i = count - 1; i >= 0; i--) {
+				SyncRequest req = (SyncRequest) rpcs[i].getCommand();
+				rpcs[i].respond(new SyncResponse(req.getFromID() + 100), null);
+			}
+		});
+
+		try {
+			List<CompletableFuture<SyncResponse>> futures = new ArrayList<CompletableFuture<SyncResponse>>();
+			for (int i = 0; i < count; i++) {
+				futures.add(trans.syncAsync(target, new SyncRequest(i, new HashMap<Long,Long>())));
+			}
+			for (int i = 0; i < count; i++) {
+				SyncResponse resp = futures.get(i).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+				assertEquals("Response should match its request", i + 100, resp.getFromID());
+			}
+			assertEquals("RPCs should share a connection", 1, trans.conns.size());
+		} finally {
+			trans.close();
+		}
+	}
+
+	@Test
+	public void TestTCPTransport_UnresponsivePeer() throws Exception {
+		Duration timeout = Duration.ofMillis(200);
+		// The peer accepts the connection and never answers
+		ServerSocketChannel peer = ServerSocketChannel.open();
+		peer.bind(new InetSocketAddress("127.0.0.1", 0));
+		SocketChannel conn = SocketChannel.open(peer.getLocalAddress());
+		SocketChannel accepted = peer.accept();
+		try {
+			NetConn netConn = new NetConn(peer.getLocalAddress().toString(), conn, timeout, 1);
+			CompletableFuture<SyncResponse> future = netConn.call(NetworkTransportType.rpcSync.ordinal(),
+				new SyncRequest(1, new HashMap<Long,Long>()), new SyncResponse());
+			try {
+				future.get(10 * timeout.toMillis(), TimeUnit.MILLISECONDS);
+				assertTrue("Call should time out", false);
+			} catch (ExecutionException e) {
+				assertTrue("Call should fail with a transport error", e.getCause() instanceof TransportException);
+			}
+
+			assertTrue("Connection should be closed", netConn.isClosed());
+			assertTrue("Call should be removed", netConn.calls.isEmpty());
+			assertEquals("Permit should be released", 1, netConn.inFlight.availablePermits());
+
+			CompletableFuture<SyncResponse> next = netConn.call(NetworkTransportType.rpcSync.ordinal(),
+				new SyncRequest(2, new HashMap<Long,Long>()), new SyncResponse());
+			assertTrue("Next call should fail at once", next.isCompletedExceptionally());
+		} finally {
+			accepted.close();
+			conn.close();
+			peer.close();
+		}
+	}
+}
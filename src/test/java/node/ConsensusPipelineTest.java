@@ -0,0 +1,128 @@
+package node;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import autils.Logger;
+import common.error;
+
+/**
+ * Test for ConsensusPipeline
+ *
+ * @author qn
+ *
+ */
+public class ConsensusPipelineTest {
+	private static Logger logger = Logger.getLogger(ConsensusPipelineTest.class);
+
+	// counter returns work counting its calls
+	private Supplier<error> counter(AtomicInteger calls) {
+		return () -> {
+			calls.incrementAndGet();
+			return null;
+		};
+	}
+
+	private void waitFor(AtomicLong value, long expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (value.get() < expected) {
+			assertTrue(String.format("Timeout waiting for %d runs", expected),
+				System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	public void testCoalesce() throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger rounds = new AtomicInteger();
+		AtomicInteger blocks = new AtomicInteger();
+		AtomicInteger signatures = new AtomicInteger();
+		ConsensusPipeline pipeline = new ConsensusPipeline(() -> {
+			if (rounds.incrementAndGet() == 1) {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return null;
+		}, counter(blocks), counter(signatures), new ReentrantLock(), logger);
+		pipeline.start();
+
+		pipeline.submit();
+		assertTrue("First run should start", started.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < 5; i++) {
+			pipeline.submit();
+		}
+		release.countDown();
+
+		//the requests queued during the first run make a single run
+		waitFor(pipeline.rounds.runs, 2);
+		waitFor(pipeline.blocks.runs, 1);
+		pipeline.shutdown();
+		assertEquals("Queued requests should be coalesced", 2, rounds.get());
+		assertEquals("Queued requests should be coalesced", 2, pipeline.rounds.runs.get());
+		assertTrue("Blocks should run after rounds", blocks.get() >= 1 && blocks.get() <= 2);
+		assertTrue("Signatures should run after blocks", signatures.get() <= blocks.get());
+	}
+
+	@Test
+	public void testStop() {
+		AtomicInteger rounds = new AtomicInteger();
+		AtomicInteger blocks = new AtomicInteger();
+		AtomicInteger signatures = new AtomicInteger();
+		ConsensusPipeline pipeline = new ConsensusPipeline(counter(rounds), counter(blocks),
+			counter(signatures), new ReentrantLock(), logger);
+		pipeline.start();
+
+		//shutdown returns once STOP went through every stage
+		pipeline.shutdown();
+		for (int i = 0; i < pipeline.workers.length; i++) {
+			assertTrue(String.format("Stage %d should be stopped", i), pipeline.workers[i].isDone());
+		}
+		assertEquals("No stage should run", 0, rounds.get() + blocks.get() + signatures.get());
+
+		//requests after shutdown are not run
+		pipeline.submit();
+		assertEquals("No stage should run", 0, rounds.get());
+	}
+
+	@Test
+	public void testContinueAfterError() throws InterruptedException {
+		AtomicInteger rounds = new AtomicInteger();
+		AtomicInteger blocks = new AtomicInteger();
+		AtomicInteger signatures = new AtomicInteger();
+		ConsensusPipeline pipeline = new ConsensusPipeline(() -> {
+			if (rounds.incrementAndGet() == 1) {
+				return error.Errorf("rounds failed");
+			}
+			return null;
+		}, counter(blocks), counter(signatures), new ReentrantLock(), logger);
+		pipeline.start();
+
+		//a failed run is not passed on to the next stage
+		pipeline.submit();
+		waitFor(pipeline.rounds.errors, 1);
+		assertEquals("Failed run should stop at its stage", 0, blocks.get());
+
+		//the stage keeps serving requests
+		pipeline.submit();
+		waitFor(pipeline.signatures.runs, 1);
+		pipeline.shutdown();
+		assertEquals("Rounds should run twice", 2, rounds.get());
+		assertEquals("Rounds should fail once", 1, pipeline.rounds.errors.get());
+		assertEquals("Blocks should run once", 1, blocks.get());
+		assertEquals("Signatures should run once", 1, signatures.get());
+	}
+}
@@ -1026,6 +1026,87 @@ public class CoreTest {
 		assertEquals("Seq should be -1", -1, c0s);
 	}
 
+	// newCore returns a Core of participant i without any Event
+	private Core newCore(int i, int verifyParallelism) {
+		Peers participants = cores[0].participants;
+		Peer peer = participants.toPeerSlice()[i];
+		Core core = new Core((long) i,
+			participantKeys.get(peer.getID()),
+			participants,
+			new InmemStore(participants, 1000),
+			null,
+			logger);
+		core.setVerifyParallelism(verifyParallelism);
+		return core;
+	}
+
+	// allWire returns the Events known by core, in topological order, as WireEvents
+	private WireEvent[] allWire(Core core) {
+		Map<Long,Long> known = new HashMap<Long,Long>();
+		for (Long id : core.knownEvents().keySet()) {
+			known.put(id, -1L);
+		}
+		RResult<Event[]> eventDiff = core.eventDiff(known);
+		assertNull("No error", eventDiff.err);
+		RResult<WireEvent[]> toWire = core.toWire(eventDiff.result);
+		assertNull("No error", toWire.err);
+		return toWire.result;
+	}
+
+	@Test
+	public void testInsertBatch() {
+		cores = initConsensusPoset();
+		WireEvent[] wire = allWire(cores[0]);
+		assertTrue("Batch should hold events", wire.length > 1);
+
+		Core parallel = newCore(1, 4);
+		RResult<String> insertBatch = parallel.insertBatch(wire, parallel.knownEvents());
+		assertNull("No error", insertBatch.err);
+
+		Core sequential = newCore(1, 0);
+		String otherHead = "";
+		for (WireEvent we : wire) {
+			RResult<Event> readWireInfo = sequential.poset.ReadWireInfo(we);
+			assertNull("No error", readWireInfo.err);
+			assertNull("No error", sequential.insertEvent(readWireInfo.result, false));
+			otherHead = readWireInfo.result.hex();
+		}
+
+		assertEquals("Batch should return the last Event", otherHead, insertBatch.result);
+		assertEquals("Known Events should match", sequential.knownEvents(), parallel.knownEvents());
+		assertEquals("Events should be inserted in order",
+			sequential.getUndeterminedEvents(), parallel.getUndeterminedEvents());
+		parallel.shutdown();
+	}
+
+	@Test
+	public void testInsertBatchBadSignature() {
+		cores = initConsensusPoset();
+		WireEvent[] wire = allWire(cores[0]);
+		int bad = wire.length / 2;
+		assertTrue("Batch should hold events", bad > 0);
+
+		//the signature of another Event does not verify
+		WireEvent we = wire[bad];
+		wire[bad] = new WireEvent(we.getBody(), wire[bad - 1].getSignature(),
+			we.getFlagTable(), we.getWitnessProof());
+
+		Core core = newCore(1, 4);
+		RResult<String> insertBatch = core.insertBatch(wire, core.knownEvents());
+		assertNotNull("Bad signature should be rejected", insertBatch.err);
+
+		Map<Long,Long> known = core.knownEvents();
+		long creator = we.getBody().getCreatorID();
+		assertEquals("Events before the bad one should be inserted",
+			we.getBody().getIndex() - 1, (long) known.get(creator));
+		int inserted = 0;
+		for (Long index : known.values()) {
+			inserted += index + 1;
+		}
+		assertEquals("Events from the bad one should not be inserted", bad, inserted);
+		core.shutdown();
+	}
+
 	private error synchronizeCores(Core[] cores, int from, int to, byte[][] payload) {
 		Map<Long, Long> knownByTo = cores[to].knownEvents();
 		RResult<Event[]> eventDiff = cores[from].eventDiff(knownByTo);
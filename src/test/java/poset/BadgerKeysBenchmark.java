@@ -0,0 +1,81 @@
+package poset;
+
+import java.util.concurrent.ConcurrentNavigableMap;
+
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.Serializer;
+
+import peers.Peer;
+import peers.Peers;
+
+/**
+ * Compares the String.format keys BadgerStore used to have with the binary
+ * keys, for inserts and lookups of [participant_index] => [event hash] in an
+ * in-memory MapDB tree map.
+ *
+ * Run with: java poset.BadgerKeysBenchmark [events per participant]
+ */
+public class BadgerKeysBenchmark {
+	static final int participantsCount = 8;
+	static final int rounds = 5;
+
+	interface KeyFunc {
+		byte[] key(String participant, long index);
+	}
+
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+
+		Peers participants = new Peers();
+		for (int i = 0; i < participantsCount; i++) {
+			byte[] pubKey = crypto.Utils.FromECDSAPub(crypto.Utils.GenerateECDSAKeyPair().result.getPublic());
+			participants.addPeer(new Peer(crypto.Utils.toHexString(pubKey), ""));
+		}
+		String[] pubKeys = participants.getByPubKey().keySet().toArray(new String[0]);
+
+		BadgerStore store = new BadgerStore(participants, null, DBMaker.memoryDB().make(), null);
+		KeyFunc legacy = (p, i) -> String.format("%s__event_%09d", p, i).getBytes();
+		KeyFunc binary = store::participantEventKey;
+
+		for (int r = 0; r < rounds; r++) {
+			run("legacy", legacy, pubKeys, n, r == rounds - 1);
+			run("binary", binary, pubKeys, n, r == rounds - 1);
+		}
+	}
+
+	static void run(String name, KeyFunc keys, String[] pubKeys, int n, boolean print) {
+		DB db = DBMaker.memoryDB().make();
+		ConcurrentNavigableMap<byte[],byte[]> map =
+			db.treeMap("events_map", Serializer.BYTE_ARRAY, Serializer.BYTE_ARRAY).createOrOpen();
+		byte[] value = new byte[66];
+
+		long start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			for (String p : pubKeys) {
+				map.put(keys.key(p, i), value);
+			}
+		}
+		long insert = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		int found = 0;
+		for (int i = 0; i < n; i++) {
+			for (String p : pubKeys) {
+				if (map.get(keys.key(p, i)) != null) {
+					found++;
+				}
+			}
+		}
+		long lookup = System.nanoTime() - start;
+
+		long keyBytes = (long) keys.key(pubKeys[0], 0).length;
+		db.close();
+
+		if (print) {
+			long ops = (long) n * pubKeys.length;
+			System.out.println(String.format("%s: key %d bytes, insert %.0f ns/op, lookup %.0f ns/op, found %d/%d",
+				name, keyBytes, (double) insert / ops, (double) lookup / ops, found, ops));
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package poset;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -8,10 +9,13 @@ import java.io.File;
 import java.nio.file.Paths;
 import java.security.KeyPair;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
 
 import org.junit.Test;
+import org.mapdb.Serializer;
 
 import autils.Appender;
 import autils.FileUtils;
@@ -227,6 +231,13 @@ public class BadgerStoreTest {
 			assertTrue("Verified signature returns true", ver);
 		}
 
+		TopologicalCursor cursor = store.dbTopologicalCursor();
+		assertEquals("Cursor total should match", topologicalEvents.length, cursor.total());
+		while (cursor.hasNext()) {
+			assertNull("No error", cursor.next().err);
+		}
+		assertEquals("Cursor should read all events", topologicalEvents.length, cursor.position());
+
 		//check that participant events where correctly added
 		int skipIndex = -1; //do not skip any indexes
 		for (pub p : participants) {
@@ -247,6 +258,47 @@ public class BadgerStoreTest {
 		removeBadgerStore(store);
 	}
 
+	@Test
+	public void TestDBTopologicalGap() {
+		int cacheSize = 1;
+		RResult2<BadgerStore, pub[]> initBadgerStore = initBadgerStore(cacheSize);
+		BadgerStore store = initBadgerStore.result1;
+		pub p = initBadgerStore.result2[0];
+
+		//topological indexes 0, 1, 2, then 4, 5
+		long[] topologicalIndexes = new long[]{0, 1, 2, 4, 5};
+		for (int k = 0; k < topologicalIndexes.length; k++) {
+			Event event = new Event(
+				new byte[][]{String.format("gap_%d", k).getBytes()},
+				new InternalTransaction[]{},
+				new BlockSignature[]{},
+				new String[]{"", ""},
+				p.pubKey,
+				k, null);
+			event.sign(p.privKey.getPrivate());
+			event.message.TopologicalIndex = topologicalIndexes[k];
+			error err = store.dbSetEvents(new Event[]{event});
+			assertNull("No error", err);
+		}
+
+		//the events stop at the gap, without error
+		RResult<Event[]> dbTopologicalEvents = store.dbTopologicalEvents();
+		assertNull("No error", dbTopologicalEvents.err);
+		assertEquals("Events before the gap should be read", 3, dbTopologicalEvents.result.length);
+
+		TopologicalCursor cursor = store.dbTopologicalCursor();
+		int read = 0;
+		while (cursor.hasNext()) {
+			assertNull("No error", cursor.next().err);
+			read++;
+		}
+		assertEquals("Cursor should stop at the gap", 3, read);
+		assertEquals("Cursor should stop at the gap", 3, cursor.position());
+		assertTrue("Reading at the gap should fail", store.isDBKeyNotFound(cursor.next().err));
+
+		removeBadgerStore(store);
+	}
+
 	@Test
 	public void TestDBRoundMethods() {
 		int cacheSize = 1; // Inmem_store's caches accept positive cacheSize only
@@ -288,6 +340,269 @@ public class BadgerStoreTest {
 		removeBadgerStore(store);
 	}
 
+	@Test
+	public void TestDBGroupCommit() {
+		int cacheSize = 1;
+		RResult2<BadgerStore, pub[]> initBadgerStore = initBadgerStore(cacheSize);
+		BadgerStore store = initBadgerStore.result1;
+		pub[] participants = initBadgerStore.result2;
+
+		store.setDurability(Durability.Batched, 100, 60 * 1000);
+		long commits = store.getCommits();
+
+		for (pub p: participants) {
+			Event event = new Event(new byte[][]{},
+				new InternalTransaction[]{},
+				new BlockSignature[]{},
+				new String[]{"", ""},
+				p.pubKey,
+				0, null);
+			error err = store.dbSetEvents(new Event[]{event});
+			assertNull("No error", err);
+
+			RResult<Event> dbGetEvent = store.dbGetEvent(event.hex());
+			assertNull("Uncommitted event should be readable", dbGetEvent.err);
+		}
+		assertEquals("No commit before flush", commits, store.getCommits());
+
+		error err = store.flush();
+		assertNull("No error", err);
+		assertEquals("One commit for the batch", commits + 1, store.getCommits());
+		assertTrue("More writes than commits", store.getWrites() > store.getCommits());
+
+		removeBadgerStore(store);
+	}
+
+	private ConcurrentNavigableMap<byte[],byte[]> openMap(BadgerStore store, String name) {
+		return store.db.treeMap(name, Serializer.BYTE_ARRAY, Serializer.BYTE_ARRAY).open();
+	}
+
+	@Test
+	public void TestDBKeyMigration() {
+		int cacheSize = 1;
+		RResult2<BadgerStore, pub[]> initBadgerStore = initBadgerStore(cacheSize);
+		BadgerStore store = initBadgerStore.result1;
+		pub[] participants = initBadgerStore.result2;
+		assertEquals("New store has binary keys", BadgerStore.keyFormat, store.dbKeyFormat());
+
+		//write the db the way it was before binary keys
+		ConcurrentNavigableMap<byte[],byte[]> eventMap = openMap(store, "events_map");
+		ConcurrentNavigableMap<byte[],byte[]> rootMap = openMap(store, "participants_root");
+		ConcurrentNavigableMap<byte[],byte[]> roundMap = openMap(store, "rounds_map");
+		rootMap.clear();
+
+		RoundInfo round = new RoundInfo();
+		Event[] events = new Event[participants.length];
+		for (int i = 0; i < participants.length; i++) {
+			pub p = participants[i];
+			Event event = new Event(new byte[][]{},
+				new InternalTransaction[]{},
+				new BlockSignature[]{},
+				new String[]{"", ""},
+				p.pubKey,
+				0, null);
+			event.message.TopologicalIndex = i;
+			events[i] = event;
+			round.AddEvent(event.hex(), true);
+
+			byte[] hex = event.hex().getBytes();
+			eventMap.put(hex, event.marshaller().protoMarshal().result);
+			eventMap.put(String.format("%s_%09d", BadgerStore.topoPrefix, i).getBytes(), hex);
+			eventMap.put(String.format("%s__event_%09d", p.hex, 0).getBytes(), hex);
+
+			Root root = store.inmemStore.rootsByParticipant.get(p.hex);
+			rootMap.put(String.format("%s_%s", p.hex, BadgerStore.rootSuffix).getBytes(),
+				root.marshaller().protoMarshal().result);
+		}
+		roundMap.put(String.format("%s_%09d", BadgerStore.roundPrefix, 0).getBytes(),
+			round.marshaller().protoMarshal().result);
+		openMap(store, "meta_map").remove(BadgerStore.keyFormatKey);
+		store.db.commit();
+		store.close();
+
+		RResult<BadgerStore> loadBadgerStore = BadgerStore.LoadBadgerStore(cacheSize, dbPath);
+		store = loadBadgerStore.result;
+		error err = loadBadgerStore.err;
+		assertNull("No error loading legacy store", err);
+		assertEquals("Keys migrated", BadgerStore.keyFormat, store.dbKeyFormat());
+
+		for (Event event : events) {
+			RResult<Event> dbGetEvent = store.dbGetEvent(event.hex());
+			assertNull("No error", dbGetEvent.err);
+			assertEquals("Migrated event should match", event.hex(), dbGetEvent.result.hex());
+
+			RResult<String> dbParticipantEvent = store.dbParticipantEvent(event.creator(), 0);
+			assertNull("No error", dbParticipantEvent.err);
+			assertEquals("Migrated participant event should match", event.hex(), dbParticipantEvent.result);
+		}
+
+		RResult<Event[]> dbTopologicalEvents = store.dbTopologicalEvents();
+		assertNull("No error", dbTopologicalEvents.err);
+		assertEquals("All topological events migrated", events.length, dbTopologicalEvents.result.length);
+
+		RResult<RoundInfo> dbGetRound = store.dbGetRound(0);
+		assertNull("No error", dbGetRound.err);
+		assertEquals("Migrated round should match", round, dbGetRound.result);
+
+		removeBadgerStore(store);
+	}
+
+	@Test
+	public void TestDBEventKeyFormat() {
+		int cacheSize = 1;
+		RResult2<BadgerStore, pub[]> initBadgerStore = initBadgerStore(cacheSize);
+		BadgerStore store = initBadgerStore.result1;
+		pub[] participants = initBadgerStore.result2;
+
+		//hashes with the top bit set and with leading zero bytes
+		String high = "0x" + String.join("", Collections.nCopies(32, "F0"));
+		String low = String.format("0x%040X", 0xABCDEF);
+		assertEquals("Fixed width key", 1 + BadgerStore.HASH_SIZE, store.eventKey(high).length);
+		assertEquals("Fixed width key", 1 + BadgerStore.HASH_SIZE, store.eventKey(low).length);
+		assertEquals("Hash is right aligned", (byte) 0xEF, store.eventKey(low)[BadgerStore.HASH_SIZE]);
+		assertFalse("Differently padded hexes have distinct keys",
+			Arrays.equals(store.eventKey("0x0a"), store.eventKey("0xa")));
+		assertEquals("Non hash hex is a name key", BadgerStore.eventNameTag, store.eventKey("0x0a")[0]);
+
+		//write an event with the variable width key of key format 1
+		pub p = participants[0];
+		Event event = new Event(new byte[][]{},
+			new InternalTransaction[]{},
+			new BlockSignature[]{},
+			new String[]{"", ""},
+			p.pubKey,
+			0, null);
+		assertNull("No error", store.dbSetEvents(new Event[]{event}));
+		ConcurrentNavigableMap<byte[],byte[]> eventMap = openMap(store, "events_map");
+		byte[] key = store.eventKey(event.hex());
+		byte[] value = eventMap.remove(key);
+		byte[] legacy = new byte[key.length + 1];
+		legacy[0] = BadgerStore.eventTag;
+		System.arraycopy(key, 1, legacy, 2, key.length - 1);
+		eventMap.put(legacy, value);
+		openMap(store, "meta_map").put(BadgerStore.keyFormatKey, new byte[] {1});
+		store.db.commit();
+		store.close();
+
+		RResult<BadgerStore> loadBadgerStore = BadgerStore.LoadBadgerStore(cacheSize, dbPath);
+		assertNull("No error loading key format 1 store", loadBadgerStore.err);
+		store = loadBadgerStore.result;
+		assertEquals("Keys migrated", BadgerStore.keyFormat, store.dbKeyFormat());
+		RResult<Event> dbGetEvent = store.dbGetEvent(event.hex());
+		assertNull("No error", dbGetEvent.err);
+		assertEquals("Migrated event should match", event.hex(), dbGetEvent.result.hex());
+
+		removeBadgerStore(store);
+	}
+
+	@Test
+	public void TestDBCheckpointMethods() {
+		int cacheSize = 1;
+		BadgerStore store = initBadgerStore(cacheSize).result1;
+
+		RResult<Checkpoint> dbGetCheckpoint = store.dbGetCheckpoint();
+		assertTrue("No checkpoint in a new store", store.isDBKeyNotFound(dbGetCheckpoint.err));
+
+		Checkpoint checkpoint = new Checkpoint(3, 120, 95, new String[]{"0xAA", "0xBB"});
+		error err = store.dbSetCheckpoint(checkpoint);
+		assertNull("No error", err);
+
+		dbGetCheckpoint = store.dbGetCheckpoint();
+		assertNull("No error", dbGetCheckpoint.err);
+		Checkpoint stored = dbGetCheckpoint.result;
+		assertEquals("BlockIndex should match", checkpoint.BlockIndex, stored.BlockIndex);
+		assertEquals("TopologicalIndex should match", checkpoint.TopologicalIndex, stored.TopologicalIndex);
+		assertEquals("ReplayFrom should match", checkpoint.ReplayFrom, stored.ReplayFrom);
+		assertTrue("UndeterminedEvents should match",
+			Arrays.equals(checkpoint.UndeterminedEvents, stored.UndeterminedEvents));
+
+		removeBadgerStore(store);
+	}
+
+	@Test
+	public void TestDBPrune() {
+		int cacheSize = 1;
+		RResult2<BadgerStore, pub[]> initBadgerStore = initBadgerStore(cacheSize);
+		BadgerStore store = initBadgerStore.result1;
+		pub[] participants = initBadgerStore.result2;
+
+		// 10 events per round, received in rounds 0..9
+		Event[] events = null;
+		long topologicalIndex = 0;
+		for (int k = 0; k < 100; k++) {
+			pub p = participants[k % participants.length];
+			Event event = new Event(
+				new byte[][]{String.format("%s_%d", p.hex.substring(0,5), k).getBytes()},
+				new InternalTransaction[]{},
+				new BlockSignature[]{},
+				new String[]{"", ""},
+				p.pubKey,
+				k / participants.length, null);
+			event.sign(p.privKey.getPrivate());
+			event.message.TopologicalIndex = topologicalIndex++;
+			event.setRoundReceived(k / 10);
+			events = Appender.append(events, event);
+			assertNull("No error", store.dbSetEvents(new Event[]{event}));
+		}
+		for (int r = 0; r < 10; r++) {
+			assertNull("No error", store.dbSetRound(r, new RoundInfo()));
+		}
+
+		RResult<Long> dbPrune = store.dbPrune(5);
+		assertNull("No error", dbPrune.err);
+		assertEquals("Nothing is pruned without a checkpoint", 0L, (long) dbPrune.result);
+
+		// the checkpoint Block at round 7 bounds what is pruned
+		Block block = new Block(0, 7, "frame".getBytes(), new byte[][]{});
+		assertNull("No error", store.dbSetBlock(block));
+		assertNull("No error", store.dbSetCheckpoint(new Checkpoint(0, 100, 95, new String[]{})));
+
+		// several chunks, each in its own commit
+		store.pruneChunk = 16;
+		long commits = store.getCommits();
+		dbPrune = store.dbPrune(9);
+		assertNull("No error", dbPrune.err);
+		assertTrue("Bytes should be reclaimed", dbPrune.result > 0);
+		assertEquals("Events received before the checkpoint round should be pruned", 70, store.getPrunedEvents());
+		assertEquals("Pruned topo should follow the pruned events", 70, store.dbPrunedTopo());
+		assertTrue("Each chunk should be committed", store.getCommits() - commits >= 70 / 16 + 1);
+
+		for (int i = 0; i < events.length; i++) {
+			RResult<Event> dbGetEvent = store.dbGetEvent(events[i].hex());
+			if (i < 70) {
+				assertTrue(String.format("events[%d] should be pruned", i), store.isDBKeyNotFound(dbGetEvent.err));
+			} else {
+				assertNull(String.format("events[%d] should be kept", i), dbGetEvent.err);
+			}
+		}
+		for (int r = 0; r < 10; r++) {
+			RResult<RoundInfo> dbGetRound = store.dbGetRound(r);
+			assertEquals(String.format("Round %d pruned", r), r < 7, store.isDBKeyNotFound(dbGetRound.err));
+		}
+		assertNull("Blocks are kept", store.dbGetBlock(0).err);
+
+		TopologicalCursor cursor = store.dbTopologicalCursor(0);
+		assertEquals("Cursor should start after the pruned events", 70, cursor.position());
+		for (int i = 70; cursor.hasNext(); i++) {
+			RResult<Event> next = cursor.next();
+			assertNull("No error", next.err);
+			assertEquals(String.format("events[%d] should match", i), events[i].hex(), next.result.hex());
+		}
+
+		// a closing store stops pruning between chunks and starts no pruner
+		assertNull("No error", store.dbSetBlock(new Block(1, 9, "frame".getBytes(), new byte[][]{})));
+		assertNull("No error", store.dbSetCheckpoint(new Checkpoint(1, 100, 100, new String[]{})));
+		store.closing = true;
+		dbPrune = store.dbPrune(10);
+		assertNull("No error", dbPrune.err);
+		assertEquals("Nothing should be pruned while closing", 70, store.dbPrunedTopo());
+		store.pruneAsync(10);
+		assertNull("No pruner should start while closing", store.pruner);
+		store.closing = false;
+
+		removeBadgerStore(store);
+	}
+
 	@Test
 	public void TestDBParticipantMethods() {
 		int cacheSize = 1; // Inmem_store's caches accept positive cacheSize only
@@ -503,6 +818,59 @@ public class BadgerStoreTest {
 		removeBadgerStore(store);
 	}
 
+	@Test
+	public void TestBadgerParticipantEventsBehindCache() {
+		//peers far behind the rolling window read the participant events from the db
+		int cacheSize = 10;
+		int testSize = 100;
+		RResult2<BadgerStore, pub[]> initBadgerStore = initBadgerStore(cacheSize);
+		BadgerStore store = initBadgerStore.result1;
+		pub[] participants = initBadgerStore.result2;
+
+		HashMap<String, Event[]> events = new HashMap<String,Event[]>();
+		for (pub p : participants) {
+			Event[] items = null;
+			for (int k = 0; k < testSize; k++) {
+				Event event = new Event(
+						new byte[][]{String.format("%s_%d", p.hex.substring(0,5), k).getBytes()},
+						new InternalTransaction[]{},
+						new BlockSignature[]{},
+						new String[]{"", ""},
+						p.pubKey,
+						k, null);
+				items = Appender.append(items, event);
+				error err = store.setEvent(event);
+				assertNull("No error", err);
+			}
+			events.put(p.hex, items);
+		}
+
+		for (pub p : participants) {
+			Event[] evs = events.get(p.hex);
+			for (long skip : new long[]{-1, 0, 5, 50, testSize - cacheSize - 2}) {
+				RResult<String[]> pEventsCall = store.participantEvents(p.hex, skip);
+				assertNull("No error", pEventsCall.err);
+				String[] pEvents = pEventsCall.result;
+				assertEquals(String.format("%s after %d should have match length of events", p.hex, skip),
+					testSize - skip - 1, pEvents.length);
+				for (int k = 0; k < pEvents.length; k++) {
+					assertEquals(String.format("ParticipantEvents[%s][%d] after %d should be match", p.hex, k, skip),
+						evs[(int) skip + 1 + k].hex(), pEvents[k]);
+				}
+			}
+
+			RResult<String[]> dbParticipantEvents = store.dbParticipantEvents(p.hex, testSize - 1);
+			assertNull("No error", dbParticipantEvents.err);
+			assertNull("No events after the last one", dbParticipantEvents.result);
+
+			RResult<String> participantEvent = store.participantEvent(p.hex, 3);
+			assertNull("No error", participantEvent.err);
+			assertEquals(String.format("ParticipantEvent[%s][3] should match", p.hex), evs[3].hex(), participantEvent.result);
+		}
+
+		removeBadgerStore(store);
+	}
+
 	@Test
 	public void TestBadgerRounds() {
 		int cacheSize = 1; // Inmem_store's caches accept positive cacheSize only
@@ -0,0 +1,226 @@
+package poset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+
+import org.junit.Test;
+
+/**
+ * EventIndex tests
+ *
+ * @author qn
+ *
+ */
+public class EventIndexTest {
+	private static final byte[] A = new byte[] {1};
+	private static final byte[] B = new byte[] {2};
+
+	private static Event newEvent(String selfParent, String otherParent, byte[] creator, long index) {
+		return new Event(null, null, null, new String[] {selfParent, otherParent}, creator, index, null);
+	}
+
+	@Test
+	public void testClockAncestor() {
+		EventIndex dag = new EventIndex();
+
+		int ra = dag.addRoot(new RootEvent(0), crypto.Utils.toHexString(A));
+		int rb = dag.addRoot(new RootEvent(1), crypto.Utils.toHexString(B));
+
+		Event a0 = newEvent("Root0", "", A, 0);
+		Event b0 = newEvent("Root1", "", B, 0);
+		int sa0 = dag.add(a0);
+		int sb0 = dag.add(b0);
+
+		Event a1 = newEvent(a0.hex(), b0.hex(), A, 1);
+		int sa1 = dag.add(a1);
+		Event b1 = newEvent(b0.hex(), a1.hex(), B, 1);
+		int sb1 = dag.add(b1);
+
+		assertEquals(2, dag.creators());
+		assertEquals(sa0, dag.selfParent(sa1));
+		assertEquals(sb0, dag.otherParent(sa1));
+
+		assertTrue(dag.hasClock(sb1));
+		assertTrue(dag.ancestor(sb1, sa1));
+		assertTrue(dag.ancestor(sb1, sa0));
+		assertTrue(dag.ancestor(sb1, ra));
+		assertTrue(dag.ancestor(sa1, sb0));
+		assertTrue(dag.ancestor(sa1, rb));
+		assertTrue(dag.ancestor(sa1, sa1));
+
+		assertFalse(dag.ancestor(sa1, sb1));
+		assertFalse(dag.ancestor(sa0, sb0));
+		assertFalse(dag.ancestor(sa0, rb));
+		assertFalse(dag.ancestor(ra, rb));
+
+		assertEquals(1, dag.highestSeen(sb1, dag.creator(sa1)));
+		assertEquals(EventIndex.UNKNOWN, dag.highestSeen(sa0, dag.creator(sb0)));
+	}
+
+	@Test
+	public void testSentinels() {
+		EventIndex dag = new EventIndex();
+		byte[] C = new byte[] {3};
+
+		Event a0 = newEvent("", "", A, 0);
+		Event b0 = newEvent("", "", B, 0);
+		Event c0 = newEvent("", "", C, 0);
+		int sa0 = dag.add(a0);
+		dag.add(b0);
+		dag.add(c0);
+
+		Event b1 = newEvent(b0.hex(), a0.hex(), B, 1);
+		Event c1 = newEvent(c0.hex(), b1.hex(), C, 1);
+		Event a1 = newEvent(a0.hex(), c1.hex(), A, 1);
+		int sb1 = dag.add(b1);
+		int sc1 = dag.add(c1);
+		int sa1 = dag.add(a1);
+
+		BitSet sentinels = new BitSet();
+		assertTrue(dag.sentinels(sb1, sa0, sentinels));
+		assertEquals(2, sentinels.cardinality());
+
+		sentinels = new BitSet();
+		assertTrue(dag.sentinels(sc1, sa0, sentinels));
+		assertEquals(3, sentinels.cardinality());
+
+		sentinels = new BitSet();
+		assertTrue(dag.sentinels(sa1, sa0, sentinels));
+		assertEquals(3, sentinels.cardinality());
+		assertEquals(1, dag.firstSeeing(sa0, dag.creator(sc1)));
+
+		sentinels = new BitSet();
+		assertTrue(dag.sentinels(sa0, sb1, sentinels));
+		assertEquals(0, sentinels.cardinality());
+	}
+
+	@Test
+	public void testExternalParent() {
+		EventIndex dag = new EventIndex();
+
+		Event a1 = newEvent("unknown", "", A, 1);
+		int sa1 = dag.add(a1);
+
+		assertFalse(dag.hasClock(sa1));
+		assertEquals(EventIndex.NONE, dag.selfParent(sa1));
+		assertEquals("unknown", dag.externalSelfParent(sa1));
+		assertEquals(null, dag.externalOtherParent(sa1));
+
+		Event a2 = newEvent(a1.hex(), "", A, 2);
+		assertFalse(dag.hasClock(dag.add(a2)));
+
+		dag.reset();
+		assertEquals(0, dag.size());
+		assertEquals(EventIndex.NONE, dag.slot(a1.hex()));
+	}
+
+	@Test
+	public void testEvictBelow() {
+		EventIndex dag = new EventIndex();
+
+		//a and b gossip back and forth, one round per pair of events
+		Event[] a = new Event[4];
+		Event[] b = new Event[4];
+		int[] sa = new int[4];
+		int[] sb = new int[4];
+		for (int i = 0; i < 4; i++) {
+			a[i] = newEvent(i == 0 ? "" : a[i - 1].hex(), i == 0 ? "" : b[i - 1].hex(), A, i);
+			sa[i] = dag.add(a[i]);
+			dag.setRound(sa[i], i);
+			b[i] = newEvent(i == 0 ? "" : b[i - 1].hex(), a[i].hex(), B, i);
+			sb[i] = dag.add(b[i]);
+			dag.setRound(sb[i], i);
+		}
+		Event a4 = newEvent(a[3].hex(), b[3].hex(), A, 4);
+		int sa4 = dag.add(a4);
+
+		//memoize the first Events seeing a0 and a2
+		assertTrue(dag.sentinels(sa4, sa[0], new BitSet()));
+		assertTrue(dag.sentinels(sa4, sa[2], new BitSet()));
+		assertEquals(2, dag.firstSeeing.size());
+		assertEquals(2, dag.firstSeeing(sa[2], dag.creator(sb[2])));
+
+		assertEquals(4, dag.evictBelow(2));
+		assertEquals(5, dag.size());
+		assertEquals(EventIndex.NONE, dag.slot(a[1].hex()));
+		assertEquals(EventIndex.NONE, dag.slot(b[0].hex()));
+
+		//kept slots are renumbered, with their clocks and rounds
+		sa4 = dag.slot(a4.hex());
+		int sa2 = dag.slot(a[2].hex());
+		int sb3 = dag.slot(b[3].hex());
+		assertEquals(a4.hex(), dag.hex(sa4));
+		assertEquals(2, dag.round(sa2));
+		assertEquals(EventIndex.UNKNOWN, dag.round(sa4));
+		assertEquals(sb3, dag.otherParent(sa4));
+		assertTrue(dag.hasClock(sa4));
+		assertTrue(dag.ancestor(sa4, sa2));
+		assertFalse(dag.ancestor(sa2, sb3));
+		assertEquals(1, dag.highestSeen(sa2, dag.creator(sb3)));
+
+		//evicted parents become external
+		assertEquals(EventIndex.NONE, dag.selfParent(sa2));
+		assertEquals(a[1].hex(), dag.externalSelfParent(sa2));
+		assertEquals(b[1].hex(), dag.externalOtherParent(sa2));
+
+		BitSet sentinels = new BitSet();
+		assertTrue(dag.sentinels(sa4, sa2, sentinels));
+		assertEquals(2, sentinels.cardinality());
+		assertEquals(1, dag.firstSeeing.size());
+
+		assertEquals(0, dag.evictBelow(2));
+		int sa5 = dag.add(newEvent(a4.hex(), "", A, 5));
+		assertEquals(sa4, dag.selfParent(sa5));
+	}
+
+	@Test
+	public void testResumeAfterEviction() {
+		EventIndex dag = new EventIndex();
+		byte[] C = new byte[] {3};
+
+		//c creates a single Event, then a and b gossip for a few rounds
+		Event c0 = newEvent("", "", C, 0);
+		dag.setRound(dag.add(c0), 0);
+		Event[] a = new Event[4];
+		Event[] b = new Event[4];
+		for (int i = 0; i < 4; i++) {
+			a[i] = newEvent(i == 0 ? "" : a[i - 1].hex(), i == 0 ? c0.hex() : b[i - 1].hex(), A, i);
+			dag.setRound(dag.add(a[i]), i);
+			b[i] = newEvent(i == 0 ? "" : b[i - 1].hex(), a[i].hex(), B, i);
+			dag.setRound(dag.add(b[i]), i);
+		}
+
+		assertEquals(5, dag.evictBelow(2));
+		assertEquals(2, dag.evictedBelow());
+		assertTrue(dag.isEvicted(c0.hex()));
+		assertFalse(dag.isEvicted(a[1].hex()));
+
+		//c resumes from its evicted tail
+		Event c1 = newEvent(c0.hex(), b[3].hex(), C, 1);
+		int sc1 = dag.add(c1);
+		assertEquals(c0.hex(), dag.externalSelfParent(sc1));
+		assertTrue(dag.hasClock(sc1));
+		assertTrue(dag.ancestor(sc1, dag.slot(a[3].hex())));
+		assertTrue(dag.ancestor(sc1, dag.slot(b[2].hex())));
+		assertEquals(1, dag.highestSeen(sc1, dag.creator(sc1)));
+
+		//an other-parent recorded as evicted
+		dag.addEvicted(b[1].hex(), crypto.Utils.toHexString(B), 1);
+		Event a4 = newEvent(a[3].hex(), b[1].hex(), A, 4);
+		int sa4 = dag.add(a4);
+		assertTrue(dag.hasClock(sa4));
+		assertTrue(dag.ancestor(sa4, dag.slot(b[2].hex())));
+		assertFalse(dag.ancestor(sa4, sc1));
+
+		//a parent which is not known to be evicted still gives no clock
+		assertFalse(dag.hasClock(dag.add(newEvent(a4.hex(), "unknown", A, 5))));
+
+		//the evicted tail is forgotten once c has kept Events
+		assertEquals(2, dag.evictBelow(3));
+		assertFalse(dag.isEvicted(c0.hex()));
+		assertFalse(dag.isEvicted(b[1].hex()));
+	}
+}
@@ -220,5 +220,57 @@ public class InmemStoreTest {
 		String val2Sig = storedBlock.getSignatures().get(participants[1].hex);
 		assertNotNull("Validator2 signature is stored in block", val2Sig);
 		assertEquals("Validator2 block signatures differ", sig2.signature, val2Sig);
+
+		// "Check cache stats"
+		Map<String,String> stats = new HashMap<String,String>();
+		store.cacheStats(stats);
+		long hits = Long.parseLong(stats.get("block_cache_hits"));
+		long misses = Long.parseLong(stats.get("block_cache_misses"));
+		assertTrue("Block reads should hit the cache", hits >= 2);
+		assertTrue("Missing block should fail", store.getBlock(index + 1).err != null);
+		store.cacheStats(stats);
+		assertEquals("Missing block should be counted", misses + 1, Long.parseLong(stats.get("block_cache_misses")));
+		assertEquals("Evictions should be counted", "0", stats.get("block_cache_evictions"));
+	}
+	@Test
+	public void TestInmemMemoryBudget() {
+		initInmemStore(1000);
+		long budget = 200000;
+		error err = store.setMemoryBudget(budget);
+		assertNull("No error when setMemoryBudget", err);
+
+		//blocks of ~50KB, the budget holds a few of them
+		byte[][] transactions = new byte[500][];
+		for (int i = 0; i < transactions.length; i++) {
+			transactions[i] = new byte[100];
+		}
+		int testSize = 10;
+		for (long index = 0; index < testSize; index++) {
+			err = store.setBlock(new Block(index, index, "frame hash".getBytes(), transactions));
+			assertNull("No error when SetBlock", err);
+			assertTrue("Footprint should stay within the budget", store.memoryFootprint() <= budget);
+		}
+		assertTrue("Footprint should be reported", store.memoryFootprint() > 0);
+		assertNull("Last block should be kept", store.getBlock(testSize - 1).err);
+		assertNotNull("First block should be evicted", store.getBlock(0).err);
+
+		//events take their share back from the blocks
+		for (int k = 0; k < 100; k++) {
+			pub p = participants[k % participants.length];
+			Event event = new Event(
+					new byte[][]{new byte[1000]},
+					null,
+					new BlockSignature[]{},
+					new String[]{"", ""},
+					p.pubKey,
+					k / participants.length, null);
+			err = store.setEvent(event);
+			assertNull("No error when setEvent", err);
+		}
+		assertTrue("Footprint should stay within the budget", store.memoryFootprint() <= budget);
+		assertTrue("Blocks should be trimmed for the events", store.blockCache.weight() < budget / 2);
+
+		err = store.setMemoryBudget(budget);
+		assertNotNull("Budget can't be changed on a filled store", err);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package poset;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.security.KeyPair;
+
+import org.junit.Test;
+
+import autils.Appender;
+import autils.FileUtils;
+import common.RResult;
+import common.error;
+import peers.Peer;
+import peers.Peers;
+
+/**
+ * MmapStore tests
+ * @author qn
+ *
+ */
+public class MmapStoreTest {
+	static File currentDirectory = new File(new File(".").getAbsolutePath());
+
+	private String testDir = currentDirectory.getAbsolutePath() + "test_data";
+
+	private String dbPath = Paths.get(testDir, "mmap").toString();
+
+	private pub[] initParticipants(Peers participants, int n) {
+		pub[] participantPubs = null;
+		for (int i = 0; i < n; i++) {
+			KeyPair key = crypto.Utils.GenerateECDSAKeyPair().result;
+			byte[] pubKey = crypto.Utils.FromECDSAPub(key.getPublic());
+			Peer peer = new Peer(crypto.Utils.toHexString(pubKey), "");
+			participants.addPeer(peer);
+			participantPubs = Appender.append(participantPubs,
+				new pub(peer.getID(), key, pubKey, peer.getPubKeyHex()));
+		}
+
+		error err = FileUtils.delete(testDir);
+		assertNull("No error deleting folder", err);
+		return participantPubs;
+	}
+
+	@Test
+	public void TestMmapStoreEvents() {
+		int cacheSize = 1;
+		int testSize = 50;
+		Peers peers = new Peers();
+		pub[] participants = initParticipants(peers, 3);
+
+		// small segments to roll over a few of them
+		RResult<MmapStore> newStore = MmapStore.NewMmapStore(peers, cacheSize, dbPath, 4096);
+		MmapStore store = newStore.result;
+		assertNull("No error creating store", newStore.err);
+
+		Event[] topologicalEvents = null;
+		long topologicalIndex = 0;
+		for (pub p : participants) {
+			for (int k = 0; k < testSize; k++) {
+				Event event = new Event(
+					new byte[][]{String.format("%s_%d", p.hex.substring(0,5), k).getBytes()},
+					new InternalTransaction[]{},
+					new BlockSignature[]{},
+					new String[]{"", ""},
+					p.pubKey,
+					k, null);
+				event.sign(p.privKey.getPrivate());
+				event.message.TopologicalIndex = topologicalIndex++;
+				topologicalEvents = Appender.append(topologicalEvents, event);
+
+				error err = store.dbSetEvent(event);
+				assertNull("No error", err);
+			}
+		}
+
+		//metadata is updated in place of the event
+		Event first = topologicalEvents[0];
+		first.setRound(3);
+		first.setRoundReceived(5);
+		assertNull("No error", store.dbSetEvent(first));
+		Long metaOffset = store.tableIndex.get(MmapStore.metaTag).get(store.hashes.get(first.hex()));
+		assertNotNull("Metadata should be appended", metaOffset);
+
+		//unchanged metadata is not appended again
+		assertNull("No error", store.dbSetEvent(first));
+		assertEquals("Unchanged metadata should not be appended", metaOffset,
+			store.tableIndex.get(MmapStore.metaTag).get(store.hashes.get(first.hex())));
+		Event second = topologicalEvents[1];
+		assertNull("No error", store.dbSetEvent(second));
+		assertNull("Metadata of the log should not be appended",
+			store.tableIndex.get(MmapStore.metaTag).get(store.hashes.get(second.hex())));
+
+		RoundInfo round = new RoundInfo();
+		round.AddEvent(first.hex(), true);
+		assertNull("No error", store.setRound(0, round));
+
+		assertNull("No error", store.close());
+
+		RResult<MmapStore> loadStore = MmapStore.LoadMmapStore(cacheSize, dbPath, 4096);
+		store = loadStore.result;
+		assertNull("No error loading store", loadStore.err);
+		assertTrue("Loaded store needs bootstrap", store.needBoostrap());
+		assertEquals("Participants should be reloaded", participants.length, store.participants.length());
+
+		TopologicalCursor cursor = store.dbTopologicalCursor(0);
+		assertEquals("Cursor total should match", topologicalEvents.length, cursor.total());
+		for (int i = 0; cursor.hasNext(); i++) {
+			RResult<Event> next = cursor.next();
+			assertNull("No error", next.err);
+			assertEquals(String.format("topologicalEvents[%d] should match", i), topologicalEvents[i].hex(), next.result.hex());
+			assertEquals(String.format("topologicalEvents[%d].Body should match", i),
+				topologicalEvents[i].message.Body, next.result.message.Body);
+		}
+
+		RResult<Event> dbGetEvent = store.dbGetEvent(first.hex());
+		assertNull("No error", dbGetEvent.err);
+		assertEquals("Round should be updated", 3, dbGetEvent.result.round);
+		assertEquals("RoundReceived should be updated", 5, dbGetEvent.result.roundReceived);
+
+		for (pub p : participants) {
+			RResult<String[]> dbParticipantEvents = store.dbParticipantEvents(p.hex, -1);
+			assertNull("No error", dbParticipantEvents.err);
+			assertEquals(String.format("%s should have matching number events", p.hex), testSize, dbParticipantEvents.result.length);
+		}
+
+		RResult<String[]> noEvents = store.dbParticipantEvents(participants[0].hex, testSize - 1);
+		assertNull("No error", noEvents.err);
+		assertNull("No events after the last one", noEvents.result);
+
+		RResult<RoundInfo> getRound = store.getRound(0);
+		assertNull("No error", getRound.err);
+		assertEquals("Round and StoredRound do not match", round, getRound.result);
+
+		assertNull("No error", store.close());
+		assertNull("No error deleting folder", FileUtils.delete(testDir));
+	}
+}
@@ -9,13 +9,16 @@ import static poset.Event.rootSelfParent;
 
 import java.io.File;
 import java.security.KeyPair;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Test;
 
 import autils.Appender;
+import autils.FileUtils;
 import autils.Logger;
 import common.RResult;
 import common.error;
@@ -1413,6 +1416,263 @@ public class PosetTest {
 		});
 	}
 
+	private int countVotes(Poset p) {
+		int n = 0;
+		for (Map<String,Boolean> v : p.votes.values()) {
+			n += v.size();
+		}
+		return n;
+	}
+
+	@Test
+	public void testDecideFameKeepsVotes() {
+		initConsensusPoset(false);
+
+		error err = poset.DivideRounds();
+		assertNull("No error", err);
+		err = poset.DecideFame();
+		assertNull("No error", err);
+
+		long computed = poset.getVotesComputed();
+		long reused = poset.getVotesReused();
+		int kept = countVotes(poset);
+		assertTrue("Votes should be computed", computed > 0);
+
+		//without new Events, the next call only reads the votes kept
+		err = poset.DecideFame();
+		assertNull("No error", err);
+		assertEquals("No vote should be computed again", computed, poset.getVotesComputed());
+		assertEquals("Kept votes should be reused", reused + kept, poset.getVotesReused());
+		assertEquals("Votes should be kept", kept, countVotes(poset));
+
+		//Reset drops them
+		Peer[] peers = participants.toPeerSlice();
+		Root[] roots = new Root[peers.length];
+		for (int i = 0; i < peers.length; i++) {
+			RResult<Root> getRoot = poset.Store.getRoot(peers[i].getPubKeyHex());
+			assertNull("No error", getRoot.err);
+			roots[i] = getRoot.result;
+		}
+		Frame frame = new Frame(0, roots, new EventMessage[] {});
+		Block block = new Block(0, 0, frame.Hash().result, new byte[][] {});
+		err = poset.Reset(block, frame);
+		assertNull("No error", err);
+		assertEquals("Reset should drop the votes", 0, countVotes(poset));
+	}
+
+	@Test
+	public void testDecideRoundReceivedClock() {
+		initConsensusPoset(false);
+
+		//copies, as the Poset sets the rounds on the Events it holds
+		Event[] copies = new Event[orderedEvents.length];
+		for (int i = 0; i < orderedEvents.length; i++) {
+			copies[i] = new Event(orderedEvents[i]);
+		}
+		Poset fallback = createPoset(false, copies, participants, logger);
+
+		for (Poset p : new Poset[] {poset, fallback}) {
+			error err = p.DivideRounds();
+			assertNull("No error", err);
+			err = p.DecideFame();
+			assertNull("No error", err);
+		}
+
+		//without the dag index, every famous witness is checked with see()
+		fallback.dag.reset();
+
+		error err = poset.DecideRoundReceived();
+		assertNull("No error", err);
+		err = fallback.DecideRoundReceived();
+		assertNull("No error", err);
+		assertTrue("Famous witness clocks should be used", poset.receivedCache.size() > 0);
+
+		int received = 0;
+		for (Event e : orderedEvents) {
+			RResult<Long> r = poset.roundReceived(e.hex());
+			assertNull("No error", r.err);
+			RResult<Long> f = fallback.roundReceived(e.hex());
+			assertNull("No error", f.err);
+			assertEquals(String.format("roundReceived of %s should match", e.hex()), f.result, r.result);
+			if (r.result >= 0) {
+				received++;
+			}
+		}
+		assertTrue("Events should be received", received > 0);
+		assertEquals("UndeterminedEvents should match",
+			fallback.getUndeterminedEvents(), poset.getUndeterminedEvents());
+	}
+
+	private BlockSignature signBlock(Block block, int node) {
+		RResult<BlockSignature> sign = block.sign(nodes[node].Key);
+		assertNull("No error", sign.err);
+		return sign.result;
+	}
+
+	@Test
+	public void testProcessSigPool() {
+		initConsensusPoset(false);
+
+		Block block0 = new Block(0, 1, new byte[] {0}, new byte[][] {"tx0".getBytes()});
+		Block block1 = new Block(1, 2, new byte[] {1}, new byte[][] {"tx1".getBytes()});
+		Block block5 = new Block(5, 3, new byte[] {5}, new byte[][] {"tx5".getBytes()});
+		assertNull("No error", poset.Store.setBlock(block0));
+		assertNull("No error", poset.Store.setBlock(block1));
+
+		//a signature of block 1 presented for block 0, and one of a missing block
+		BlockSignature b1n1 = signBlock(block1, 1);
+		BlockSignature bad = new BlockSignature(b1n1.getValidator(), 0, b1n1.getSignature());
+		BlockSignature missing = signBlock(block5, 0);
+		poset.SigPool = new ArrayList<BlockSignature>(Arrays.asList(
+			signBlock(block0, 0), signBlock(block1, 0), signBlock(block0, 1),
+			bad, missing, signBlock(block0, 2)));
+
+		error err = poset.ProcessSigPool();
+		assertNull("No error", err);
+
+		assertEquals("Block 0 should have the signatures of its group", 3,
+			poset.Store.getBlock(0).result.getSignatures().size());
+		assertEquals("Block 1 should have its signature", 1,
+			poset.Store.getBlock(1).result.getSignatures().size());
+		assertEquals("Block 0 should be the anchor", 0, poset.AnchorBlock);
+		assertTrue("Verify rate should be measured", poset.getSigVerifyRate() > 0);
+
+		//the invalid and the unknown signatures stay in the pool, in order
+		assertEquals("SigPool should keep the unprocessed signatures",
+			Arrays.asList(bad, missing), poset.SigPool);
+	}
+
+	@Test
+	public void testRemoveProcessedSignatures() {
+		initConsensusPoset(false);
+
+		//pool positions differ from the block indexes
+		BlockSignature s0 = new BlockSignature(new byte[] {1}, 7, "s0");
+		BlockSignature s1 = new BlockSignature(new byte[] {2}, 7, "s1");
+		BlockSignature s2 = new BlockSignature(new byte[] {3}, 9, "s2");
+		poset.SigPool = new ArrayList<BlockSignature>(Arrays.asList(s0, s1, s2));
+
+		Map<Long,Boolean> processed = new HashMap<Long,Boolean>();
+		processed.put(0L, true);
+		processed.put(2L, false);
+		poset.removeProcessedSignatures(processed);
+
+		List<BlockSignature> expected = Arrays.asList(s1, s2);
+		assertEquals("Only processed positions should be removed", expected, poset.SigPool);
+	}
+
+	private void recreateBadgerDir() {
+		String dir = new File(badgerDir).getParent();
+		assertNull("No error deleting folder", FileUtils.delete(dir));
+		assertNull("No error creating folder", FileUtils.mkdirs(dir, FileUtils.MOD_755).err);
+	}
+
+	// reopen closes the badger store of the poset and bootstraps a new Poset
+	// from its database
+	private Poset reopen(Poset p) {
+		assertNull("No error", p.Store.close());
+		RResult<BadgerStore> loadBadgerStore = BadgerStore.LoadBadgerStore(cacheSize, badgerDir);
+		assertNull("No error", loadBadgerStore.err);
+		Poset np = new Poset(participants, loadBadgerStore.result, null, logger);
+		error err = np.Bootstrap();
+		assertNull("No error", err);
+		return np;
+	}
+
+	private void assertSameConsensus(Poset expected, Poset p) {
+		assertEquals("Last block should match", expected.Store.lastBlockIndex(), p.Store.lastBlockIndex());
+		for (long i = 0; i <= expected.Store.lastBlockIndex(); i++) {
+			RResult<Block> eb = expected.Store.getBlock(i);
+			assertNull("No error", eb.err);
+			RResult<Block> b = p.Store.getBlock(i);
+			assertNull("No error", b.err);
+			assertArrayEquals(String.format("Block %d should match", i),
+				eb.result.getBody().hash().result, b.result.getBody().hash().result);
+		}
+		assertEquals("Last consensus round should match", expected.getLastConsensusRound(), p.getLastConsensusRound());
+		assertEquals("Undetermined events should match", expected.getUndeterminedEvents(), p.getUndeterminedEvents());
+		assertEquals("Known events should match", expected.Store.knownEvents(), p.Store.knownEvents());
+	}
+
+	private void runConsensus(Poset p) {
+		assertNull("No error", p.DivideRounds());
+		assertNull("No error", p.DecideFame());
+		assertNull("No error", p.DecideRoundReceived());
+		assertNull("No error", p.ProcessDecidedRounds());
+	}
+
+	@Test
+	public void testBootstrapFromCheckpoint() {
+		recreateBadgerDir();
+		initConsensusPoset(true);
+
+		//the events on a fresh store give the consensus of a full replay
+		Event[] copies = new Event[orderedEvents.length];
+		for (int i = 0; i < orderedEvents.length; i++) {
+			copies[i] = new Event(orderedEvents[i]);
+		}
+		Poset replayed = createPoset(false, copies, participants, logger);
+		runConsensus(replayed);
+
+		poset.SetCheckpointInterval(1);
+		runConsensus(poset);
+		assertTrue("Blocks should be created", poset.Store.lastBlockIndex() >= 0);
+		RResult<Checkpoint> dbGetCheckpoint = ((BadgerStore) poset.Store).dbGetCheckpoint();
+		assertNull("A checkpoint should be stored", dbGetCheckpoint.err);
+		assertSameConsensus(replayed, poset);
+
+		Poset np = reopen(poset);
+		assertEquals("Bootstrap should start from the checkpoint",
+			dbGetCheckpoint.result.BlockIndex, np.lastCheckpoint);
+		assertSameConsensus(replayed, np);
+
+		assertNull("No error", np.Store.close());
+		FileUtils.delete(new File(badgerDir).getParent());
+	}
+
+	@Test
+	public void testBootstrapAfterPrune() {
+		recreateBadgerDir();
+		initConsensusPoset(true);
+
+		Event[] copies = new Event[orderedEvents.length];
+		for (int i = 0; i < orderedEvents.length; i++) {
+			copies[i] = new Event(orderedEvents[i]);
+		}
+		Poset replayed = createPoset(false, copies, participants, logger);
+		runConsensus(replayed);
+
+		poset.SetCheckpointInterval(1);
+		runConsensus(poset);
+		BadgerStore store = (BadgerStore) poset.Store;
+		RResult<Long> dbPrune = store.dbPrune(Long.MAX_VALUE);
+		assertNull("No error", dbPrune.err);
+		long pruned = store.dbPrunedTopo();
+		assertTrue("Events should be pruned", pruned > 0);
+
+		//the checkpoint restarts the pruned db
+		Poset np = reopen(poset);
+		assertSameConsensus(replayed, np);
+		assertNull("No error", np.Store.close());
+
+		//without it, the pruned events cannot be replayed
+		RResult<BadgerStore> loadBadgerStore = BadgerStore.LoadBadgerStore(cacheSize, badgerDir);
+		assertNull("No error", loadBadgerStore.err);
+		store = loadBadgerStore.result;
+		RResult<Checkpoint> dbGetCheckpoint = store.dbGetCheckpoint();
+		assertNull("No error", dbGetCheckpoint.err);
+		Checkpoint checkpoint = dbGetCheckpoint.result;
+		assertNull("No error", store.dbSetCheckpoint(new Checkpoint(1000, checkpoint.TopologicalIndex,
+			checkpoint.ReplayFrom, checkpoint.UndeterminedEvents)));
+		np = new Poset(participants, store, null, logger);
+		error err = np.Bootstrap();
+		assertNotNull("Bootstrap should fail after a prune", err);
+		assertTrue("Error should tell the events are pruned", err.Error().contains("pruned"));
+
+		assertNull("No error", store.close());
+		FileUtils.delete(new File(badgerDir).getParent());
+	}
+
 //	@Test
 //	public void TestDecideFame() {
 //		initConsensusPoset(false);